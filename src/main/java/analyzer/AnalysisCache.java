@@ -0,0 +1,317 @@
+package analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Disk-backed cache of per-file extraction results, so that unchanged files
+ * are not parsed again on the next analysis (even after a JVM restart).
+ *
+ * <p>Entries are keyed by a SHA-256 hash of the file content combined with a
+ * fingerprint of the parser configuration (JLS level, compiler options, cache
+ * format version): changing any of them simply produces different keys.
+ * Each entry stores the {@link ClassInfo}/{@link MethodInfo} data of one file
+ * in a compact binary form (string table + variable-length integers), call
+ * sites by their signature rather than by their ID, which is only valid in
+ * the {@link SymbolTable} of one analysis. Resolved calls are not stored: they
+ * depend on the rest of the project and are recomputed from
+ * {@link MethodInfo#callSiteIds} after every run.</p>
+ *
+ * <p>The cache directory is capped in size. Reading an entry refreshes its
+ * modification time, and {@link #evict()} deletes the least recently used
+ * entries until the directory fits the cap again.</p>
+ *
+ * <p>Cache failures are never fatal: an unreadable or corrupt entry is treated
+ * as a miss and a write failure is only reported on stderr.</p>
+ */
+class AnalysisCache {
+
+    /** Bumped whenever the binary layout changes, which invalidates older entries. */
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x41434331; // "ACC1"
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final long STALE_TMP_MILLIS = 60 * 60 * 1000L;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final byte[] configFingerprint;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Opens (and creates if needed) a cache directory.
+     * @param directory Directory holding the entries
+     * @param maxBytes Size cap of the directory, enforced by {@link #evict()}
+     * @param parserConfig Description of everything besides the file content that
+     *                     influences extraction (JLS level, compiler options, mode...)
+     * @throws IOException if the directory cannot be created
+     */
+    AnalysisCache(Path directory, long maxBytes, String parserConfig) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.configFingerprint = ("v" + FORMAT_VERSION + "|" + parserConfig).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Default cache location, in the user's home directory so that it is
+     * shared by every analyzed project.
+     */
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".ast-analyzer", "cache");
+    }
+
+    /**
+     * Computes the cache key of a file from its raw content. The buffer
+     * position is left unchanged.
+     * @param content File content as read from disk
+     * @return hexadecimal key
+     */
+    String keyOf(ByteBuffer content) {
+        MessageDigest digest = sha256();
+        digest.update(configFingerprint);
+        digest.update(content.duplicate());
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path entryPath(String key) {
+        // Two-level layout keeps directories small on large projects
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Looks up the classes extracted from a file with the given key.
+     * @param key Key computed by {@link #keyOf(ByteBuffer)}
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return fresh ClassInfo objects (calls not resolved), or null on a miss
+     */
+    List<ClassInfo> get(String key, SymbolTable symbols) {
+        Path entry = entryPath(key);
+        if (!Files.isRegularFile(entry)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(entry)) {
+            List<ClassInfo> classes = read(new DataInputStream(new BufferedInputStream(in)), symbols);
+            touch(entry);
+            hits.incrementAndGet();
+            return classes;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the classes extracted from a file. The entry is written to a
+     * temporary file first and then moved in place, so concurrent readers
+     * never observe a partial entry.
+     * @param key Key computed by {@link #keyOf(ByteBuffer)}
+     * @param classes Classes extracted from the file
+     */
+    void put(String key, List<ClassInfo> classes) {
+        Path entry = entryPath(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                write(data, classes);
+                data.flush();
+            }
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cache d'analyse: écriture impossible (" + e.getMessage() + ")");
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects eviction order
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache directory is
+     * below its size cap. Temporary files older than an hour are removed as well.
+     */
+    void evict() {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        long total = 0;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(p)) continue;
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                if (!p.toString().endsWith(ENTRY_SUFFIX)) {
+                    // Temporary file left behind by an interrupted run
+                    if (attrs.lastModifiedTime().toMillis() < System.currentTimeMillis() - STALE_TMP_MILLIS) {
+                        Files.deleteIfExists(p);
+                    }
+                    continue;
+                }
+                attributes.put(p, attrs);
+                entries.add(p);
+                total += attrs.size();
+            }
+        } catch (IOException e) {
+            System.err.println("Cache d'analyse: nettoyage impossible (" + e.getMessage() + ")");
+            return;
+        }
+        if (total <= maxBytes) return;
+
+        entries.sort((a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+        for (Path p : entries) {
+            if (total <= maxBytes) break;
+            try {
+                Files.deleteIfExists(p);
+                total -= attributes.get(p).size();
+            } catch (IOException e) {
+                // Entry in use or already gone: try the next one
+            }
+        }
+    }
+
+    /** Number of lookups answered from the cache since it was opened. */
+    int getHits() {
+        return hits.get();
+    }
+
+    /** Number of lookups that required parsing since the cache was opened. */
+    int getMisses() {
+        return misses.get();
+    }
+
+    // Binary format ------------------------------------------------------------
+    //
+    // magic, class count, string table (count + UTF strings), then per class:
+    //   name, package (string refs), nbAttributes, nbMethods, method count
+    //   per method: name ref, nbParameters, nbLines, owner ref, call site count, call site refs
+    // All integers except the magic are unsigned varints.
+
+    static void write(DataOutputStream out, List<ClassInfo> classes) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (ClassInfo cls : classes) {
+            intern(cls.name, strings, table);
+            intern(cls.packageName, strings, table);
+            for (MethodInfo m : cls.methods) {
+                intern(m.name, strings, table);
+                intern(m.classOwner, strings, table);
+                for (int call : m.callSiteIds) intern(cls.symbols.signatures.name(call), strings, table);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        writeVarInt(out, classes.size());
+        writeVarInt(out, table.size());
+        for (String s : table) out.writeUTF(s);
+        for (ClassInfo cls : classes) {
+            writeVarInt(out, strings.get(cls.name));
+            writeVarInt(out, strings.get(cls.packageName));
+            writeVarInt(out, cls.nbAttributes);
+            writeVarInt(out, cls.nbMethods);
+            writeVarInt(out, cls.methods.size());
+            for (MethodInfo m : cls.methods) {
+                writeVarInt(out, strings.get(m.name));
+                writeVarInt(out, m.nbParameters);
+                writeVarInt(out, m.nbLines);
+                writeVarInt(out, strings.get(m.classOwner));
+                writeVarInt(out, m.callSiteIds.length);
+                for (int call : m.callSiteIds) writeVarInt(out, strings.get(cls.symbols.signatures.name(call)));
+            }
+        }
+    }
+
+    static List<ClassInfo> read(DataInputStream in, SymbolTable symbols) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Entrée de cache invalide");
+        int classCount = readVarInt(in);
+        String[] table = new String[readVarInt(in)];
+        for (int i = 0; i < table.length; i++) table[i] = in.readUTF();
+
+        List<ClassInfo> classes = new ArrayList<>(classCount);
+        for (int c = 0; c < classCount; c++) {
+            ClassInfo cls = new ClassInfo();
+            cls.name = table[readVarInt(in)];
+            cls.packageName = table[readVarInt(in)];
+            cls.nbAttributes = readVarInt(in);
+            cls.nbMethods = readVarInt(in);
+            int methodCount = readVarInt(in);
+            for (int i = 0; i < methodCount; i++) {
+                MethodInfo m = new MethodInfo();
+                m.name = table[readVarInt(in)];
+                m.nbParameters = readVarInt(in);
+                m.nbLines = readVarInt(in);
+                m.classOwner = table[readVarInt(in)];
+                m.callSiteIds = new int[readVarInt(in)];
+                for (int k = 0; k < m.callSiteIds.length; k++) {
+                    m.callSiteIds[k] = symbols.signatures.intern(table[readVarInt(in)]);
+                }
+                cls.methods.add(m);
+            }
+            symbols.intern(cls);
+            classes.add(cls);
+        }
+        return classes;
+    }
+
+    private static void intern(String s, Map<String, Integer> strings, List<String> table) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, table.size());
+            table.add(s);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Entier mal formé dans l'entrée de cache");
+    }
+}
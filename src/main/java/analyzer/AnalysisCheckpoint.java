@@ -0,0 +1,394 @@
+package analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Periodic checkpoints of a long analysis, so that a run interrupted by a
+ * crash, an out-of-memory error or a closed window resumes where it stopped.
+ *
+ * <p>A checkpoint belongs to one run configuration: its fingerprint covers the
+ * parser settings and the sorted list of analyzed files, and the checkpoint is
+ * kept in a subdirectory named after it. Two kinds of progress are saved:
+ * <ul>
+ *   <li>parsing ({@link #open}): the classes of the files processed so far,
+ *       appended as numbered segments in the {@link AnalysisCache} format.
+ *       Each file is stamped with the size and modification time it had when
+ *       the run started; a file whose stamp changed is parsed again on resume;</li>
+ *   <li>clustering ({@link MergeLog}): the sequence of merges performed by
+ *       {@link HierarchicalClusteringAnalyzer}, replayed on resume instead of
+ *       searching for the best pairs again.</li>
+ * </ul></p>
+ *
+ * <p>Resumed results are identical to those of a clean run: restored classes
+ * are merged back in file order and calls are resolved afterwards, as for
+ * cached files. Writes go to a temporary file moved in place, so an
+ * interrupted write never leaves a partial segment. The checkpoint is deleted
+ * once the step completes; failures are only reported on stderr.</p>
+ */
+class AnalysisCheckpoint {
+
+    /** Default minimum delay between two checkpoints. */
+    static final long DEFAULT_INTERVAL_MILLIS = 30_000;
+
+    private static final int MAGIC = 0x41434b31; // "ACK1"
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private Path directory;
+    private final long intervalMillis;
+    private final Map<Path, Integer> indexByFile = new HashMap<>();
+    /** Size and modification time of every file when the run started. */
+    private final long[][] stamps;
+    /** Classes of the files restored or completed so far, by file index. */
+    private final Map<Integer, List<ClassInfo>> done = new ConcurrentHashMap<>();
+    /** Completed files not written yet, by file index. */
+    private final Map<Integer, List<ClassInfo>> pending = new HashMap<>();
+    private int restoredFiles;
+    private int segments;
+    private long lastFlush = System.currentTimeMillis();
+
+    private AnalysisCheckpoint(long intervalMillis, List<Path> files) {
+        this.intervalMillis = intervalMillis;
+        this.stamps = new long[files.size()][];
+        for (int i = 0; i < files.size(); i++) {
+            indexByFile.put(files.get(i), i);
+            stamps[i] = stampOf(files.get(i));
+        }
+    }
+
+    /**
+     * Default checkpoint location, next to the default {@link AnalysisCache}.
+     */
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".ast-analyzer", "checkpoints");
+    }
+
+    /**
+     * Opens the parsing checkpoint of a run and restores the files it holds.
+     * @param root Checkpoint directory shared by every run
+     * @param configuration Description of the parser settings
+     * @param files Files of the run, in analysis order
+     * @param intervalMillis Minimum delay between two checkpoints
+     * @param dependentFiles True when a file's classes depend on the other
+     *                       files (bindings): any changed file then
+     *                       invalidates the whole checkpoint
+     * @param symbols Table of the run, where the restored classes are interned
+     * @return the checkpoint, or null when the directory cannot be used
+     */
+    static AnalysisCheckpoint open(Path root, String configuration, List<Path> files, long intervalMillis,
+                                   boolean dependentFiles, SymbolTable symbols) {
+        AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(intervalMillis, files);
+        StringBuilder description = new StringBuilder(configuration);
+        for (int i = 0; i < files.size(); i++) {
+            description.append('\n').append(files.get(i).toUri());
+            if (dependentFiles) {
+                description.append('|').append(checkpoint.stamps[i][0]).append('|').append(checkpoint.stamps[i][1]);
+            }
+        }
+        try {
+            checkpoint.directory = Files.createDirectories(root.resolve("analysis-" + fingerprint(description.toString())));
+            checkpoint.restore(symbols);
+            return checkpoint;
+        } catch (IOException e) {
+            System.err.println("Points de reprise désactivés: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long[] stampOf(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new long[] {attrs.size(), attrs.lastModifiedTime().toMillis()};
+        } catch (IOException e) {
+            // Never matches a saved stamp: the file is parsed again
+            return new long[] {-1, -1};
+        }
+    }
+
+    private void restore(SymbolTable symbols) throws IOException {
+        List<Path> saved = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                && p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(saved::add);
+        }
+        Collections.sort(saved);
+        for (Path segment : saved) {
+            String name = segment.getFileName().toString();
+            try {
+                int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments = Math.max(segments, number);
+            } catch (NumberFormatException e) {
+                // Foreign file name: not taken into account when numbering new segments
+            }
+        }
+        for (Path segment : saved) {
+            try (InputStream in = Files.newInputStream(segment)) {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+                if (data.readInt() != MAGIC) throw new IOException("segment invalide");
+                int count = data.readInt();
+                for (int i = 0; i < count; i++) {
+                    int index = data.readInt();
+                    long size = data.readLong();
+                    long modified = data.readLong();
+                    List<ClassInfo> classes = AnalysisCache.read(data, symbols);
+                    if (index >= 0 && index < stamps.length
+                        && stamps[index][0] == size && stamps[index][1] == modified) {
+                        done.put(index, classes);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Point de reprise ignoré (" + segment.getFileName() + "): " + e.getMessage());
+            }
+        }
+        restoredFiles = done.size();
+    }
+
+    /** Number of files restored from a previous run. */
+    int getRestoredFiles() {
+        return restoredFiles;
+    }
+
+    /** Tells whether the classes of the file were restored or already completed. */
+    boolean isDone(Path file) {
+        Integer index = indexByFile.get(file);
+        return index != null && done.containsKey(index);
+    }
+
+    /**
+     * Returns the classes of a file restored or completed during this run.
+     * @param file File of the run
+     * @return its classes, or an empty list when it produced none
+     */
+    List<ClassInfo> classesOf(Path file) {
+        Integer index = indexByFile.get(file);
+        List<ClassInfo> classes = index != null ? done.get(index) : null;
+        return classes != null ? classes : Collections.emptyList();
+    }
+
+    /**
+     * Records the classes of a completed file and writes a checkpoint when the
+     * last one is older than the interval. Called by the parser workers.
+     * @param file Completed file
+     * @param classes Its classes (calls not resolved)
+     */
+    void completed(Path file, List<ClassInfo> classes) {
+        Integer index = indexByFile.get(file);
+        if (index == null) return;
+        done.put(index, classes);
+        synchronized (pending) {
+            pending.put(index, classes);
+            if (System.currentTimeMillis() - lastFlush >= intervalMillis) flush();
+        }
+    }
+
+    /** Writes the files completed since the last checkpoint as a new segment. */
+    void flush() {
+        synchronized (pending) {
+            lastFlush = System.currentTimeMillis();
+            if (pending.isEmpty()) return;
+            Path segment = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, ++segments, SEGMENT_SUFFIX));
+            try {
+                writeAtomically(segment, data -> {
+                    data.writeInt(MAGIC);
+                    data.writeInt(pending.size());
+                    for (Map.Entry<Integer, List<ClassInfo>> entry : pending.entrySet()) {
+                        int index = entry.getKey();
+                        data.writeInt(index);
+                        data.writeLong(stamps[index][0]);
+                        data.writeLong(stamps[index][1]);
+                        AnalysisCache.write(data, entry.getValue());
+                    }
+                });
+                pending.clear();
+            } catch (IOException e) {
+                System.err.println("Point de reprise non écrit: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Deletes the checkpoint once the run has completed. */
+    void delete() {
+        deleteDirectory(directory);
+    }
+
+    // Clustering --------------------------------------------------------------
+
+    /**
+     * Merge sequence of a hierarchical clustering: for every level, the
+     * positions of the two merged clusters in the level and the coupling value
+     * of the merge. The fingerprint covers the classes and couplings clustered.
+     */
+    static class MergeLog {
+        private final Path file;
+        private final long intervalMillis;
+        private final List<int[]> pairs = new ArrayList<>();
+        private final List<Double> values = new ArrayList<>();
+        private int saved;
+        private long lastFlush = System.currentTimeMillis();
+
+        private MergeLog(Path file, long intervalMillis) {
+            this.file = file;
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * Opens the merge log of a clustering and reads the merges saved by a
+         * previous run, if any.
+         * @param root Checkpoint directory shared by every run
+         * @param description Classes and couplings being clustered
+         * @param intervalMillis Minimum delay between two checkpoints
+         * @return the log, or null when the directory cannot be used
+         */
+        static MergeLog open(Path root, String description, long intervalMillis) {
+            try {
+                Files.createDirectories(root);
+                MergeLog log = new MergeLog(root.resolve("clustering-" + fingerprint(description) + SEGMENT_SUFFIX),
+                    intervalMillis);
+                if (Files.isRegularFile(log.file)) log.read();
+                return log;
+            } catch (IOException e) {
+                System.err.println("Points de reprise désactivés: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private void read() {
+            try (InputStream in = Files.newInputStream(file)) {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+                if (data.readInt() != MAGIC) throw new IOException("journal invalide");
+                int count = data.readInt();
+                for (int i = 0; i < count; i++) {
+                    pairs.add(new int[] {data.readInt(), data.readInt()});
+                    values.add(Double.longBitsToDouble(data.readLong()));
+                }
+                saved = count;
+            } catch (IOException e) {
+                pairs.clear();
+                values.clear();
+                System.err.println("Point de reprise ignoré (" + file.getFileName() + "): " + e.getMessage());
+            }
+        }
+
+        /** Number of merges known to the log (restored or recorded). */
+        int size() {
+            return pairs.size();
+        }
+
+        /** Positions, in its level, of the clusters merged at the given level. */
+        int[] pair(int level) {
+            return pairs.get(level);
+        }
+
+        /** Coupling value of the merge at the given level. */
+        double value(int level) {
+            return values.get(level);
+        }
+
+        /** Number of merges read from a previous run. */
+        int getRestoredMerges() {
+            return saved;
+        }
+
+        /** Records a merge and rewrites the log when the last write is older than the interval. */
+        void record(int first, int second, double value) {
+            pairs.add(new int[] {first, second});
+            values.add(value);
+            if (System.currentTimeMillis() - lastFlush >= intervalMillis) flush();
+        }
+
+        /** Writes every merge recorded so far. */
+        void flush() {
+            lastFlush = System.currentTimeMillis();
+            if (pairs.size() == saved) return;
+            try {
+                writeAtomically(file, data -> {
+                    data.writeInt(MAGIC);
+                    data.writeInt(pairs.size());
+                    for (int i = 0; i < pairs.size(); i++) {
+                        data.writeInt(pairs.get(i)[0]);
+                        data.writeInt(pairs.get(i)[1]);
+                        data.writeLong(Double.doubleToLongBits(values.get(i)));
+                    }
+                });
+                saved = pairs.size();
+            } catch (IOException e) {
+                System.err.println("Point de reprise non écrit: " + e.getMessage());
+            }
+        }
+
+        /** Deletes the log once the clustering has completed. */
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Suppression du point de reprise impossible: " + e.getMessage());
+            }
+        }
+    }
+
+    // Helpers -----------------------------------------------------------------
+
+    private interface Writer {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, Writer writer) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                writer.write(data);
+                data.flush();
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                Files.deleteIfExists(entry);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.err.println("Suppression du point de reprise impossible: " + e.getMessage());
+        }
+    }
+
+    /** Short hexadecimal SHA-256 digest naming the checkpoint of a configuration. */
+    static String fingerprint(String description) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package analyzer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options controlling how {@link Analyzer#analyzeSource(Path, AnalysisOptions)}
+ * parses a source tree.
+ *
+ * <p>This is a plain holder with sensible defaults: create an instance,
+ * adjust the fields that matter and pass it to the analyzer.</p>
+ */
+public class AnalysisOptions {
+    /**
+     * Glob patterns, relative to the analyzed folder, restricting the files
+     * analyzed (e.g. <code>"**&#47;service/**"</code>); empty to keep every .java file.
+     */
+    List<String> includeGlobs = new ArrayList<>();
+    /** Glob patterns of files and folders to leave out; a matching folder is not walked at all. */
+    List<String> excludeGlobs = new ArrayList<>();
+    /** When true, paths ignored by the .gitignore files of the analyzed tree are skipped. */
+    boolean respectGitignore = true;
+    /** When true, test source sets (src/test, src/testFixtures...) are skipped. */
+    boolean skipTestSources = false;
+    /** When true, generated-source folders (generated, generated-sources...) are skipped. */
+    boolean skipGeneratedSources = false;
+    /** When true, large trees are listed by several threads. */
+    boolean parallelScan = false;
+    /**
+     * When true, only declarations are extracted: JDT skips method bodies and
+     * no call is recorded, which is enough for the statistics view and much
+     * faster. Classes declared inside method bodies (local and anonymous
+     * classes) are not seen in this mode.
+     */
+    boolean structureOnly = false;
+    /**
+     * When true, calls are resolved through JDT bindings and recorded with
+     * their exact target ("pkg.Class#name:paramCount") instead of being matched
+     * on name and parameter count. All files are compiled by a single
+     * createASTs call over one environment made of their source roots and
+     * {@link #classpath}, so this mode is single-threaded, needs files on disk
+     * (not archive entries) and does not use the cache, since a file's result
+     * depends on the other files.
+     */
+    boolean resolveBindings = false;
+    /** Jars or class folders the analyzed sources depend on, used when resolving bindings. */
+    List<Path> classpath = new ArrayList<>();
+    /** Number of parser workers. Defaults to the number of available processors. */
+    int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * When true, each worker parses a slice of files with a single
+     * ASTParser.createASTs call instead of one createAST call per file.
+     */
+    boolean batchParsing = false;
+    /** Upper bound on the number of files handed to one createASTs call. */
+    int maxBatchSize = 500;
+    /**
+     * When true (and batch parsing is off), files are read and decoded by a
+     * separate I/O stage feeding the parser workers through a bounded queue,
+     * so that disk latency does not stall parsing.
+     */
+    boolean pipelining = true;
+    /**
+     * Maximum number of files read at the same time by the I/O stage. Virtual
+     * threads are used for reading when the JVM provides them, a pool of this
+     * many platform threads otherwise.
+     */
+    int ioConcurrency = 32;
+    /** Number of read files that may wait for a parser worker; bounds the sources held in memory. */
+    int pipelineQueueCapacity = 64;
+    /** When set, receives the per-stage metrics of the pipeline. */
+    PipelineStats pipelineStats = null;
+    /**
+     * Directory of the persistent per-file {@link AnalysisCache}, or null to
+     * parse every file (see {@link AnalysisCache#defaultDirectory()}). Sharded
+     * Spoon analyses keep their results there too.
+     */
+    Path cacheDirectory = null;
+    /** Size cap of the cache directory; least recently used entries are evicted beyond it. */
+    long cacheMaxBytes = 512L * 1024 * 1024;
+    /**
+     * Files larger than this are not extracted in full: only their declarations
+     * are (see {@link FileBudget}).
+     */
+    long maxFileBytes = 1024 * 1024;
+    /**
+     * Files with more tokens than this are not parsed in full: only their
+     * declarations are (see {@link FileBudget#beforeParse}). JDT builds about
+     * one AST node per token, so this bounds the tree of a full attempt.
+     */
+    int maxTokens = 500_000;
+    /** AST nodes an extraction attempt may visit before the file is degraded or quarantined. */
+    int maxAstNodes = 250_000;
+    /** Wall time an extraction attempt may take before the file is degraded or quarantined. */
+    long maxParseMillis = 10_000;
+    /** When set, receives the files degraded or quarantined by their budget. */
+    FileBudget.Report budgetReport = null;
+    /**
+     * Directory where whole-project analyses save their progress (see
+     * {@link AnalysisCheckpoint#defaultDirectory()}), or null. A run that did
+     * not complete resumes from its last checkpoint; the checkpoint is
+     * deleted once the run completes.
+     */
+    Path checkpointDirectory = null;
+    /** Minimum delay between two checkpoints of the same run. */
+    long checkpointIntervalMillis = AnalysisCheckpoint.DEFAULT_INTERVAL_MILLIS;
+    /**
+     * When set, receives the bytes read and the heap allocated for every file
+     * parsed individually (files served by the cache are not measured).
+     */
+    SourceLoader.Stats loadStats = null;
+    /**
+     * When true, the analysis prints a summary of the run on the console:
+     * modules found, files restored from a checkpoint, the requested stats,
+     * files over budget, binding and cache use. Off by default; the GUI
+     * shows what it needs from the stats and report objects.
+     */
+    boolean verbose = false;
+    /**
+     * When true, the Spoon analysis builds one model per shard of packages,
+     * several at a time, instead of one model of the whole tree (see
+     * {@link SpoonShards}).
+     */
+    boolean spoonSharding = false;
+    /** Preferred maximum number of files in a Spoon shard; a package is never split. */
+    int spoonShardMaxFiles = 200;
+    /**
+     * Spoon shards built at the same time. Each holds the model of its shard
+     * in memory, so this bounds the heap of a sharded analysis along with
+     * {@link #spoonShardMaxFiles}.
+     */
+    int spoonConcurrency = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /**
+     * When true, Spoon models are built without comments, import computation
+     * or source-printing support, which the extraction does not use and which
+     * account for a large part of their heap (see {@link SpoonRunner#newLauncher}).
+     */
+    boolean spoonLeanProfile = true;
+    /**
+     * Number of classes a subscriber of {@link Analyzer#publishSource} may have
+     * pending before the parser workers wait for it.
+     */
+    int streamBufferSize = 256;
+}
@@ -1,21 +1,40 @@
 package analyzer;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 import javax.swing.SwingUtilities;
 
-import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.PackageDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 
 import analyzer.Utils.ClassInfo;
 import analyzer.Utils.MethodInfo;
@@ -39,7 +58,7 @@ import analyzer.Utils.MethodInfo;
  * Dependencies: Eclipse JDT Core (ASTParser), AnalyzerGUI for graphical interface
  */
 public class Analyzer {
-    
+
     /**
      * Entry point for the Analyzer tool.
      * Launches the graphical interface for interactive analysis.
@@ -51,151 +70,898 @@ public class Analyzer {
 
     /**
      * Analyzes Java source files at the given path and returns a list of ClassInfo objects.
+     * Files are parsed in parallel using one worker per available processor.
      * @param inputPath Path to a Java file or directory
      * @return List of ClassInfo representing all classes found
      * @throws IOException if file reading fails
      */
     public static List<ClassInfo> analyzeSource(Path inputPath) throws IOException {
-        Stream<Path> files;
-        if (Files.isDirectory(inputPath)) {
-            files = Files.walk(inputPath).filter(p -> p.toString().endsWith(".java"));
-        } else {
-            files = Stream.of(inputPath);
-        }
-        
-        List<ClassInfo> allClasses = new ArrayList<>();
-        
-        files.forEach(p -> {
-            try {
-                String source = Files.readString(p);
-                ASTParser parser = ASTParser.newParser(AST.JLS11);
-                parser.setKind(ASTParser.K_COMPILATION_UNIT);
-                parser.setSource(source.toCharArray());
-                parser.setResolveBindings(false);
-                CompilationUnit cu = (CompilationUnit) parser.createAST(null);
-                List<ClassInfo> classes = new ArrayList<>();
-                
-                // First pass: collect class and method information
-                cu.accept(new ASTVisitor() {
-                    ClassInfo currentClass;
-                    
-                    @Override
-                    public boolean visit(TypeDeclaration node) {
-                        if (!node.isInterface()) {
-                            currentClass = new ClassInfo();
-                            currentClass.name = node.getName().getIdentifier();
-                            PackageDeclaration pd = cu.getPackage();
-                            currentClass.packageName = pd != null ? pd.getName().getFullyQualifiedName() : "";
-                            classes.add(currentClass);
-                            currentClass.nbAttributes = node.getFields().length;
-                        }
-                        return super.visit(node);
+        return analyzeSource(inputPath, new AnalysisOptions());
+    }
+
+    /**
+     * Analyzes Java source files at the given path using a pool of parser workers.
+     * @param inputPath Path to a Java file or directory
+     * @param threads Number of parser workers (values below 1 are treated as 1)
+     * @return List of ClassInfo representing all classes found, in file order
+     * @throws IOException if the directory cannot be walked or the analysis is interrupted
+     * @see #analyzeSource(Path, AnalysisOptions)
+     */
+    public static List<ClassInfo> analyzeSource(Path inputPath, int threads) throws IOException {
+        AnalysisOptions options = new AnalysisOptions();
+        options.threads = threads;
+        return analyzeSource(inputPath, options);
+    }
+
+    /**
+     * Analyzes Java source files at the given path using a pool of parser workers.
+     * <p>
+     * Each worker thread owns its own {@link ASTParser}. Files are sorted by path
+     * before being dispatched and the per-file results are merged back in that
+     * order, so the returned list is identical whatever the number of threads.
+     * When {@link AnalysisOptions#batchParsing} is enabled, each worker parses
+     * a contiguous slice of the files with a single
+     * {@link ASTParser#createASTs} call instead of one parser setup per file.
+     * Otherwise, when {@link AnalysisOptions#pipelining} is enabled (the
+     * default), files are read by a separate I/O stage and handed to the
+     * parser workers through a bounded queue (see {@link #parsePipelined}).
+     * <p>
+     * Once every file is parsed, a {@link SignatureIndex} is built over all
+     * declarations and shared by the workers to resolve method calls, including
+     * calls to methods declared in other files.
+     * <p>
+     * When {@link AnalysisOptions#cacheDirectory} is set, files whose content
+     * (and parser configuration) did not change since a previous run are read
+     * back from the {@link AnalysisCache} instead of being parsed.
+     * <p>
+     * When {@link AnalysisOptions#structureOnly} is enabled, method bodies are
+     * skipped by the parser: classes, methods, attributes, parameters and line
+     * counts are extracted, but no call is recorded. With
+     * {@link AnalysisOptions#resolveBindings}, calls are recorded with their
+     * exact target (see {@link BindingEnvironment}).
+     * @param inputPath Path to a Java file or directory
+     * @param options Parsing options (thread count, batch mode, cache, structure-only and binding modes)
+     * @return List of ClassInfo representing all classes found, in file order
+     * @throws IOException if the directory cannot be walked or the analysis is interrupted
+     */
+    public static List<ClassInfo> analyzeSource(Path inputPath, AnalysisOptions options) throws IOException {
+        return analyze(Collections.singletonList(inputPath), options, null);
+    }
+
+    /**
+     * Analyzes several inputs as a single project: calls are resolved across
+     * all of them. Each input may be a Java file, a folder or a source archive
+     * (<code>.jar</code>/<code>.zip</code>, e.g. a <code>-sources.jar</code>),
+     * which is read in place through a zip file system. Inputs are mounted and
+     * scanned in parallel, then their files are parsed by one worker pool.
+     * <p>
+     * Files keep the order of the inputs, each input being sorted by path.
+     * Batch parsing needs files on disk: when an input is an archive, the
+     * per-file parsing path is used instead.
+     * @param inputs Java files, folders or source archives
+     * @param options Parsing options (see {@link #analyzeSource(Path, AnalysisOptions)})
+     * @return List of ClassInfo representing all classes found, in input and file order
+     * @throws IOException if an input cannot be read or the analysis is interrupted
+     */
+    public static List<ClassInfo> analyzeSources(List<Path> inputs, AnalysisOptions options) throws IOException {
+        return analyze(inputs, options, null);
+    }
+
+    /**
+     * Analyzes a repository root module by module when it is a multi-module
+     * Maven or Gradle build (see {@link ProjectModules}), as a plain folder
+     * otherwise.
+     * <p>
+     * Only the files under a module's source roots are analyzed, module after
+     * module (each in path order), and every class records its module in
+     * {@link ClassInfo#module}. Files are parsed by one worker pool and calls
+     * are resolved across modules, as with {@link #analyzeSource}. With
+     * {@link AnalysisOptions#resolveBindings}, each module is compiled as an
+     * independent unit, in parallel with the others, against the source roots
+     * of the whole project. {@link ProjectModules#groupByModule} splits the
+     * result to compute couplings or clusters per module.
+     * @param root Project root
+     * @param options Parsing options (see {@link #analyzeSource(Path, AnalysisOptions)})
+     * @return List of ClassInfo representing all classes found, in module and file order
+     * @throws IOException if a build file or the folder cannot be read, or the analysis is interrupted
+     */
+    public static List<ClassInfo> analyzeProject(Path root, AnalysisOptions options) throws IOException {
+        List<ProjectModules.Module> modules = Files.isDirectory(root)
+            ? ProjectModules.discover(root) : Collections.emptyList();
+        if (modules.isEmpty()) return analyzeSource(root, options);
+        Map<Path, String> assigned = ProjectModules.assign(SourceScanner.scan(root, options), modules);
+        Map<Path, String> moduleOf = new LinkedHashMap<>();
+        for (ProjectModules.Module module : modules) {
+            for (Map.Entry<Path, String> entry : assigned.entrySet()) {
+                if (entry.getValue().equals(module.name)) moduleOf.put(entry.getKey(), module.name);
+            }
+        }
+        if (options.verbose) System.out.println("Modules: " + modules.size() + ", " + moduleOf.size() + " fichier(s) dans leurs sources");
+        return analyzeFiles(new ArrayList<>(moduleOf.keySet()), options, null, true, moduleOf, new SymbolTable());
+    }
+
+    /**
+     * Streams the classes found at the given path instead of returning them
+     * once the whole tree has been parsed.
+     * <p>
+     * Parsing starts when a subscriber subscribes and runs on the worker pool
+     * described by the options. The classes of each file are published as soon
+     * as they are extracted (or read from the cache), in completion order.
+     * Publication honours the subscriber's demand: when its buffer of
+     * {@link AnalysisOptions#streamBufferSize} items is full, the workers wait,
+     * so parsing never runs far ahead of a slow consumer. Cancelling the
+     * subscription stops the analysis.
+     * <p>
+     * Published classes carry their methods and call signatures, but
+     * {@link MethodInfo#calls} is left empty: resolving calls needs every
+     * declaration of the project. Use {@link #analyzeSource(Path, AnalysisOptions)}
+     * when the call graph is needed.
+     * @param inputPath Path to a Java file or directory
+     * @param options Parsing options
+     * @return a publisher starting one analysis per subscriber
+     */
+    public static Flow.Publisher<ClassInfo> publishSource(Path inputPath, AnalysisOptions options) {
+        return ClassPublisher.create("analyzer-stream", options.streamBufferSize,
+            sink -> analyze(Collections.singletonList(inputPath), options, (file, classes) -> classes.forEach(sink)));
+    }
+
+    /**
+     * Parses the given files without resolving calls, handing the classes of
+     * each file to the sink as soon as they are available (files declaring no
+     * class are not reported). Used to re-analyze a few changed files.
+     * @param files Files to parse
+     * @param options Parsing options
+     * @param sink Receives each file with its classes; called from the worker threads
+     * @param symbols Table the classes are interned in, shared with the earlier parses
+     * @throws IOException if the analysis is interrupted
+     */
+    static void parseFiles(List<Path> files, AnalysisOptions options,
+                           BiConsumer<Path, List<ClassInfo>> sink, SymbolTable symbols) throws IOException {
+        analyzeFiles(files, options, sink, false, null, symbols);
+    }
+
+    /**
+     * Analyzes several inputs as one project, handing each file's classes to
+     * the sink when there is one (calls are then left unresolved). An
+     * exception thrown by the sink stops the run, which keeps its checkpoint.
+     */
+    static List<ClassInfo> analyze(List<Path> inputs, AnalysisOptions options,
+                                   BiConsumer<Path, List<ClassInfo>> sink) throws IOException {
+        try (SourceArchives archives = new SourceArchives()) {
+            return analyzeFiles(collectSources(inputs, options, archives), options, sink, true, null, new SymbolTable());
+        }
+    }
+
+    /**
+     * Lists the Java files of several inputs, mounting archives on the way.
+     * Inputs are scanned concurrently; the result keeps the input order.
+     */
+    private static List<Path> collectSources(List<Path> inputs, AnalysisOptions options,
+                                             SourceArchives archives) throws IOException {
+        if (inputs.size() == 1) {
+            return SourceScanner.scan(archives.open(inputs.get(0)), options);
+        }
+        int threads = Math.max(1, Math.min(options.threads, inputs.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("analyzer-scan-"));
+        try {
+            List<Future<List<Path>>> scans = new ArrayList<>();
+            for (Path input : inputs) {
+                scans.add(pool.submit(() -> SourceScanner.scan(archives.open(input), options)));
+            }
+            List<Path> files = new ArrayList<>();
+            for (Future<List<Path>> scan : scans) {
+                files.addAll(scan.get());
+            }
+            return files;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Analyse interrompue");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs an analysis, optionally handing each file's classes to a sink as
+     * soon as they are available. Calls are only resolved when there is no
+     * sink, since the classes may already be in use by another thread.
+     * Whole-project runs save their progress in an {@link AnalysisCheckpoint}
+     * when {@link AnalysisOptions#checkpointDirectory} is set, and resume from it.
+     * When files belong to build modules, their classes are tagged with their
+     * module and, in binding mode, each module is compiled separately.
+     * Every class is interned in the given table.
+     */
+    private static List<ClassInfo> analyzeFiles(List<Path> files, AnalysisOptions options,
+                                                BiConsumer<Path, List<ClassInfo>> sink,
+                                                boolean checkpointed,
+                                                Map<Path, String> moduleOf,
+                                                SymbolTable symbols) throws IOException {
+        // From now on the analysis warms the JIT itself
+        ParserFactory.stopWarmUp();
+        int workers = Math.max(1, Math.min(options.threads, files.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory("analyzer-worker-"));
+        ThreadLocal<Worker> workerContexts = ThreadLocal.withInitial(Worker::new);
+        // createASTs reads files by name: archive entries go through the per-file path
+        boolean onDisk = files.stream().allMatch(SourceArchives::isOnDisk);
+        BindingEnvironment bindings = null;
+        if (options.resolveBindings) {
+            if (onDisk) {
+                bindings = BindingEnvironment.of(files, options.classpath);
+            } else {
+                System.err.println("Liaisons non résolues pour une archive: appels associés par nom");
+            }
+        }
+        AnalysisCheckpoint checkpoint = checkpointed && options.checkpointDirectory != null
+            ? AnalysisCheckpoint.open(options.checkpointDirectory, parserConfiguration(options)
+                + (bindings != null ? "|bindings=" + options.classpath : "")
+                + "|budget=" + options.maxFileBytes + "," + options.maxTokens + "," + options.maxAstNodes
+                + "," + options.maxParseMillis,
+                files, options.checkpointIntervalMillis, bindings != null, symbols)
+            : null;
+        // With bindings, a file's calls depend on the other files: no per-file cache
+        Run run = new Run(options, bindings == null ? openCache(options) : null, sink, checkpoint, moduleOf, symbols);
+        List<Path> toParse = files;
+        if (checkpoint != null && checkpoint.getRestoredFiles() > 0) {
+            if (options.verbose) System.out.println("Reprise: " + checkpoint.getRestoredFiles() + " fichier(s) restauré(s) depuis le point de reprise");
+            toParse = new ArrayList<>();
+            for (Path file : files) {
+                if (!checkpoint.isDone(file)) {
+                    toParse.add(file);
+                } else if (sink != null && !checkpoint.classesOf(file).isEmpty()) {
+                    sink.accept(file, run.tag(file, checkpoint.classesOf(file)));
+                }
+            }
+        }
+        List<Path> remaining = toParse;
+        List<BindingEnvironment> environments = new ArrayList<>();
+        boolean completed = false;
+
+        try {
+            boolean batchMode = options.batchParsing && onDisk;
+            boolean pipelined = bindings == null && !batchMode && options.pipelining;
+            List<ClassInfo> allClasses = new ArrayList<>();
+            if (!pipelined) {
+                List<Future<List<ClassInfo>>> results = new ArrayList<>();
+                if (bindings != null && moduleOf != null) {
+                    // One createASTs call per module, each against the source roots of every module
+                    for (List<Path> unit : splitByModule(remaining, moduleOf)) {
+                        BindingEnvironment environment = environments.isEmpty() ? bindings : bindings.copy();
+                        environments.add(environment);
+                        results.add(pool.submit(() -> parseBatch(unit, workerContexts.get(), run, environment)));
                     }
-                    
-                    @Override
-                    public boolean visit(MethodDeclaration node) {
-                        if (currentClass != null) {
-                            MethodInfo currentMethod = new MethodInfo();
-                            currentMethod.name = node.getName().getIdentifier();
-                            currentMethod.nbParameters = node.parameters().size();
-                            currentMethod.classOwner = currentClass.packageName + "." + currentClass.name;
-                            int start = cu.getLineNumber(node.getStartPosition());
-                            int end = cu.getLineNumber(node.getStartPosition()) + node.getLength();
-                            currentMethod.nbLines = end - start + 1;
-                            currentClass.methods.add(currentMethod);
-                            currentClass.nbMethods++;
-                        }
-                        return super.visit(node);
+                } else if (bindings != null) {
+                    // One createASTs call, hence one lookup environment shared by every file
+                    BindingEnvironment environment = bindings;
+                    environments.add(environment);
+                    results.add(pool.submit(() -> parseBatch(remaining, workerContexts.get(), run, environment)));
+                } else if (batchMode) {
+                    int batchSize = batchSize(remaining.size(), workers, options.maxBatchSize);
+                    for (int from = 0; from < remaining.size(); from += batchSize) {
+                        List<Path> batch = remaining.subList(from, Math.min(from + batchSize, remaining.size()));
+                        results.add(pool.submit(() -> parseBatch(batch, workerContexts.get(), run, null)));
                     }
-                });
-                
-                // Second pass: collect method invocations
-                cu.accept(new ASTVisitor() {
-                    ClassInfo currentClass;
-                    MethodInfo currentMethod;
-                    int classIndex = 0;
-                    
-                    @Override
-                    public boolean visit(TypeDeclaration node) {
-                        if (!node.isInterface() && classIndex < classes.size()) {
-                            currentClass = classes.get(classIndex++);
-                        }
-                        return super.visit(node);
+                } else {
+                    for (Path p : remaining) {
+                        results.add(pool.submit(() -> run.emit(p, parseFile(p, workerContexts.get(), run))));
                     }
-                    
-                    @Override
-                    public boolean visit(MethodDeclaration node) {
-                        if (currentClass != null) {
-                            String methodName = node.getName().getIdentifier();
-                            int paramCount = node.parameters().size();
-                            
-                            // Find matching method in current class
-                            for (MethodInfo m : currentClass.methods) {
-                                if (m.name.equals(methodName) && m.nbParameters == paramCount) {
-                                    currentMethod = m;
-                                    break;
-                                }
-                            }
+                }
+                for (Future<List<ClassInfo>> result : results) {
+                    allClasses.addAll(result.get());
+                }
+            } else {
+                allClasses = parsePipelined(remaining, workers, pool, workerContexts, run);
+            }
+            if (checkpoint != null) {
+                // Restored and parsed files, merged back in file order
+                allClasses = new ArrayList<>();
+                for (Path file : files) {
+                    allClasses.addAll(run.tag(file, checkpoint.classesOf(file)));
+                }
+            }
+
+            if (sink == null) {
+                // Declarations are complete: resolve calls against the whole project
+                SignatureIndex index = SignatureIndex.build(allClasses);
+                List<Future<?>> resolutions = new ArrayList<>();
+                int chunkSize = batchSize(allClasses.size(), workers, options.maxBatchSize);
+                for (int from = 0; from < allClasses.size(); from += chunkSize) {
+                    List<ClassInfo> chunk = allClasses.subList(from, Math.min(from + chunkSize, allClasses.size()));
+                    resolutions.add(pool.submit(() -> chunk.forEach(index::resolveCalls)));
+                }
+                for (Future<?> resolution : resolutions) {
+                    resolution.get();
+                }
+            }
+
+            if (options.verbose) printSummary(run, bindings, environments, pipelined);
+            if (run.cache != null) run.cache.evict();
+            completed = true;
+            if (checkpoint != null) checkpoint.delete();
+            return allClasses;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Analyse interrompue");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+            // Failed or interrupted run: save what was completed since the last checkpoint
+            if (checkpoint != null && !completed) checkpoint.flush();
+        }
+    }
+
+    /** Prints the summary of a completed run ({@link AnalysisOptions#verbose}). */
+    private static void printSummary(Run run, BindingEnvironment bindings, List<BindingEnvironment> environments,
+                                     boolean pipelined) {
+        AnalysisOptions options = run.options;
+        if (options.loadStats != null) {
+            System.out.println(options.loadStats.summary());
+        }
+        if (options.pipelineStats != null && pipelined) {
+            System.out.println(options.pipelineStats.summary());
+        }
+        if (!run.budgetReport.isEmpty()) {
+            System.out.print(run.budgetReport.summary());
+        }
+        if (bindings != null) {
+            int misses = 0;
+            int hits = 0;
+            for (BindingEnvironment environment : environments) {
+                misses += environment.getMisses();
+                hits += environment.getHits();
+            }
+            System.out.println("Liaisons: " + bindings.getSourceRootCount() + " racine(s) de sources, "
+                + environments.size() + " unité(s) de compilation, "
+                + misses + " méthode(s) cible(s), " + hits + " appel(s) servis par le cache");
+        }
+        if (run.cache != null) {
+            System.out.println("Cache d'analyse: " + run.cache.getHits() + " fichier(s) réutilisé(s), "
+                + run.cache.getMisses() + " analysé(s)");
+        }
+    }
+
+    /** Splits files listed module after module into one list per module. */
+    private static List<List<Path>> splitByModule(List<Path> files, Map<Path, String> moduleOf) {
+        List<List<Path>> units = new ArrayList<>();
+        String current = null;
+        for (Path file : files) {
+            String module = moduleOf.get(file);
+            if (units.isEmpty() || !module.equals(current)) {
+                units.add(new ArrayList<>());
+                current = module;
+            }
+            units.get(units.size() - 1).add(file);
+        }
+        return units;
+    }
+
+    /**
+     * Chooses a batch size giving each worker a few batches (for load balancing)
+     * without exceeding the configured maximum. Also used to split call resolution.
+     */
+    private static int batchSize(int fileCount, int workers, int maxBatchSize) {
+        int perWorker = (fileCount + workers * 4 - 1) / (workers * 4);
+        return Math.max(1, Math.min(perWorker, maxBatchSize));
+    }
+
+    /**
+     * Lists the Java files to analyze under the given path with the default
+     * filters, sorted so that the analysis order does not depend on the file
+     * system iteration order.
+     * @param inputPath Path to a Java file or directory
+     * @return sorted list of .java files (or the input itself if it is a file)
+     * @throws IOException if the directory cannot be walked
+     * @see SourceScanner
+     */
+    static List<Path> collectSourceFiles(Path inputPath) throws IOException {
+        return SourceScanner.scan(inputPath, new AnalysisOptions());
+    }
+
+    /**
+     * Opens the analysis cache requested by the options, if any. A cache that
+     * cannot be opened only disables caching for this run.
+     */
+    private static AnalysisCache openCache(AnalysisOptions options) {
+        if (options.cacheDirectory == null) return null;
+        try {
+            return new AnalysisCache(options.cacheDirectory, options.cacheMaxBytes, parserConfiguration(options));
+        } catch (IOException e) {
+            System.err.println("Cache d'analyse désactivé: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Describes the parser settings that influence extraction results; used to
+     * key cache entries so that a settings change never reuses stale results.
+     */
+    static String parserConfiguration(AnalysisOptions options) {
+        return "JLS11|extractor=" + ClassExtractor.VERSION
+            + "|structureOnly=" + options.structureOnly + "|" + new TreeMap<>(ParserFactory.COMPILER_OPTIONS);
+    }
+
+    /**
+     * Parses a single Java file and extracts its classes, methods and calls.
+     * @param p Path of the Java file
+     * @param worker Parser and loader owned by the calling thread
+     * @param run Settings and shared state of the current analysis
+     * @return classes declared in the file (empty if the file cannot be read)
+     */
+    private static List<ClassInfo> parseFile(Path p, Worker worker, Run run) {
+        return parseSource(loadSource(0, p, worker.loader, run), worker.parser, run);
+    }
+
+    /**
+     * Reads and decodes a Java file, or fetches its classes from the cache.
+     * This is the I/O part of {@link #parseFile}; the returned source no longer
+     * depends on the loader's buffers.
+     * @param index Position of the file in the analysis order
+     * @param p Path of the Java file
+     * @param loader Loader owned by the calling thread
+     * @param run Settings and shared state of the current analysis
+     * @return the decoded source, or the cached (or empty, if unreadable) classes
+     */
+    private static LoadedSource loadSource(int index, Path p, SourceLoader loader, Run run) {
+        AnalysisCache cache = run.cache;
+        SourceLoader.Stats stats = run.options.loadStats;
+        try {
+            long allocStart = stats != null ? SourceLoader.threadAllocatedBytes() : -1;
+            ByteBuffer content = loader.read(p);
+            int size = content.remaining();
+            String key = null;
+            if (cache != null) {
+                key = cache.keyOf(content);
+                List<ClassInfo> cached = cache.get(key, run.symbols);
+                if (cached != null) return new LoadedSource(index, p, cached);
+            }
+
+            char[] source = loader.decode(content);
+            long allocLoaded = allocStart >= 0 ? SourceLoader.threadAllocatedBytes() - allocStart : -1;
+            return new LoadedSource(index, p, size, key, source, allocLoaded);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return new LoadedSource(index, p, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Parses a loaded source and extracts its classes, methods and calls.
+     * This is the CPU part of {@link #parseFile}.
+     * @param source Source returned by {@link #loadSource}
+     * @param parser Parser owned by the calling thread
+     * @param run Settings and shared state of the current analysis
+     * @return classes declared in the file
+     */
+    private static List<ClassInfo> parseSource(LoadedSource source, ASTParser parser, Run run) {
+        if (source.text == null) return source.classes;
+        SourceLoader.Stats stats = run.options.loadStats;
+        long allocStart = stats != null ? SourceLoader.threadAllocatedBytes() : -1;
+        String oversized = !run.options.structureOnly
+            ? FileBudget.beforeParse(source.size, source.text, run.options) : null;
+        List<ClassInfo> classes = parseWithinBudget(source, parser, run, oversized, 0);
+        if (stats != null) {
+            boolean measured = allocStart >= 0 && source.loadAllocatedBytes >= 0;
+            long parseAllocated = SourceLoader.threadAllocatedBytes() - allocStart;
+            stats.record(source.path, source.size, source.loadAllocatedBytes,
+                measured ? source.loadAllocatedBytes + parseAllocated : -1);
+        }
+        return classes;
+    }
+
+    /**
+     * Parses a source within the per-file budgets ({@link FileBudget}): full
+     * extraction first, then declarations only if the full attempt exceeded its
+     * budget, and no class at all if the degraded attempt exceeded it too.
+     * Only complete results are cached; degraded and quarantined files are
+     * added to the run's budget report.
+     * @param source Loaded source (with its text)
+     * @param parser Parser owned by the calling thread
+     * @param run Settings and shared state of the current analysis
+     * @param failure Why the full attempt is skipped or already failed, or null to try it
+     * @param spentMillis Time already spent on a failed full attempt
+     * @return classes declared in the file, possibly without calls, or none
+     */
+    private static List<ClassInfo> parseWithinBudget(LoadedSource source, ASTParser parser, Run run,
+                                                     String failure, long spentMillis) {
+        boolean structureOnly = run.options.structureOnly;
+        FileBudget budget = null;
+        if (failure == null) {
+            budget = new FileBudget(run.options);
+            try {
+                List<ClassInfo> classes = ParserFactory.parse(source.text, parser, structureOnly, budget, run.symbols);
+                if (run.cache != null) run.cache.put(source.cacheKey, classes);
+                return classes;
+            } catch (FileBudget.Exceeded e) {
+                failure = e.getMessage();
+                spentMillis += budget.elapsedMillis();
+            }
+        }
+        if (!structureOnly) {
+            budget = new FileBudget(run.options);
+            try {
+                List<ClassInfo> classes = ParserFactory.parse(source.text, parser, true, budget, run.symbols);
+                run.budgetReport.add(new FileBudget.Entry(source.path, source.size, FileBudget.Outcome.DEGRADED,
+                    failure, budget.getNodes(), spentMillis + budget.elapsedMillis()));
+                return classes;
+            } catch (FileBudget.Exceeded e) {
+                failure = failure + ", puis " + e.getMessage();
+            }
+        }
+        run.budgetReport.add(new FileBudget.Entry(source.path, source.size, FileBudget.Outcome.QUARANTINED,
+            failure, budget != null ? budget.getNodes() : 0, spentMillis + (budget != null ? budget.elapsedMillis() : 0)));
+        return new ArrayList<>();
+    }
+
+    /**
+     * Parses files with a two-stage pipeline: an I/O stage reads, hashes and
+     * decodes files ({@link #loadSource}) while the parser workers parse and
+     * extract them ({@link #parseSource}).
+     * <p>
+     * Reading runs on virtual threads when the JVM provides them, on a pool of
+     * {@link AnalysisOptions#ioConcurrency} platform threads otherwise; at most
+     * that many files are read at once, each with a pooled {@link SourceLoader}.
+     * Decoded sources wait for the parsers in a queue of
+     * {@link AnalysisOptions#pipelineQueueCapacity} entries: when it is full,
+     * reading pauses, which bounds the number of sources held in memory.
+     * Results are merged back in file order, as in the other modes.
+     * @param files Files to parse, in analysis order
+     * @param workers Number of parser workers
+     * @param pool Parser worker pool (at least <code>workers</code> threads)
+     * @param workerContexts Per-thread parsers
+     * @param run Settings and shared state of the current analysis
+     * @return classes declared in the files, in file order
+     */
+    private static List<ClassInfo> parsePipelined(List<Path> files, int workers, ExecutorService pool,
+                                                  ThreadLocal<Worker> workerContexts, Run run)
+            throws InterruptedException, ExecutionException {
+        AnalysisOptions options = run.options;
+        PipelineStats stats = options.pipelineStats != null ? options.pipelineStats : new PipelineStats();
+        BlockingQueue<LoadedSource> queue = new ArrayBlockingQueue<>(Math.max(1, options.pipelineQueueCapacity));
+        int ioConcurrency = Math.max(1, options.ioConcurrency);
+        Semaphore reading = new Semaphore(ioConcurrency);
+        Queue<SourceLoader> idleLoaders = new ConcurrentLinkedQueue<>();
+        // First failure of the parse stage; the stages then drain without working
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<List<ClassInfo>> perFile = new ArrayList<>(Collections.nCopies(files.size(), Collections.emptyList()));
+
+        ExecutorService io = newIoExecutor(ioConcurrency);
+        try {
+            List<Future<?>> parsers = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                parsers.add(pool.submit(() -> {
+                    ASTParser parser = workerContexts.get().parser;
+                    while (true) {
+                        long waitStart = System.nanoTime();
+                        LoadedSource source = queue.take();
+                        stats.parse.waited(System.nanoTime() - waitStart);
+                        if (source == LoadedSource.END) return null;
+                        stats.sampleQueue(queue.size());
+                        if (failure.get() != null) continue;
+                        try {
+                            long start = System.nanoTime();
+                            List<ClassInfo> classes = parseSource(source, parser, run);
+                            perFile.set(source.index, run.emit(source.path, classes));
+                            stats.parse.processed(start, System.nanoTime());
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
                         }
-                        return super.visit(node);
                     }
-                    
-                    @Override
-                    public void endVisit(MethodDeclaration node) {
-                        currentMethod = null;
+                }));
+            }
+
+            List<Future<?>> reads = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                int index = i;
+                reads.add(io.submit(() -> {
+                    if (failure.get() != null) return null;
+                    LoadedSource source;
+                    reading.acquire();
+                    SourceLoader loader = idleLoaders.poll();
+                    try {
+                        if (loader == null) loader = new SourceLoader();
+                        long start = System.nanoTime();
+                        source = loadSource(index, files.get(index), loader, run);
+                        stats.read.processed(start, System.nanoTime());
+                    } finally {
+                        if (loader != null) idleLoaders.add(loader);
+                        reading.release();
                     }
-                    
+                    long waitStart = System.nanoTime();
+                    queue.put(source);
+                    stats.read.waited(System.nanoTime() - waitStart);
+                    stats.sampleQueue(queue.size());
+                    return null;
+                }));
+            }
+
+            for (Future<?> read : reads) {
+                read.get();
+            }
+            for (int w = 0; w < workers; w++) {
+                queue.put(LoadedSource.END);
+            }
+            for (Future<?> parser : parsers) {
+                parser.get();
+            }
+        } finally {
+            io.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+
+        List<ClassInfo> classes = new ArrayList<>();
+        for (List<ClassInfo> fileClasses : perFile) {
+            classes.addAll(fileClasses);
+        }
+        return classes;
+    }
+
+    /**
+     * Creates the executor of the I/O stage: one virtual thread per task when
+     * the JVM supports it (Java 21+, looked up reflectively as the project
+     * targets older releases), otherwise a fixed pool of daemon threads.
+     */
+    private static ExecutorService newIoExecutor(int threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(threads, new WorkerThreadFactory("analyzer-io-"));
+        }
+    }
+
+    /**
+     * Parses a slice of files with a single {@link ASTParser#createASTs} call.
+     * JDT reads the files itself and hands every {@link CompilationUnit} to a
+     * {@link FileASTRequestor}, which extracts its classes immediately so that
+     * the AST can be released before the next file is parsed. Files found in
+     * the cache are left out of the createASTs call, and so are the files that
+     * fail {@link FileBudget#beforeParse}. A file that takes longer than its
+     * time budget cancels the call ({@link FileBudget.BatchClock}); the files
+     * that were not delivered yet are then parsed one by one.
+     * <p>
+     * With a {@link BindingEnvironment}, the batch is compiled with bindings
+     * against that environment and calls are recorded with their exact target.
+     * @param batch Files to parse, in analysis order
+     * @param worker Parser and loader owned by the calling thread
+     * @param run Settings and shared state of the current analysis
+     * @param bindings Environment to resolve bindings in, or null
+     * @return classes declared in the batch, in file order
+     */
+    private static List<ClassInfo> parseBatch(List<Path> batch, Worker worker, Run run, BindingEnvironment bindings) {
+        ASTParser parser = worker.parser;
+        AnalysisCache cache = run.cache;
+        List<List<ClassInfo>> perFile = new ArrayList<>(Collections.nCopies(batch.size(), Collections.emptyList()));
+        String[] keys = new String[batch.size()];
+        // Files to parse on their own, within their budget: why the batch attempt was skipped or failed
+        String[] failures = new String[batch.size()];
+        long[] spentMillis = new long[batch.size()];
+        // Files handed to createASTs, and those JDT delivered back
+        boolean[] submitted = new boolean[batch.size()];
+        boolean[] delivered = new boolean[batch.size()];
+        List<String> sourcePaths = new ArrayList<>();
+        Map<String, Integer> indexByPath = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                long size;
+                ByteBuffer content = null;
+                if (cache != null) {
+                    content = worker.loader.read(batch.get(i));
+                    size = content.remaining();
+                    keys[i] = cache.keyOf(content);
+                    List<ClassInfo> cached = cache.get(keys[i], run.symbols);
+                    if (cached != null) {
+                        perFile.set(i, run.emit(batch.get(i), cached));
+                        continue;
+                    }
+                } else {
+                    size = Files.size(batch.get(i));
+                }
+                if (!run.options.structureOnly) {
+                    // Large files are read to count their tokens before JDT parses them
+                    char[] text = null;
+                    if (size > run.options.maxTokens && size <= run.options.maxFileBytes) {
+                        if (content == null) content = worker.loader.read(batch.get(i));
+                        text = worker.loader.decode(content);
+                    }
+                    failures[i] = FileBudget.beforeParse(size, text, run.options);
+                    if (failures[i] != null) continue;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+            String sourcePath = batch.get(i).toAbsolutePath().toString();
+            sourcePaths.add(sourcePath);
+            indexByPath.put(sourcePath, i);
+            submitted[i] = true;
+        }
+
+        if (!sourcePaths.isEmpty()) {
+            String[] encodings = new String[sourcePaths.size()];
+            Arrays.fill(encodings, StandardCharsets.UTF_8.name());
+            ParserFactory.prepare(parser, run.options.structureOnly, bindings != null);
+            if (bindings != null) {
+                bindings.configure(parser);
+            } else {
+                parser.setEnvironment(new String[0], new String[0], null, false);
+            }
+            // Without bindings JDT parses the files one after the other, each under the time budget.
+            // With bindings it compiles the batch as a whole: only extraction is budgeted.
+            FileBudget.BatchClock clock = bindings == null ? new FileBudget.BatchClock(run.options) : null;
+            try {
+                parser.createASTs(sourcePaths.toArray(new String[0]), encodings, new String[0], new FileASTRequestor() {
                     @Override
-                    public boolean visit(MethodInvocation node) {
-                        if (currentMethod != null && currentClass != null) {
-                            String calledMethodName = node.getName().getIdentifier();
-                            int paramCount = node.arguments().size();
-                            
-                            // Store call signature
-                            String callSignature = calledMethodName + ":" + paramCount;
-                            currentMethod.callSignatures.add(callSignature);
-                            
-                            // Also try to find and add to calls list for call graph
-                            MethodInfo foundMethod = null;
-                            
-                            // First try current class
-                            for (MethodInfo m : currentClass.methods) {
-                                if (m.name.equals(calledMethodName) && m.nbParameters == paramCount) {
-                                    foundMethod = m;
-                                    break;
-                                }
-                            }
-                            
-                            // If not found, try other classes
-                            if (foundMethod == null) {
-                                for (ClassInfo otherClass : classes) {
-                                    if (!otherClass.equals(currentClass)) {
-                                        for (MethodInfo m : otherClass.methods) {
-                                            if (m.name.equals(calledMethodName) && m.nbParameters == paramCount) {
-                                                foundMethod = m;
-                                                break;
-                                            }
-                                        }
-                                        if (foundMethod != null) break;
-                                    }
-                                }
-                            }
-                            
-                            if (foundMethod != null) {
-                                currentMethod.calls.add(foundMethod);
+                    public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                        Integer index = indexByPath.get(sourceFilePath);
+                        if (index != null) {
+                            delivered[index] = true;
+                            FileBudget budget = clock != null
+                                ? new FileBudget(run.options, clock.unitStart()) : new FileBudget(run.options);
+                            try {
+                                budget.checkTime();
+                                List<ClassInfo> classes = ClassExtractor.extract(ast, !run.options.structureOnly,
+                                    bindings, budget, run.symbols);
+                                if (cache != null) cache.put(keys[index], classes);
+                                perFile.set(index, run.emit(batch.get(index), classes));
+                            } catch (FileBudget.Exceeded e) {
+                                failures[index] = e.getMessage();
+                                spentMillis[index] = budget.elapsedMillis();
                             }
                         }
-                        return super.visit(node);
+                        if (clock != null) clock.nextUnit();
+                    }
+                }, clock);
+            } catch (OperationCanceledException e) {
+                // The file in progress, the first one not delivered, spent its time budget
+                for (String sourcePath : sourcePaths) {
+                    int index = indexByPath.get(sourcePath);
+                    if (!delivered[index]) {
+                        failures[index] = clock.failure();
+                        spentMillis[index] = clock.unitMillis();
+                        break;
                     }
-                });
-                
-                allClasses.addAll(classes);
-                
-            } catch(IOException e) {
+                }
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            // Files left out of a cancelled batch get their full attempt on their own
+            if (failures[i] == null && (!submitted[i] || delivered[i])) continue;
+            try {
+                ByteBuffer content = worker.loader.read(batch.get(i));
+                int size = content.remaining();
+                LoadedSource source = new LoadedSource(i, batch.get(i), size, keys[i], worker.loader.decode(content), -1);
+                perFile.set(i, run.emit(batch.get(i), parseWithinBudget(source, parser, run, failures[i], spentMillis[i])));
+            } catch (IOException e) {
                 e.printStackTrace();
             }
-        });
-        
-        return allClasses;
+        }
+
+        List<ClassInfo> classes = new ArrayList<>();
+        for (List<ClassInfo> fileClasses : perFile) {
+            classes.addAll(fileClasses);
+        }
+        return classes;
+    }
+
+    /** Per-thread parsing state: each worker reuses its own parser and source buffers. */
+    private static class Worker {
+        final ASTParser parser = ParserFactory.newParser();
+        final SourceLoader loader = new SourceLoader();
+    }
+
+    /** A file read by the I/O stage: either its decoded text or its final classes. */
+    private static class LoadedSource {
+        /** Marks the end of the input for one parser worker of the pipeline. */
+        static final LoadedSource END = new LoadedSource(-1, null, Collections.emptyList());
+
+        final int index;
+        final Path path;
+        final int size;
+        final String cacheKey;
+        /** Decoded source, or null when {@link #classes} is already known. */
+        final char[] text;
+        /** Classes read from the cache (or empty for an unreadable file) when there is no text. */
+        final List<ClassInfo> classes;
+        /** Heap allocated while reading and decoding, or -1 when not measured. */
+        final long loadAllocatedBytes;
+
+        LoadedSource(int index, Path path, int size, String cacheKey, char[] text, long loadAllocatedBytes) {
+            this.index = index;
+            this.path = path;
+            this.size = size;
+            this.cacheKey = cacheKey;
+            this.text = text;
+            this.classes = null;
+            this.loadAllocatedBytes = loadAllocatedBytes;
+        }
+
+        LoadedSource(int index, Path path, List<ClassInfo> classes) {
+            this.index = index;
+            this.path = path;
+            this.size = 0;
+            this.cacheKey = null;
+            this.text = null;
+            this.classes = classes;
+            this.loadAllocatedBytes = -1;
+        }
+    }
+
+    /** Settings and shared state of one analysis run. */
+    private static class Run {
+        final AnalysisOptions options;
+        /** Persistent cache, or null when disabled. */
+        final AnalysisCache cache;
+        /** Receives each file's classes as soon as they are extracted, or null. */
+        final BiConsumer<Path, List<ClassInfo>> sink;
+        /** Progress saved for a later resume, or null. */
+        final AnalysisCheckpoint checkpoint;
+        /** Files that exceeded their budget. */
+        final FileBudget.Report budgetReport;
+        /** Build module of each file, or null outside a module analysis. */
+        final Map<Path, String> moduleOf;
+        /** Table every class of the run is interned in. */
+        final SymbolTable symbols;
+
+        Run(AnalysisOptions options, AnalysisCache cache, BiConsumer<Path, List<ClassInfo>> sink,
+            AnalysisCheckpoint checkpoint, Map<Path, String> moduleOf, SymbolTable symbols) {
+            this.options = options;
+            this.cache = cache;
+            this.sink = sink;
+            this.checkpoint = checkpoint;
+            this.budgetReport = options.budgetReport != null ? options.budgetReport : new FileBudget.Report();
+            this.moduleOf = moduleOf;
+            this.symbols = symbols;
+        }
+
+        /** Records the file's module on its classes (neither cached nor checkpointed) and returns them. */
+        List<ClassInfo> tag(Path file, List<ClassInfo> classes) {
+            if (moduleOf != null) {
+                String module = moduleOf.get(file);
+                for (ClassInfo cls : classes) {
+                    cls.module = module;
+                }
+            }
+            return classes;
+        }
+
+        /** Hands a file's classes to the checkpoint and the sink, if any, and returns them. */
+        List<ClassInfo> emit(Path file, List<ClassInfo> classes) {
+            tag(file, classes);
+            if (checkpoint != null) checkpoint.completed(file, classes);
+            if (sink != null && !classes.isEmpty()) sink.accept(file, classes);
+            return classes;
+        }
+    }
+
+    /**
+     * Creates daemon worker threads so that a pending analysis never keeps
+     * the JVM alive after the GUI has been closed.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 }
\ No newline at end of file
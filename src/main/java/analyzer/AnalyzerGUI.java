@@ -19,6 +19,7 @@ import analyzer.Utils.ClassInfo;
  *   <li>Display project statistics</li>
  *   <li>Generate interactive HTML visualizations: call graph and coupling graph</li>
  *   <li>Run hierarchical module identification (optionally using Spoon)</li>
+ *   <li>Watch the analyzed folder and refresh the statistics and reports on every save</li>
  * </ul>
  * </p>
  *
@@ -29,9 +30,14 @@ import analyzer.Utils.ClassInfo;
  */
 public class AnalyzerGUI {
     private List<ClassInfo> allClasses;
+    /** Call graph of allClasses, built on first use and dropped when they change (unused while watching). */
+    private CallGraph callGraph;
     private Path currentPath;
     private JFrame mainFrame;
     private JPanel contentPanel;
+    private ProjectWatcher watcher;
+    private boolean statisticsShown;
+    private boolean structureOnly;
     private static final Color PRIMARY_COLOR = new Color(41, 128, 185);
     private static final Color SECONDARY_COLOR = new Color(52, 73, 94);
     private static final Color ACCENT_COLOR = new Color(26, 188, 156);
@@ -52,7 +58,7 @@ public class AnalyzerGUI {
     private void showFolderSelector() {
         JFrame selectorFrame = new JFrame("Analyzer - Sélection du dossier");
         selectorFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        selectorFrame.setSize(600, 300);
+        selectorFrame.setSize(600, 340);
         selectorFrame.setLocationRelativeTo(null);
         selectorFrame.setResizable(false);
 
@@ -65,7 +71,7 @@ public class AnalyzerGUI {
         titleLabel.setForeground(PRIMARY_COLOR);
         panel.add(titleLabel, BorderLayout.NORTH);
 
-        JPanel centerPanel = new JPanel(new GridLayout(3, 1, 10, 10));
+        JPanel centerPanel = new JPanel(new GridLayout(4, 1, 10, 10));
         centerPanel.setBackground(BG_COLOR);
 
         JLabel instructionLabel = new JLabel("<html>Sélectionnez un dossier ou un fichier Java à analyser</html>");
@@ -79,6 +85,12 @@ public class AnalyzerGUI {
         pathField.setBorder(BorderFactory.createLineBorder(PRIMARY_COLOR, 1));
         centerPanel.add(pathField);
 
+        JCheckBox structureCheck = new JCheckBox("Structure seulement (plus rapide, sans graphe d'appels)");
+        structureCheck.setBackground(BG_COLOR);
+        structureCheck.setFont(new Font("Arial", Font.PLAIN, 13));
+        structureCheck.setSelected(structureOnly);
+        centerPanel.add(structureCheck);
+
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
         buttonPanel.setBackground(BG_COLOR);
 
@@ -102,26 +114,34 @@ public class AnalyzerGUI {
         analyzeButton.addActionListener(e -> {
             browseButton.setEnabled(false);
             analyzeButton.setEnabled(false);
+            structureCheck.setEnabled(false);
             browseButton.setText("Analyse en cours...");
+            structureOnly = structureCheck.isSelected();
 
+            FileBudget.Report budgetReport = new FileBudget.Report();
             SwingWorker<List<ClassInfo>, Void> worker = new SwingWorker<List<ClassInfo>, Void>() {
                 @Override
                 protected List<ClassInfo> doInBackground() throws Exception {
-                    return Analyzer.analyzeSource(currentPath);
+                    AnalysisOptions options = analysisOptions();
+                    options.budgetReport = budgetReport;
+                    return Analyzer.analyzeSource(currentPath, options);
                 }
 
                 @Override
                 protected void done() {
                     try {
                         allClasses = get();
+                        callGraph = null;
                         selectorFrame.dispose();
                         showMainWindow();
+                        if (!budgetReport.isEmpty()) showBudgetReport(budgetReport);
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(selectorFrame,
                             "Erreur lors de l'analyse: " + ex.getMessage(),
                             "Erreur", JOptionPane.ERROR_MESSAGE);
                         browseButton.setEnabled(true);
                         analyzeButton.setEnabled(true);
+                        structureCheck.setEnabled(true);
                         browseButton.setText("Parcourir");
                     }
                 }
@@ -136,6 +156,30 @@ public class AnalyzerGUI {
         panel.add(centerPanel, BorderLayout.CENTER);
         selectorFrame.add(panel);
         selectorFrame.setVisible(true);
+        // Compile the parser while the user picks a folder
+        ParserFactory.warmUpInBackground();
+    }
+
+    /**
+     * Options used by the analyses started from the GUI: persistent cache,
+     * checkpoints (an analysis interrupted by closing the window resumes on
+     * the next run) and the structure-only mode chosen in the folder selector.
+     */
+    private AnalysisOptions analysisOptions() {
+        AnalysisOptions options = new AnalysisOptions();
+        options.cacheDirectory = AnalysisCache.defaultDirectory();
+        options.checkpointDirectory = AnalysisCheckpoint.defaultDirectory();
+        options.structureOnly = structureOnly;
+        return options;
+    }
+
+    /** Lists the files degraded or quarantined by the per-file budgets. */
+    private void showBudgetReport(FileBudget.Report report) {
+        JTextArea text = new JTextArea(report.summary(), 12, 90);
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(mainFrame, new JScrollPane(text),
+            report.getEntries().size() + " fichier(s) hors budget", JOptionPane.WARNING_MESSAGE);
     }
 
     /**
@@ -157,12 +201,22 @@ public class AnalyzerGUI {
         JMenu fileMenu = createMenu("Fichier");
         JMenuItem openItem = new JMenuItem("Ouvrir un autre dossier");
         openItem.addActionListener(e -> {
+            stopWatching();
             mainFrame.dispose();
             showFolderSelector();
         });
+        JCheckBoxMenuItem watchItem = new JCheckBoxMenuItem("Surveiller les modifications");
+        watchItem.addActionListener(e -> {
+            if (watchItem.isSelected()) {
+                startWatching(watchItem);
+            } else {
+                stopWatching();
+            }
+        });
         JMenuItem exitItem = new JMenuItem("Quitter");
         exitItem.addActionListener(e -> System.exit(0));
         fileMenu.add(openItem);
+        fileMenu.add(watchItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         menuBar.add(fileMenu);
@@ -184,6 +238,12 @@ public class AnalyzerGUI {
         JButton callGraphBtn = createSideButton("📈 Graphe d'appels");
         JButton couplingBtn = createSideButton("🔗 Couplage");
 
+        if (structureOnly) {
+            // Method bodies were skipped, so no call was extracted
+            callGraphBtn.setEnabled(false);
+            callGraphBtn.setToolTipText("Indisponible en mode structure seulement");
+        }
+
         statsBtn.addActionListener(e -> showStatistics());
         callGraphBtn.addActionListener(e -> showCallGraph());
         couplingBtn.addActionListener(e -> showCoupling());
@@ -208,11 +268,84 @@ public class AnalyzerGUI {
         showStatistics();
     }
 
+    /**
+     * Starts watching the current folder. The initial analysis runs in a
+     * SwingWorker; afterwards every batch of saved files updates the classes,
+     * rewrites coupling_graph.html when the couplings changed and refreshes
+     * the statistics view if it is displayed. modules.html, which needs a full
+     * clustering, is only generated from the coupling view.
+     *
+     * @param watchItem menu item to uncheck if the watcher cannot start
+     */
+    private void startWatching(JCheckBoxMenuItem watchItem) {
+        ProjectWatcher newWatcher = new ProjectWatcher(currentPath, analysisOptions());
+        newWatcher.addListener((w, update) -> {
+            // Without calls (structure only) the coupling graph would be empty
+            if (!structureOnly && update.couplingsChanged) {
+                try {
+                    w.writeCouplingGraph("coupling_graph.html");
+                } catch (IOException ex) {
+                    System.err.println("Impossible de mettre à jour les rapports: " + ex.getMessage());
+                }
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (watcher != w) return;
+                allClasses = w.getClasses();
+                callGraph = null;
+                mainFrame.setTitle("Analyzer - Analyse du code Java (surveillance: " + update.parsedFiles
+                    + " fichier(s) ré-analysé(s), " + update.removedFiles + " supprimé(s), "
+                    + update.millis + " ms)");
+                if (statisticsShown) showStatistics();
+            });
+        });
+
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                newWatcher.start();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    watcher = newWatcher;
+                    allClasses = newWatcher.getClasses();
+                    callGraph = null;
+                    mainFrame.setTitle("Analyzer - Analyse du code Java (surveillance active)");
+                    if (statisticsShown) showStatistics();
+                } catch (Exception ex) {
+                    watchItem.setSelected(false);
+                    JOptionPane.showMessageDialog(mainFrame,
+                        "Impossible de surveiller le dossier: " + ex.getMessage(),
+                        "Erreur", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Stops the folder watcher, if any. The last analyzed classes are kept.
+     */
+    private void stopWatching() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            System.err.println("Arrêt de la surveillance: " + e.getMessage());
+        }
+        watcher = null;
+        if (mainFrame != null) mainFrame.setTitle("Analyzer - Analyse du code Java");
+    }
+
     /**
      * Replaces the content panel with the statistics view.
      * This delegates to AppStatsGUINew which constructs the visual elements.
      */
     private void showStatistics() {
+        statisticsShown = true;
         contentPanel.removeAll();
         JPanel statsPanel = new AppStatsGUINew(allClasses).createStatsPanel();
         contentPanel.add(statsPanel, BorderLayout.CENTER);
@@ -226,14 +359,26 @@ public class AnalyzerGUI {
      * in the system default browser.
      */
     private void showCallGraph() {
+        statisticsShown = false;
         contentPanel.removeAll();
         JPanel graphPanel = createGraphPanel("Graphe d'Appels",
-            () -> CallGraphBuilder.generateHtmlGraph(allClasses, "callgraph.html"));
+            () -> CallGraphBuilder.generateHtmlGraph(callGraph(), "callgraph.html"));
         contentPanel.add(graphPanel, BorderLayout.CENTER);
         contentPanel.revalidate();
         contentPanel.repaint();
     }
 
+    /**
+     * Returns the call graph of the current classes, building it once per
+     * analysis. While watching, the watcher re-resolves calls on its own
+     * thread: its graph is taken instead, built under its lock.
+     */
+    private CallGraph callGraph() {
+        if (watcher != null) return watcher.getCallGraph();
+        if (callGraph == null) callGraph = CallGraph.of(allClasses);
+        return callGraph;
+    }
+
     /**
      * Builds the coupling analysis panel. Supports two modes:
      * <ul>
@@ -244,6 +389,7 @@ public class AnalyzerGUI {
      * coupling_graph.html and modules.html and then opened in the browser.
      */
     private void showCoupling() {
+        statisticsShown = false;
         contentPanel.removeAll();
 
         JPanel panel = new JPanel(new BorderLayout(15, 15));
@@ -290,7 +436,12 @@ public class AnalyzerGUI {
         JCheckBox useSpoonCheck = new JCheckBox("Utiliser Spoon pour cette analyse");
         useSpoonCheck.setBackground(BG_COLOR);
         useSpoonCheck.setFont(new Font("Arial", Font.PLAIN, 13));
-        useSpoonCheck.setSelected(false);
+        useSpoonCheck.setSelected(structureOnly);
+        if (structureOnly) {
+            // The JDT analysis ran without method bodies: no call to couple classes
+            useSpoonCheck.setEnabled(false);
+            useSpoonCheck.setToolTipText("Mode structure seulement: le couplage est calculé avec Spoon");
+        }
         centerPanel.add(useSpoonCheck, gbc);
 
         gbc.gridy = 3;
@@ -318,13 +469,17 @@ public class AnalyzerGUI {
                 @Override
                 protected Void doInBackground() throws Exception {
                     if (useSpoon) {
-                        SpoonRunner.runSpoonAnalysis(currentPath, finalThreshold);
+                        // One model per shard of packages: same result, bounded memory
+                        AnalysisOptions spoonOptions = analysisOptions();
+                        spoonOptions.spoonSharding = true;
+                        SpoonRunner.runSpoonAnalysis(currentPath, finalThreshold, spoonOptions);
                     } else {
                         ClassCouplingAnalyzer analyzer = new ClassCouplingAnalyzer(allClasses);
                         analyzer.generateHtmlGraph("coupling_graph.html");
 
                         HierarchicalClusteringAnalyzer hc =
-                            new HierarchicalClusteringAnalyzer(allClasses, analyzer.getNormalizedCouplings());
+                            new HierarchicalClusteringAnalyzer(allClasses, analyzer);
+                        hc.setCheckpoint(AnalysisCheckpoint.defaultDirectory(), AnalysisCheckpoint.DEFAULT_INTERVAL_MILLIS);
                         hc.runClusteringAndIdentifyModules(finalThreshold);
                         hc.generateHtmlModules("modules.html");
                     }
@@ -0,0 +1,173 @@
+package analyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * Name environment of a binding-resolved analysis
+ * ({@link AnalysisOptions#resolveBindings}): the source roots of the analyzed
+ * files plus the jars of {@link AnalysisOptions#classpath}, handed to a single
+ * <code>createASTs</code> call so that every file is compiled against the same
+ * lookup environment.
+ *
+ * <p>Calls are then recorded with their exact target, in the form
+ * "pkg.Class#name:paramCount" (see {@link #targetOf}). The owner is the class as
+ * modelled by {@link ClassExtractor}: package plus simple name, anonymous
+ * classes being folded into their enclosing class. A call whose target is not
+ * a class of the project (JDK method, interface method) therefore matches no
+ * declaration instead of every class declaring the same name.</p>
+ *
+ * <p>An instance is used by one thread at a time: resolved targets are cached
+ * per binding object, which JDT shares for every reference to the same method
+ * within one environment.</p>
+ */
+class BindingEnvironment {
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;");
+
+    private final String[] sourceRoots;
+    private final String[] classpath;
+    private final Map<IMethodBinding, String> targets = new IdentityHashMap<>();
+    private int hits;
+    private int misses;
+
+    private BindingEnvironment(String[] sourceRoots, String[] classpath) {
+        this.sourceRoots = sourceRoots;
+        this.classpath = classpath;
+    }
+
+    /**
+     * Builds the environment of the given files.
+     * @param files Java files on disk
+     * @param classpath Jars or class folders the sources depend on
+     * @return environment sharing one source root per package hierarchy
+     */
+    static BindingEnvironment of(List<Path> files, List<Path> classpath) {
+        Set<String> roots = new LinkedHashSet<>();
+        Set<Path> seen = new HashSet<>();
+        for (Path file : files) {
+            Path directory = file.toAbsolutePath().getParent();
+            // One file per folder is enough: all files of a folder share the package
+            if (directory == null || !seen.add(directory)) continue;
+            Path root = sourceRoot(file.toAbsolutePath(), directory);
+            if (root != null) roots.add(root.toString());
+        }
+        List<String> entries = new ArrayList<>();
+        for (Path entry : classpath) {
+            entries.add(entry.toAbsolutePath().toString());
+        }
+        return new BindingEnvironment(roots.toArray(new String[0]), entries.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the folder holding the root of the file's package hierarchy,
+     * or its own folder when the package does not match the folder layout.
+     */
+    private static Path sourceRoot(Path file, Path directory) {
+        String packageName = "";
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = PACKAGE.matcher(line);
+                if (matcher.find()) {
+                    packageName = matcher.group(1);
+                    break;
+                }
+                String trimmed = line.trim();
+                // The package declaration precedes imports and types
+                if (trimmed.startsWith("import ") || trimmed.contains("class ") || trimmed.contains("interface ")) break;
+            }
+        } catch (IOException e) {
+            return directory;
+        }
+        Path root = directory;
+        if (!packageName.isEmpty()) {
+            String[] segments = packageName.split("\\.");
+            for (int i = segments.length - 1; i >= 0; i--) {
+                if (root == null || root.getFileName() == null
+                    || !root.getFileName().toString().equals(segments[i])) {
+                    return directory;
+                }
+                root = root.getParent();
+            }
+        }
+        return root;
+    }
+
+    /** Returns an environment with the same paths and its own target cache, for another thread. */
+    BindingEnvironment copy() {
+        return new BindingEnvironment(sourceRoots, classpath);
+    }
+
+    /** Sets the parser's classpath and source path (plus the running JDK). */
+    void configure(ASTParser parser) {
+        parser.setEnvironment(classpath, sourceRoots, null, true);
+    }
+
+    /**
+     * Returns the exact target of a resolved call, as
+     * "pkg.Class#name:paramCount", caching the result per binding.
+     * @param binding Method binding of an invocation
+     * @return the call signature to record
+     */
+    String targetOf(IMethodBinding binding) {
+        String target = targets.get(binding);
+        if (target != null) {
+            hits++;
+            return target;
+        }
+        misses++;
+        IMethodBinding declaration = binding.getMethodDeclaration();
+        ITypeBinding owner = declaration.getDeclaringClass().getErasure();
+        while (owner.isAnonymous() && owner.getDeclaringClass() != null) {
+            owner = owner.getDeclaringClass();
+        }
+        String packageName = owner.getPackage() != null ? owner.getPackage().getName() : "";
+        // Name within the package, as given by ClassExtractor: "Outer$Inner"
+        StringBuilder name = new StringBuilder(simpleNameOf(owner));
+        for (ITypeBinding outer = owner.getDeclaringClass(); outer != null; outer = outer.getDeclaringClass()) {
+            if (!outer.isAnonymous()) name.insert(0, '$').insert(0, simpleNameOf(outer));
+        }
+        target = packageName + "." + name + "#" + declaration.getName() + ":"
+            + declaration.getParameterTypes().length;
+        targets.put(binding, target);
+        return target;
+    }
+
+    /** Simple name of a type, without its type parameters. */
+    private static String simpleNameOf(ITypeBinding type) {
+        String name = type.getName();
+        int typeParameters = name.indexOf('<');
+        return typeParameters >= 0 ? name.substring(0, typeParameters) : name;
+    }
+
+    /** Number of calls whose target came from the cache. */
+    int getHits() {
+        return hits;
+    }
+
+    /** Number of distinct bindings converted. */
+    int getMisses() {
+        return misses;
+    }
+
+    int getSourceRootCount() {
+        return sourceRoots.length;
+    }
+}
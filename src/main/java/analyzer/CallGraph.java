@@ -0,0 +1,195 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Immutable method call graph in compressed sparse row (CSR) form, built once
+ * from the resolved calls ({@link MethodInfo#calls}) of an analysis.
+ *
+ * <p>Methods are numbered from 0 in class order, then declaration order; the
+ * methods of class <code>c</code> are the contiguous range
+ * <code>[firstMethod(c), endMethod(c))</code> and {@link #owner(int)} gives the
+ * class of a method with one array read. The edges are two flat arrays:
+ * <ul>
+ *   <li>calls: the callees of method <code>m</code> are
+ *       <code>target(k)</code> for <code>k</code> in
+ *       <code>[firstCall(m), endCall(m))</code>, in call order, repeated calls
+ *       included;</li>
+ *   <li>callers (the transposed graph): the callers of method <code>m</code>
+ *       are <code>caller(k)</code> for <code>k</code> in
+ *       <code>[firstCaller(m), endCaller(m))</code>, by increasing method number,
+ *       once per call.</li>
+ * </ul>
+ * Calls to a method outside the given classes are left out.</p>
+ *
+ * <p>A graph is a snapshot: build a new one when the classes are resolved
+ * again. It can be shared between threads.</p>
+ */
+final class CallGraph {
+
+    private final ClassInfo[] classes;
+    /** classCount + 1 offsets into the method arrays. */
+    private final int[] methodOffsets;
+    private final MethodInfo[] methods;
+    private final int[] owners;
+
+    /** methodCount + 1 offsets into targets. */
+    private final int[] callOffsets;
+    private final int[] targets;
+    /** methodCount + 1 offsets into callers. */
+    private final int[] callerOffsets;
+    private final int[] callers;
+
+    private CallGraph(ClassInfo[] classes, int[] methodOffsets, MethodInfo[] methods, int[] owners,
+                      int[] callOffsets, int[] targets, int[] callerOffsets, int[] callers) {
+        this.classes = classes;
+        this.methodOffsets = methodOffsets;
+        this.methods = methods;
+        this.owners = owners;
+        this.callOffsets = callOffsets;
+        this.targets = targets;
+        this.callerOffsets = callerOffsets;
+        this.callers = callers;
+    }
+
+    /**
+     * Builds the call graph of a list of classes whose calls are resolved.
+     * @param classes Classes of the analysis, in project order
+     * @return the graph of their methods, numbered in that order
+     */
+    static CallGraph of(List<ClassInfo> classes) {
+        ClassInfo[] classArray = classes.toArray(new ClassInfo[0]);
+        int[] methodOffsets = new int[classArray.length + 1];
+        for (int c = 0; c < classArray.length; c++) {
+            methodOffsets[c + 1] = methodOffsets[c] + classArray[c].methods.size();
+        }
+        int methodCount = methodOffsets[classArray.length];
+
+        // Number of each method, only needed while the edges are built
+        MethodInfo[] methods = new MethodInfo[methodCount];
+        int[] owners = new int[methodCount];
+        Map<MethodInfo, Integer> numbers = new IdentityHashMap<>(methodCount);
+        int m = 0;
+        for (int c = 0; c < classArray.length; c++) {
+            for (MethodInfo method : classArray[c].methods) {
+                methods[m] = method;
+                owners[m] = c;
+                numbers.put(method, m);
+                m++;
+            }
+        }
+
+        // Calls: each callee is looked up once, then copied into its row
+        int[] callOffsets = new int[methodCount + 1];
+        int[] resolved = new int[16];
+        int callCount = 0;
+        for (m = 0; m < methodCount; m++) {
+            for (MethodInfo callee : methods[m].calls) {
+                Integer target = numbers.get(callee);
+                if (target == null) continue;
+                if (callCount == resolved.length) {
+                    resolved = Arrays.copyOf(resolved, callCount * 2);
+                }
+                resolved[callCount++] = target;
+            }
+            callOffsets[m + 1] = callCount;
+        }
+        int[] targets = Arrays.copyOf(resolved, callCount);
+
+        // Callers: counting sort of the calls by callee
+        int[] callerOffsets = new int[methodCount + 1];
+        for (int target : targets) {
+            callerOffsets[target + 1]++;
+        }
+        for (m = 0; m < methodCount; m++) {
+            callerOffsets[m + 1] += callerOffsets[m];
+        }
+        int[] next = Arrays.copyOf(callerOffsets, methodCount);
+        int[] callers = new int[callCount];
+        for (m = 0; m < methodCount; m++) {
+            for (int k = callOffsets[m]; k < callOffsets[m + 1]; k++) {
+                callers[next[targets[k]]++] = m;
+            }
+        }
+
+        return new CallGraph(classArray, methodOffsets, methods, owners, callOffsets, targets, callerOffsets, callers);
+    }
+
+    // Classes ---------------------------------------------------------------
+
+    int classCount() {
+        return classes.length;
+    }
+
+    ClassInfo classInfo(int c) {
+        return classes[c];
+    }
+
+    /** First method of class c. */
+    int firstMethod(int c) {
+        return methodOffsets[c];
+    }
+
+    /** Method following the last method of class c. */
+    int endMethod(int c) {
+        return methodOffsets[c + 1];
+    }
+
+    // Methods ---------------------------------------------------------------
+
+    int methodCount() {
+        return methods.length;
+    }
+
+    MethodInfo method(int m) {
+        return methods[m];
+    }
+
+    /** Class declaring method m. */
+    int owner(int m) {
+        return owners[m];
+    }
+
+    // Calls -----------------------------------------------------------------
+
+    /** Number of calls between the methods of the graph. */
+    int callCount() {
+        return targets.length;
+    }
+
+    /** First call of method m. */
+    int firstCall(int m) {
+        return callOffsets[m];
+    }
+
+    /** Call following the last call of method m. */
+    int endCall(int m) {
+        return callOffsets[m + 1];
+    }
+
+    /** Method called by call k. */
+    int target(int k) {
+        return targets[k];
+    }
+
+    /** First caller entry of method m. */
+    int firstCaller(int m) {
+        return callerOffsets[m];
+    }
+
+    /** Caller entry following the last caller entry of method m. */
+    int endCaller(int m) {
+        return callerOffsets[m + 1];
+    }
+
+    /** Method making the call of caller entry k. */
+    int caller(int k) {
+        return callers[k];
+    }
+}
@@ -7,12 +7,11 @@ import analyzer.Utils.ClassInfo;
 import analyzer.Utils.MethodInfo;
 
 /**
- * Generates beautiful, interactive HTML graphs using Vis.js library.
+ * Generates beautiful, interactive HTML graphs using Vis.js library, from a
+ * {@link CallGraph}.
  */
 public class CallGraphBuilder {
     
-    private static final Map<String, String> CLASS_COLORS = new HashMap<>();
-    private static int colorIndex = 0;
     private static final String[] COLORS = {
         "#3498db", "#e74c3c", "#2ecc71", "#f39c12", "#9b59b6",
         "#1abc9c", "#34495e", "#e67e22", "#95a5a6", "#16a085"
@@ -22,20 +21,34 @@ public class CallGraphBuilder {
      * Displays the call graph in the console in a readable format.
      */
     public static void displayCallGraph(List<ClassInfo> classes) {
+        displayCallGraph(CallGraph.of(classes));
+    }
+
+    /**
+     * Displays a call graph already built, with the number of callers of
+     * each called method.
+     */
+    static void displayCallGraph(CallGraph graph) {
         System.out.println("\n==== GRAPHE D'APPEL ====\n");
         
-        for (ClassInfo classInfo : classes) {
+        for (int c = 0; c < graph.classCount(); c++) {
+            ClassInfo classInfo = graph.classInfo(c);
             System.out.println("Classe: " + classInfo.packageName + "." + classInfo.name);
             
-            for (MethodInfo method : classInfo.methods) {
-                if (!method.calls.isEmpty()) {
+            for (int m = graph.firstMethod(c); m < graph.endMethod(c); m++) {
+                MethodInfo method = graph.method(m);
+                if (graph.firstCall(m) < graph.endCall(m)) {
                     System.out.println("  " + method.name + "() appelle:");
-                    for (MethodInfo calledMethod : method.calls) {
-                        System.out.println("    -> " + calledMethod.name + "()");
+                    for (int k = graph.firstCall(m); k < graph.endCall(m); k++) {
+                        System.out.println("    -> " + graph.method(graph.target(k)).name + "()");
                     }
                 } else {
                     System.out.println("  " + method.name + "() [pas d'appels]");
                 }
+                int callers = graph.endCaller(m) - graph.firstCaller(m);
+                if (callers > 0) {
+                    System.out.println("    (appelée " + callers + " fois)");
+                }
             }
             System.out.println();
         }
@@ -52,12 +65,27 @@ public class CallGraphBuilder {
      * - Statistics panel
      */
     public static void generateHtmlGraph(List<ClassInfo> classes, String outputPath) {
+        generateHtmlGraph(CallGraph.of(classes), outputPath);
+    }
+
+    /**
+     * Generates the HTML call graph from a call graph already built. Nodes are
+     * numbered as the methods of the graph, and each edge joins a method to
+     * the method its call was resolved to.
+     */
+    static void generateHtmlGraph(CallGraph graph, String outputPath) {
+        List<ClassInfo> classes = new ArrayList<>(graph.classCount());
+        for (int c = 0; c < graph.classCount(); c++) {
+            classes.add(graph.classInfo(c));
+        }
         try (PrintWriter writer = new PrintWriter(outputPath)) {
-            // Assign colors to classes
+            // Assign colors to classes, keyed by class ID
+            SymbolTable symbols = SymbolTable.of(classes);
+            Map<Integer, String> classColors = new HashMap<>();
             for (ClassInfo cls : classes) {
-                if (!CLASS_COLORS.containsKey(cls.name)) {
-                    CLASS_COLORS.put(cls.name, COLORS[colorIndex % COLORS.length]);
-                    colorIndex++;
+                symbols.intern(cls);
+                if (!classColors.containsKey(cls.id)) {
+                    classColors.put(cls.id, COLORS[classColors.size() % COLORS.length]);
                 }
             }
 
@@ -105,7 +133,7 @@ public class CallGraphBuilder {
             
             // Class legend
             for (ClassInfo cls : classes) {
-                String color = CLASS_COLORS.get(cls.name);
+                String color = classColors.get(cls.id);
                 writer.println("      <div class='class-legend' style='border-color: " + color + ";'>");
                 writer.println("        <strong>" + cls.name + "</strong><br>");
                 writer.println("        <span style='font-size: 11px; color: #bdc3c7;'>" + cls.methods.size() + " méthodes</span>");
@@ -113,11 +141,8 @@ public class CallGraphBuilder {
             }
             
             // Statistics
-            int totalMethods = classes.stream().mapToInt(c -> c.methods.size()).sum();
-            int totalCalls = classes.stream()
-                    .flatMap(c -> c.methods.stream())
-                    .mapToInt(m -> m.calls.size())
-                    .sum();
+            int totalMethods = graph.methodCount();
+            int totalCalls = graph.callCount();
             
             writer.println("      <div class='stats'>");
             writer.println("        <h3 style='margin-top: 0; color: #3498db;'>Statistiques</h3>");
@@ -151,17 +176,15 @@ public class CallGraphBuilder {
             writer.println("    var network;");
             writer.println();
             
-            // Create nodes
+            // Create nodes: node ID = method number in the graph
             writer.println("    var nodes = new vis.DataSet([");
-            int nodeId = 0;
-            Map<String, Integer> methodToId = new HashMap<>();
-            
-            for (ClassInfo classInfo : classes) {
-                for (MethodInfo method : classInfo.methods) {
-                    methodToId.put(classInfo.name + "." + method.name, nodeId);
-                    String color = CLASS_COLORS.get(classInfo.name);
+            for (int c = 0; c < graph.classCount(); c++) {
+                ClassInfo classInfo = graph.classInfo(c);
+                String color = classColors.get(classInfo.id);
+                for (int m = graph.firstMethod(c); m < graph.endMethod(c); m++) {
+                    MethodInfo method = graph.method(m);
                     writer.println("      {");
-                    writer.println("        id: " + nodeId + ",");
+                    writer.println("        id: " + m + ",");
                     writer.println("        label: '" + method.name + "()',");
                     writer.println("        title: '" + classInfo.name + "." + method.name + "',");
                     writer.println("        group: '" + classInfo.name + "',");
@@ -170,44 +193,22 @@ public class CallGraphBuilder {
                     writer.println("        shadow: true,");
                     writer.println("        borderWidth: 2");
                     writer.println("      },");
-                    nodeId++;
                 }
             }
             writer.println("    ]);");
             writer.println();
             
-            // Create edges
+            // Create edges, once per caller and callee
             writer.println("    var edges = new vis.DataSet([");
-            Set<String> edgeSet = new HashSet<>();
-            for (ClassInfo classInfo : classes) {
-                for (MethodInfo method : classInfo.methods) {
-                    for (MethodInfo calledMethod : method.calls) {
-                        String fromKey = classInfo.name + "." + method.name;
-                        String toKey = null;
-                        
-                        // Find which class owns the called method
-                        for (ClassInfo cls : classes) {
-                            for (MethodInfo m : cls.methods) {
-                                if (m.name.equals(calledMethod.name) && m.nbParameters == calledMethod.nbParameters) {
-                                    toKey = cls.name + "." + calledMethod.name;
-                                    break;
-                                }
-                            }
-                            if (toKey != null) break;
-                        }
-                        
-                        if (toKey != null) {
-                            Integer fromId = methodToId.get(fromKey);
-                            Integer toId = methodToId.get(toKey);
-                            
-                            if (fromId != null && toId != null) {
-                                String edgeKey = fromId + "->" + toId;
-                                if (!edgeSet.contains(edgeKey)) {
-                                    edgeSet.add(edgeKey);
-                                    writer.println("      { from: " + fromId + ", to: " + toId + ", arrows: 'to', smooth: { type: 'continuous' }, shadow: true },");
-                                }
-                            }
-                        }
+            // Last caller for which each method was emitted as a callee
+            int[] lastCaller = new int[graph.methodCount()];
+            Arrays.fill(lastCaller, -1);
+            for (int m = 0; m < graph.methodCount(); m++) {
+                for (int k = graph.firstCall(m); k < graph.endCall(m); k++) {
+                    int target = graph.target(k);
+                    if (lastCaller[target] != m) {
+                        lastCaller[target] = m;
+                        writer.println("      { from: " + m + ", to: " + target + ", arrows: 'to', smooth: { type: 'continuous' }, shadow: true },");
                     }
                 }
             }
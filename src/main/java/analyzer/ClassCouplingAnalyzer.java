@@ -3,7 +3,10 @@ package analyzer;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import analyzer.Utils.ClassInfo;
 import analyzer.Utils.MethodInfo;
@@ -12,13 +15,27 @@ import analyzer.Utils.MethodInfo;
  * Computes class-level coupling based on method call signatures and generates
  * visualizations for further analysis.
  *
- * <p>This analyzer inspects MethodInfo.callSignatures for every method and
- * builds a coupling map between pairs of classes. Coupling values are
- * normalized by the total number of inter-class calls discovered.</p>
+ * <p>This analyzer inspects the call sites of every method (each distinct
+ * signature once per calling method) and builds a coupling map between pairs
+ * of classes. Coupling values are normalized by the total number of
+ * inter-class calls discovered.</p>
+ *
+ * <p>A signature "methodName:paramCount" couples the caller with every class
+ * declaring that name; an exact signature "pkg.Class#methodName:paramCount",
+ * recorded when bindings are resolved or when Spoon resolves the call, only
+ * with the class declaring it.</p>
+ *
+ * <p>Classes are identified by their fully qualified name, so that classes of
+ * different packages sharing a simple name stay apart. Internally, classes and
+ * signatures are handled through their IDs in the {@link SymbolTable} of the
+ * analyzed classes (the table of the first class added); the "A-B" keys of
+ * {@link #getNormalizedCouplings()} are only built when they are requested.</p>
  *
  * <p>Typical usage:
  * <ol>
- *   <li>Create an instance passing a list of ClassInfo populated by a parser (JDT/Spoon).</li>
+ *   <li>Create an instance passing a list of ClassInfo populated by a parser (JDT/Spoon),
+ *       or feed classes incrementally with addClass() / removeClass() / fromPublisher(),
+ *       or pass the columnar view of a {@link ModelStore}.</li>
  *   <li>Use displayCouplings() / displayCouplingMatrix() for console output.</li>
  *   <li>Call generateHtmlGraph(filename) to get an interactive Vis.js visualization.</li>
  *   <li>Access normalized coupling values programmatically via getNormalizedCouplings().</li>
@@ -27,81 +44,331 @@ import analyzer.Utils.MethodInfo;
  */
 public class ClassCouplingAnalyzer {
     
+    /** Number of classes requested at a time from a streamed source. */
+    private static final int STREAM_REQUEST_SIZE = 64;
+    
     private List<ClassInfo> classes;
-    private Map<String, Integer> couplingMap; // Key: "ClassA-ClassB", Value: call count
+    private SymbolTable symbols; // Table of the class IDs below, null until a class is added
+    private Map<Long, Integer> couplingMap; // Key: pair of class IDs (smaller first), Value: call count
     private int totalCouplings; // Total number of method calls between all classes
-    private Map<String, Double> normalizedCouplings; // Normalized coupling values
-    private Map<String, ClassInfo> classMap; // Map class name to ClassInfo
-    private Map<String, String> methodToClassMap; // Map "MethodName:ParamCount" to class name
+    private Map<Long, Double> normalizedById; // Same keys as couplingMap, recomputed lazily
+    private boolean normalized; // False when classes were added since the last normalization
+    private Map<String, Double> normalizedCouplings; // Key: "ClassA-ClassB", built from normalizedById on request
+    private boolean named; // False when normalizedCouplings is older than normalizedById
+    private Map<Integer, Map<Integer, Integer>> declaringClasses; // Signature ID -> class ID -> declaring ClassInfo count
+    private Map<Integer, Map<Integer, Integer>> callingClasses; // Signature ID -> class ID -> number of recorded calls
+    private Map<Integer, Integer> classInstances; // Class ID -> number of classes added, in order of first appearance
     
     public ClassCouplingAnalyzer(List<ClassInfo> classes) {
-        this.classes = classes;
+        this();
+        for (ClassInfo cls : classes) {
+            addClass(cls);
+        }
+    }
+    
+    /**
+     * Computes the couplings of the classes of a columnar model (see
+     * {@link ModelStore}), with the same result as from the classes it was
+     * built from. Such an analyzer holds no ClassInfo: classes cannot be
+     * removed from it.
+     *
+     * @param model classes to analyze
+     */
+    ClassCouplingAnalyzer(ModelView model) {
+        this();
+        this.symbols = model.symbols();
+        for (int c = 0; c < model.classCount(); c++) {
+            Map<Integer, Integer> calledSignatures = new HashMap<>();
+            Set<Integer> declaredSignatures = signatures(model, c, calledSignatures);
+            add(model.classId(c), declaredSignatures, calledSignatures);
+        }
+    }
+    
+    /**
+     * Creates an empty analyzer; classes are then fed one at a time with
+     * {@link #addClass(ClassInfo)}, e.g. while the sources are still being parsed.
+     */
+    public ClassCouplingAnalyzer() {
+        this.classes = new ArrayList<>();
         this.couplingMap = new HashMap<>();
+        this.normalizedById = new HashMap<>();
         this.normalizedCouplings = new HashMap<>();
         this.totalCouplings = 0;
-        this.classMap = new HashMap<>();
-        this.methodToClassMap = new HashMap<>();
+        this.declaringClasses = new HashMap<>();
+        this.callingClasses = new HashMap<>();
+        this.classInstances = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Subscribes to a stream of classes (for instance {@link Analyzer#publishSource})
+     * and aggregates couplings while the stream is still being produced.
+     *
+     * @param publisher source of classes
+     * @return future completed with the analyzer once the stream ends, or
+     *         completed exceptionally if the stream fails
+     */
+    public static CompletableFuture<ClassCouplingAnalyzer> fromPublisher(Flow.Publisher<ClassInfo> publisher) {
+        ClassCouplingAnalyzer analyzer = new ClassCouplingAnalyzer();
+        CompletableFuture<ClassCouplingAnalyzer> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ClassInfo>() {
+            private Flow.Subscription subscription;
+            private int pending;
+            
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                pending = STREAM_REQUEST_SIZE;
+                subscription.request(STREAM_REQUEST_SIZE);
+            }
+            
+            @Override
+            public void onNext(ClassInfo cls) {
+                analyzer.addClass(cls);
+                if (--pending == 0) {
+                    pending = STREAM_REQUEST_SIZE;
+                    subscription.request(STREAM_REQUEST_SIZE);
+                }
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+            
+            @Override
+            public void onComplete() {
+                result.complete(analyzer);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Adds one class and updates the coupling counts incrementally.
+     *
+     * <p>The result does not depend on the order in which classes are added:
+     * a call signature of class A counts once for every other class B
+     * declaring it, whether B was added before A (counted here against the
+     * known declarers) or after (counted when B first declares it, against the
+     * known callers). As in a full computation, classes sharing a fully
+     * qualified name are treated as one declaring class, and every recorded
+     * call counts.</p>
+     *
+     * @param cls class to add
+     */
+    public void addClass(ClassInfo cls) {
+        if (symbols == null) symbols = cls.symbols != null ? cls.symbols : new SymbolTable();
+        symbols.intern(cls);
+        classes.add(cls);
+        Map<Integer, Integer> calledSignatures = new HashMap<>();
+        Set<Integer> declaredSignatures = signatures(cls, calledSignatures);
+        add(cls.id, declaredSignatures, calledSignatures);
+    }
+    
+    /**
+     * Counts the couplings of one class given its declared and called signature IDs.
+     */
+    private void add(int classId, Set<Integer> declaredSignatures, Map<Integer, Integer> calledSignatures) {
+        classInstances.merge(classId, 1, Integer::sum);
         
-        // Build class map and method to class map
-        for (ClassInfo cls : classes) {
-            classMap.put(cls.name, cls);
-            for (MethodInfo method : cls.methods) {
-                String methodKey = cls.name + "." + method.name + ":" + method.nbParameters;
-                methodToClassMap.put(methodKey, cls.name);
+        // Calls of this class towards classes already declaring the signature
+        for (Map.Entry<Integer, Integer> call : calledSignatures.entrySet()) {
+            Map<Integer, Integer> targetClasses = declaringClasses.get(call.getKey());
+            if (targetClasses == null) continue;
+            for (int targetClass : targetClasses.keySet()) {
+                // Only count calls between different classes
+                if (targetClass != classId) {
+                    addCouplings(classId, targetClass, call.getValue());
+                }
             }
         }
         
-        analyzeCouplings();
+        // Known calls towards signatures this class declares for the first time
+        for (int signature : declaredSignatures) {
+            Map<Integer, Integer> targetClasses = declaringClasses.get(signature);
+            if (targetClasses != null && targetClasses.containsKey(classId)) continue;
+            Map<Integer, Integer> sourceClasses = callingClasses.get(signature);
+            if (sourceClasses == null) continue;
+            for (Map.Entry<Integer, Integer> source : sourceClasses.entrySet()) {
+                if (source.getKey() != classId) {
+                    addCouplings(source.getKey(), classId, source.getValue());
+                }
+            }
+        }
+        
+        for (int signature : declaredSignatures) {
+            declaringClasses.computeIfAbsent(signature, k -> new HashMap<>()).merge(classId, 1, Integer::sum);
+        }
+        for (Map.Entry<Integer, Integer> call : calledSignatures.entrySet()) {
+            callingClasses.computeIfAbsent(call.getKey(), k -> new HashMap<>()).merge(classId, call.getValue(), Integer::sum);
+        }
+        normalized = false;
     }
     
     /**
-     * Analyzes all couplings between classes by examining method call signatures.
-     * Uses callSignatures instead of object references to reliably identify called methods.
+     * Removes a class previously added, e.g. because its file changed or was
+     * deleted, and subtracts the couplings it contributed. This is the exact
+     * inverse of {@link #addClass(ClassInfo)}.
+     *
+     * @param cls class to remove (the same instance that was added)
      */
-    private void analyzeCouplings() {
-        // Build a map of method signatures to their owning class
-        Map<String, Set<String>> signatureToClasses = new HashMap<>();
-        for (ClassInfo cls : classes) {
-            for (MethodInfo method : cls.methods) {
-                String signature = method.name + ":" + method.nbParameters;
-                signatureToClasses.computeIfAbsent(signature, k -> new HashSet<>()).add(cls.name);
+    public void removeClass(ClassInfo cls) {
+        boolean found = false;
+        for (Iterator<ClassInfo> it = classes.iterator(); it.hasNext(); ) {
+            if (it.next() == cls) {
+                it.remove();
+                found = true;
+                break;
             }
         }
+        if (!found) return;
+        int classId = cls.id;
+        if (classInstances.merge(classId, -1, Integer::sum) == 0) {
+            classInstances.remove(classId);
+        }
         
-        // For each class and its methods, analyze what classes they call
-        for (ClassInfo sourceClass : classes) {
-            for (MethodInfo sourceMethod : sourceClass.methods) {
-                // For each method call signature in this method
-                for (String callSignature : sourceMethod.callSignatures) {
-                    Set<String> targetClasses = signatureToClasses.get(callSignature);
-                    
-                    if (targetClasses != null) {
-                        for (String targetClass : targetClasses) {
-                            // Only count calls between different classes
-                            if (!sourceClass.name.equals(targetClass)) {
-                                String key = getCouplingKey(sourceClass.name, targetClass);
-                                couplingMap.put(key, couplingMap.getOrDefault(key, 0) + 1);
-                                totalCouplings++;
-                            }
-                        }
-                    }
+        Map<Integer, Integer> calledSignatures = new HashMap<>();
+        Set<Integer> declaredSignatures = signatures(cls, calledSignatures);
+        
+        for (int signature : declaredSignatures) {
+            decrement(declaringClasses, signature, classId, 1);
+        }
+        for (Map.Entry<Integer, Integer> call : calledSignatures.entrySet()) {
+            decrement(callingClasses, call.getKey(), classId, call.getValue());
+        }
+        
+        // Calls of this class towards the classes still declaring the signature
+        for (Map.Entry<Integer, Integer> call : calledSignatures.entrySet()) {
+            Map<Integer, Integer> targetClasses = declaringClasses.get(call.getKey());
+            if (targetClasses == null) continue;
+            for (int targetClass : targetClasses.keySet()) {
+                if (targetClass != classId) {
+                    addCouplings(classId, targetClass, -call.getValue());
                 }
             }
         }
         
-        // Normalize couplings
+        // Calls towards signatures no other class with this name declares any more
+        for (int signature : declaredSignatures) {
+            Map<Integer, Integer> targetClasses = declaringClasses.get(signature);
+            if (targetClasses != null && targetClasses.containsKey(classId)) continue;
+            Map<Integer, Integer> sourceClasses = callingClasses.get(signature);
+            if (sourceClasses == null) continue;
+            for (Map.Entry<Integer, Integer> source : sourceClasses.entrySet()) {
+                if (source.getKey() != classId) {
+                    addCouplings(source.getKey(), classId, -source.getValue());
+                }
+            }
+        }
+        normalized = false;
+    }
+    
+    /**
+     * Collects the signature IDs a class declares (both forms) and counts, per
+     * signature ID, the methods of the class calling it: a signature counts
+     * once per calling method, however often the method calls it.
+     */
+    private static Set<Integer> signatures(ClassInfo cls, Map<Integer, Integer> calledSignatures) {
+        Set<Integer> declaredSignatures = new HashSet<>();
+        for (MethodInfo method : cls.methods) {
+            declaredSignatures.add(method.signatureId);
+            declaredSignatures.add(method.exactSignatureId);
+            countDistinct(method.callSiteIds.clone(), calledSignatures);
+        }
+        return declaredSignatures;
+    }
+    
+    /** Same as {@link #signatures(ClassInfo, Map)} for class c of a columnar model. */
+    private static Set<Integer> signatures(ModelView model, int c, Map<Integer, Integer> calledSignatures) {
+        Set<Integer> declaredSignatures = new HashSet<>();
+        for (int m = model.firstMethod(c); m < model.endMethod(c); m++) {
+            declaredSignatures.add(model.signature(m));
+            declaredSignatures.add(model.exactSignature(m));
+            int[] calls = new int[model.endCall(m) - model.firstCall(m)];
+            for (int k = 0; k < calls.length; k++) {
+                calls[k] = model.callSignature(model.firstCall(m) + k);
+            }
+            countDistinct(calls, calledSignatures);
+        }
+        return declaredSignatures;
+    }
+
+    /**
+     * Counts each distinct signature of the call sites of one method once.
+     * @param calls Copy of the call sites, sorted in place to skip repeated signatures
+     * @param calledSignatures Number of calling methods per signature ID
+     */
+    private static void countDistinct(int[] calls, Map<Integer, Integer> calledSignatures) {
+        Arrays.sort(calls);
+        for (int k = 0; k < calls.length; k++) {
+            if (k == 0 || calls[k] != calls[k - 1]) {
+                calledSignatures.merge(calls[k], 1, Integer::sum);
+            }
+        }
+    }
+    
+    private static void decrement(Map<Integer, Map<Integer, Integer>> counts, int signature,
+                                  int classId, int amount) {
+        Map<Integer, Integer> perClass = counts.get(signature);
+        if (perClass == null) return;
+        if (perClass.merge(classId, -amount, Integer::sum) <= 0) {
+            perClass.remove(classId);
+            if (perClass.isEmpty()) counts.remove(signature);
+        }
+    }
+    
+    private void addCouplings(int classA, int classB, int calls) {
+        long key = getCouplingKey(classA, classB);
+        if (couplingMap.merge(key, calls, Integer::sum) == 0) {
+            couplingMap.remove(key);
+        }
+        totalCouplings += calls;
+    }
+    
+    /**
+     * Normalizes couplings by the total number of inter-class calls, if classes
+     * were added since the last normalization.
+     */
+    private void normalize() {
+        if (normalized) return;
+        normalizedById.clear();
         if (totalCouplings > 0) {
-            for (String key : couplingMap.keySet()) {
-                double normalized = (double) couplingMap.get(key) / totalCouplings;
-                normalizedCouplings.put(key, normalized);
+            for (Map.Entry<Long, Integer> entry : couplingMap.entrySet()) {
+                double normalized = (double) entry.getValue() / totalCouplings;
+                normalizedById.put(entry.getKey(), normalized);
             }
         }
+        normalized = true;
+        named = false;
+    }
+    
+    /**
+     * Builds the "A-B" keys of the normalized couplings, if they changed since
+     * they were last built.
+     */
+    private void name() {
+        normalize();
+        if (named) return;
+        normalizedCouplings.clear();
+        for (Map.Entry<Long, Double> entry : normalizedById.entrySet()) {
+            String classA = symbols.classes.name((int) (entry.getKey() >>> 32));
+            String classB = symbols.classes.name(entry.getKey().intValue());
+            normalizedCouplings.put(getCouplingKey(classA, classB), entry.getValue());
+        }
+        named = true;
+    }
+    
+    /**
+     * Creates a canonical key for a pair of class IDs (the smaller ID first).
+     */
+    private static long getCouplingKey(int classA, int classB) {
+        return classA <= classB ? SymbolTable.pairKey(classA, classB) : SymbolTable.pairKey(classB, classA);
     }
     
     /**
      * Creates a canonical key for coupling pairs (A-B or B-A becomes A-B).
      */
-    private String getCouplingKey(String classA, String classB) {
+    private static String getCouplingKey(String classA, String classB) {
         if (classA.compareTo(classB) <= 0) {
             return classA + "-" + classB;
         } else {
@@ -113,21 +380,25 @@ public class ClassCouplingAnalyzer {
      * Displays the coupling between all class pairs in console.
      */
     public void displayCouplings() {
+        name();
         System.out.println("\n=== Couplage entre les classes ===\n");
         if (totalCouplings == 0) {
             System.out.println("Aucun couplage détecté.");
             System.out.println("Total d'appels tracés: " + totalCouplings);
-            System.out.println("Nombre de classes: " + classes.size());
+            System.out.println("Nombre de classes: " + classInstances.values().stream().mapToInt(Integer::intValue).sum());
             
             // Debug info
             System.out.println("\nInformations de debug:");
-            for (ClassInfo cls : classes) {
+            CallGraph graph = CallGraph.of(classes);
+            for (int c = 0; c < graph.classCount(); c++) {
+                ClassInfo cls = graph.classInfo(c);
                 System.out.println("  Classe: " + cls.name + " (" + cls.methods.size() + " méthodes)");
                 int callCount = 0;
-                for (MethodInfo m : cls.methods) {
-                    callCount += m.calls.size();
-                    if (m.calls.size() > 0) {
-                        System.out.println("    Méthode " + m.name + " appelle " + m.calls.size() + " méthode(s)");
+                for (int m = graph.firstMethod(c); m < graph.endMethod(c); m++) {
+                    int calls = graph.endCall(m) - graph.firstCall(m);
+                    callCount += calls;
+                    if (calls > 0) {
+                        System.out.println("    Méthode " + graph.method(m).name + " appelle " + calls + " méthode(s)");
                     }
                 }
                 System.out.println("    Total appels: " + callCount);
@@ -140,7 +411,7 @@ public class ClassCouplingAnalyzer {
             .forEach(entry -> {
                 String[] parts = entry.getKey().split("-");
                 System.out.printf("%s -> %s: %.4f (%d appels)\n", 
-                    parts[0], parts[1], entry.getValue(), couplingMap.get(entry.getKey()));
+                    parts[0], parts[1], entry.getValue(), getRawCoupling(parts[0], parts[1]));
             });
         System.out.println("\nNombre total d'appels inter-classe: " + totalCouplings);
     }
@@ -149,18 +420,14 @@ public class ClassCouplingAnalyzer {
      * Generates and displays a coupling matrix for all classes.
      */
     public void displayCouplingMatrix() {
-        List<String> uniqueClasses = classes.stream()
-            .map(c -> c.name)
-            .distinct()
-            .sorted()
-            .collect(Collectors.toList());
+        List<Integer> uniqueClasses = classIds(true);
         
         System.out.println("\n=== Matrice de Couplage ===\n");
         
         // Header
         System.out.print("Classe");
-        for (String cls : uniqueClasses) {
-            System.out.printf("%15s", cls);
+        for (int cls : uniqueClasses) {
+            System.out.printf("%15s", symbols.classes.name(cls));
         }
         System.out.println();
         
@@ -172,15 +439,13 @@ public class ClassCouplingAnalyzer {
         System.out.println();
         
         // Matrix rows
-        for (String classA : uniqueClasses) {
-            System.out.printf("%-10s", classA);
-            for (String classB : uniqueClasses) {
-                if (classA.equals(classB)) {
+        for (int classA : uniqueClasses) {
+            System.out.printf("%-10s", symbols.classes.name(classA));
+            for (int classB : uniqueClasses) {
+                if (classA == classB) {
                     System.out.printf("%15s", "-");
                 } else {
-                    String key = getCouplingKey(classA, classB);
-                    Double coupling = normalizedCouplings.getOrDefault(key, 0.0);
-                    System.out.printf("%15.4f", coupling);
+                    System.out.printf("%15.4f", getCoupling(classA, classB));
                 }
             }
             System.out.println();
@@ -191,10 +456,7 @@ public class ClassCouplingAnalyzer {
      * Generates an HTML visualization of the coupling graph.
      */
     public void generateHtmlGraph(String filename) throws IOException {
-        List<String> uniqueClasses = classes.stream()
-            .map(c -> c.name)
-            .distinct()
-            .collect(Collectors.toList());
+        List<Integer> uniqueClasses = classIds(false);
         
         StringBuilder html = new StringBuilder();
         html.append("<!DOCTYPE html>\n");
@@ -225,7 +487,9 @@ public class ClassCouplingAnalyzer {
         // Create nodes
         html.append("    var nodes = new vis.DataSet([\n");
         for (int i = 0; i < uniqueClasses.size(); i++) {
-            html.append("      { id: ").append(i).append(", label: '").append(uniqueClasses.get(i)).append("', title: '").append(uniqueClasses.get(i)).append("' }");
+            String qualifiedName = symbols.classes.name(uniqueClasses.get(i));
+            String simpleName = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+            html.append("      { id: ").append(i).append(", label: '").append(simpleName).append("', title: '").append(qualifiedName).append("' }");
             if (i < uniqueClasses.size() - 1) html.append(",");
             html.append("\n");
         }
@@ -236,18 +500,18 @@ public class ClassCouplingAnalyzer {
         List<String> edgeLines = new ArrayList<>();
         for (int i = 0; i < uniqueClasses.size(); i++) {
             for (int j = i + 1; j < uniqueClasses.size(); j++) {
-                String classA = uniqueClasses.get(i);
-                String classB = uniqueClasses.get(j);
-                String key = getCouplingKey(classA, classB);
-                Double coupling = normalizedCouplings.getOrDefault(key, 0.0);
+                int classA = uniqueClasses.get(i);
+                int classB = uniqueClasses.get(j);
+                int calls = getRawCoupling(classA, classB);
                 
-                if (coupling > 0) {
-                    int calls = couplingMap.get(key);
+                if (calls > 0) {
+                    double coupling = (double) calls / totalCouplings;
                     double width = 1 + (coupling * 10);
                     String color = getColorForCoupling(coupling);
                     String edgeLine = String.format(
                         "      { from: %d, to: %d, value: %.4f, title: '%s -> %s: %.4f (%d appels)', width: %.2f, color: '%s' }",
-                        i, j, coupling, classA, classB, coupling, calls, width, color
+                        i, j, coupling, symbols.classes.name(classA), symbols.classes.name(classB),
+                        coupling, calls, width, color
                     );
                     edgeLines.add(edgeLine);
                 }
@@ -280,6 +544,18 @@ public class ClassCouplingAnalyzer {
         }
     }
     
+    /**
+     * Returns the IDs of the analyzed classes, each once, in order of first
+     * appearance or sorted by name.
+     */
+    private List<Integer> classIds(boolean sorted) {
+        Stream<Integer> ids = classInstances.keySet().stream();
+        if (sorted) {
+            ids = ids.sorted(Comparator.comparing(symbols.classes::name));
+        }
+        return ids.collect(Collectors.toList());
+    }
+    
     /**
      * Returns a color based on coupling strength.
      */
@@ -293,36 +569,75 @@ public class ClassCouplingAnalyzer {
     
     /**
      * Public getter for normalized couplings map (read-only view).
-     * Keys are canonicalized pairs "A-B" and values are normalized in [0..1].
+     * Keys are canonicalized pairs "A-B" of fully qualified class names and
+     * values are normalized in [0..1].
      *
      * @return unmodifiable map of normalized coupling scores between class pairs
      */
     public Map<String, Double> getNormalizedCouplings() {
+        name();
         return Collections.unmodifiableMap(normalizedCouplings);
     }
+    
+    /**
+     * Same couplings as {@link #getNormalizedCouplings()}, keyed by the pair of
+     * class IDs in {@link #getSymbols()}, smaller ID first (see
+     * {@link SymbolTable#pairKey}), without building any name.
+     *
+     * @return unmodifiable map of normalized coupling scores between class pairs
+     */
+    Map<Long, Double> getNormalizedCouplingsById() {
+        normalize();
+        return Collections.unmodifiableMap(normalizedById);
+    }
+
+    /** Table of the class IDs of {@link #getNormalizedCouplingsById()}, or null before the first class. */
+    SymbolTable getSymbols() {
+        return symbols;
+    }
 
     /**
      * Returns normalized coupling between two named classes (order-insensitive).
      *
-     * @param classA simple name of first class
-     * @param classB simple name of second class
+     * @param classA fully qualified name of first class
+     * @param classB fully qualified name of second class
      * @return normalized coupling value (0.0 if not present)
      */
     public double getCoupling(String classA, String classB) {
-        String key = getCouplingKey(classA, classB);
-        return normalizedCouplings.getOrDefault(key, 0.0);
+        return getCoupling(classId(classA), classId(classB));
+    }
+    
+    /**
+     * Returns normalized coupling between two classes given by their IDs
+     * (order-insensitive).
+     */
+    double getCoupling(int classA, int classB) {
+        return totalCouplings > 0 ? (double) getRawCoupling(classA, classB) / totalCouplings : 0.0;
     }
     
     /**
      * Returns raw (integer) number of inter-class calls observed between two classes.
      *
-     * @param classA simple name of first class
-     * @param classB simple name of second class
+     * @param classA fully qualified name of first class
+     * @param classB fully qualified name of second class
      * @return raw call count (0 if not present)
      */
     public int getRawCoupling(String classA, String classB) {
-        String key = getCouplingKey(classA, classB);
-        return couplingMap.getOrDefault(key, 0);
+        return getRawCoupling(classId(classA), classId(classB));
+    }
+    
+    /**
+     * Returns raw number of inter-class calls between two classes given by
+     * their IDs (order-insensitive).
+     */
+    int getRawCoupling(int classA, int classB) {
+        if (classA < 0 || classB < 0) return 0;
+        return couplingMap.getOrDefault(getCouplingKey(classA, classB), 0);
+    }
+
+    /** ID of a fully qualified class name, or -1 when no analyzed class has it. */
+    private int classId(String qualifiedName) {
+        return symbols != null ? symbols.classes.lookup(qualifiedName) : -1;
     }
     
     /**
@@ -0,0 +1,283 @@
+package analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Single-pass JDT extractor: walks a {@link CompilationUnit} once and emits
+ * classes, methods and call signatures.
+ *
+ * <p>The visitor keeps a stack of enclosing types and a stack of enclosing
+ * methods, so that members are always attributed to the innermost declaration:
+ * <ul>
+ *   <li>every class (top-level, nested or local) gets its own ClassInfo, named
+ *       after its enclosing types as well ("Outer$Inner");</li>
+ *   <li>interfaces, enums and annotation types are not reported, and neither
+ *       are the methods they declare;</li>
+ *   <li>methods of an anonymous class are attributed to the enclosing class;</li>
+ *   <li>invocations are recorded on the innermost enclosing method, which is
+ *       restored when a nested or anonymous type ends.</li>
+ * </ul></p>
+ *
+ * <p>Invocations are only recorded as signatures, interned in the
+ * {@link SymbolTable} of the analysis as they are found
+ * ({@link MethodInfo#callSiteIds}); {@link SignatureIndex} fills
+ * {@link MethodInfo#calls} afterwards, once every declaration of the project
+ * is known. When the unit was parsed with bindings, resolved invocations are
+ * recorded with their exact target instead (see {@link BindingEnvironment}).
+ * Once the unit is visited, the classes are interned in the same table.</p>
+ */
+class ClassExtractor extends ASTVisitor {
+
+    /**
+     * Version of the extraction rules, part of the cache key: bump it whenever
+     * the extracted data changes for the same source.
+     */
+    static final int VERSION = 4;
+
+    private final CompilationUnit cu;
+    private final boolean recordCalls;
+    /** Converts resolved invocations to exact targets, or null when bindings are not resolved. */
+    private final BindingEnvironment bindings;
+    /** Limits the visited nodes and the time spent, or null. */
+    private final FileBudget budget;
+    private final SymbolTable symbols;
+    private final String packageName;
+    private final List<ClassInfo> classes = new ArrayList<>();
+    /**
+     * Enclosing types; a null element stands for a type that is not reported
+     * (interface, enum...). LinkedList is used because it accepts null elements.
+     */
+    private final Deque<ClassInfo> typeStack = new LinkedList<>();
+    /** Enclosing methods; a null element stands for a method that is not reported. */
+    private final Deque<CallSites> methodStack = new LinkedList<>();
+
+    /**
+     * Call sites of a method being visited: the IDs are appended to a growing
+     * array, copied to {@link MethodInfo#callSiteIds} when the method ends.
+     * Also used by {@link SpoonExtractor}.
+     */
+    static final class CallSites {
+        private final MethodInfo method;
+        private int[] ids = new int[8];
+        private int size;
+
+        CallSites(MethodInfo method) {
+            this.method = method;
+        }
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void close() {
+            method.callSiteIds = Arrays.copyOf(ids, size);
+        }
+    }
+
+    private ClassExtractor(CompilationUnit cu, boolean recordCalls, BindingEnvironment bindings, FileBudget budget,
+                           SymbolTable symbols) {
+        this.cu = cu;
+        this.recordCalls = recordCalls;
+        this.bindings = bindings;
+        this.budget = budget;
+        this.symbols = symbols;
+        PackageDeclaration pd = cu.getPackage();
+        this.packageName = pd != null ? pd.getName().getFullyQualifiedName() : "";
+    }
+
+    /**
+     * Extracts the classes declared in a compilation unit, with their methods
+     * and call signatures, in a single traversal.
+     * @param cu Parsed compilation unit
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes declared in the unit, in declaration order (calls not resolved)
+     */
+    static List<ClassInfo> extract(CompilationUnit cu, SymbolTable symbols) {
+        return extract(cu, true, symbols);
+    }
+
+    /**
+     * Extracts the classes declared in a compilation unit.
+     * @param cu Parsed compilation unit
+     * @param recordCalls False to skip invocations, e.g. when the unit was
+     *                    parsed without method bodies
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes declared in the unit, in declaration order (calls not resolved)
+     */
+    static List<ClassInfo> extract(CompilationUnit cu, boolean recordCalls, SymbolTable symbols) {
+        return extract(cu, recordCalls, null, symbols);
+    }
+
+    /**
+     * Extracts the classes declared in a unit parsed with bindings.
+     * @param cu Parsed compilation unit
+     * @param recordCalls False to skip invocations
+     * @param bindings Environment the unit was parsed in, or null to record
+     *                 every call as "methodName:paramCount"
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes declared in the unit, in declaration order (calls not resolved)
+     */
+    static List<ClassInfo> extract(CompilationUnit cu, boolean recordCalls, BindingEnvironment bindings,
+                                   SymbolTable symbols) {
+        return extract(cu, recordCalls, bindings, null, symbols);
+    }
+
+    /**
+     * Extracts the classes declared in a unit within a budget.
+     * @param cu Parsed compilation unit
+     * @param recordCalls False to skip invocations
+     * @param bindings Environment the unit was parsed in, or null
+     * @param budget Budget charged for every visited node, or null
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes declared in the unit, in declaration order (calls not resolved)
+     * @throws FileBudget.Exceeded if the budget is spent before the end of the unit
+     */
+    static List<ClassInfo> extract(CompilationUnit cu, boolean recordCalls, BindingEnvironment bindings,
+                                   FileBudget budget, SymbolTable symbols) {
+        ClassExtractor extractor = new ClassExtractor(cu, recordCalls, bindings, budget, symbols);
+        cu.accept(extractor);
+        extractor.classes.forEach(symbols::intern);
+        return extractor.classes;
+    }
+
+    @Override
+    public boolean preVisit2(ASTNode node) {
+        if (budget != null) budget.visit();
+        return true;
+    }
+
+    // Types -----------------------------------------------------------------
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        if (node.isInterface()) {
+            typeStack.push(null);
+            return true;
+        }
+        ClassInfo cls = new ClassInfo();
+        cls.name = nameOf(node);
+        cls.packageName = packageName;
+        cls.nbAttributes = node.getFields().length;
+        classes.add(cls);
+        typeStack.push(cls);
+        return true;
+    }
+
+    /**
+     * Name of a type within its package: the names of its enclosing types,
+     * then its own, separated by '$' as in binary names. Anonymous classes are
+     * skipped, like in {@link BindingEnvironment#targetOf}.
+     */
+    private static String nameOf(AbstractTypeDeclaration node) {
+        StringBuilder name = new StringBuilder(node.getName().getIdentifier());
+        for (ASTNode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent instanceof AbstractTypeDeclaration) {
+                name.insert(0, '$').insert(0, ((AbstractTypeDeclaration) parent).getName().getIdentifier());
+            }
+        }
+        return name.toString();
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+        typeStack.pop();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+        typeStack.push(null);
+        return true;
+    }
+
+    @Override
+    public void endVisit(EnumDeclaration node) {
+        typeStack.pop();
+    }
+
+    @Override
+    public boolean visit(AnnotationTypeDeclaration node) {
+        typeStack.push(null);
+        return true;
+    }
+
+    @Override
+    public void endVisit(AnnotationTypeDeclaration node) {
+        typeStack.pop();
+    }
+
+    @Override
+    public boolean visit(AnonymousClassDeclaration node) {
+        // Anonymous classes have no name: their members belong to the enclosing class
+        typeStack.push(typeStack.peek());
+        return true;
+    }
+
+    @Override
+    public void endVisit(AnonymousClassDeclaration node) {
+        typeStack.pop();
+    }
+
+    // Methods and invocations -------------------------------------------------
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+        ClassInfo currentClass = typeStack.peek();
+        CallSites callSites = null;
+        if (currentClass != null) {
+            MethodInfo method = new MethodInfo();
+            method.name = node.getName().getIdentifier();
+            method.nbParameters = node.parameters().size();
+            method.classOwner = currentClass.packageName + "." + currentClass.name;
+            // Lines spanned by the declaration, from its first to its last character
+            int start = cu.getLineNumber(node.getStartPosition());
+            int end = cu.getLineNumber(node.getStartPosition() + Math.max(0, node.getLength() - 1));
+            method.nbLines = start > 0 && end >= start ? end - start + 1 : 0;
+            currentClass.methods.add(method);
+            currentClass.nbMethods++;
+            callSites = new CallSites(method);
+        }
+        methodStack.push(callSites);
+        return true;
+    }
+
+    @Override
+    public void endVisit(MethodDeclaration node) {
+        CallSites callSites = methodStack.pop();
+        if (callSites != null) callSites.close();
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+        // Without calls, the arguments are still visited: they may declare anonymous classes
+        CallSites callSites = methodStack.peek();
+        if (recordCalls && callSites != null) {
+            IMethodBinding binding = bindings != null ? node.resolveMethodBinding() : null;
+            String callSignature = binding != null
+                ? bindings.targetOf(binding)
+                : node.getName().getIdentifier() + ":" + node.arguments().size();
+            callSites.add(symbols.signatures.intern(callSignature));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package analyzer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Adapts a producer pushing {@link ClassInfo} objects to a sink into a
+ * {@link Flow.Publisher}, so that parsers can stream their results.
+ *
+ * <p>Each subscription starts the producer on a dedicated daemon thread. Items
+ * are delivered through a {@link SubmissionPublisher}: once the subscriber has
+ * <code>bufferSize</code> undelivered items, the producing threads block until
+ * it requests more, which bounds the memory held by the stream. When the
+ * subscriber cancels, the next item pushed by the producer aborts it.</p>
+ */
+class ClassPublisher {
+
+    /** Source of classes; may push from several threads at once. */
+    interface Producer {
+        void produce(Consumer<ClassInfo> sink) throws Exception;
+    }
+
+    private ClassPublisher() {
+    }
+
+    /**
+     * Creates a publisher running the producer once per subscriber.
+     * @param threadName Name of the thread driving the producer
+     * @param bufferSize Maximum number of undelivered items per subscriber
+     * @param producer Source of classes
+     * @return a cold publisher
+     */
+    static Flow.Publisher<ClassInfo> create(String threadName, int bufferSize, Producer producer) {
+        return subscriber -> {
+            SubmissionPublisher<ClassInfo> publisher =
+                new SubmissionPublisher<>(ForkJoinPool.commonPool(), Math.max(1, bufferSize));
+            publisher.subscribe(subscriber);
+
+            Thread thread = new Thread(() -> {
+                try {
+                    producer.produce(cls -> {
+                        if (!publisher.hasSubscribers()) {
+                            throw new CancellationException();
+                        }
+                        // Parser workers push concurrently: hand items over one at a time
+                        synchronized (publisher) {
+                            publisher.submit(cls);
+                        }
+                    });
+                    publisher.close();
+                } catch (CancellationException e) {
+                    publisher.close();
+                } catch (Throwable e) {
+                    publisher.closeExceptionally(e);
+                }
+            }, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package analyzer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+/**
+ * Declarations of a source tree, written as Java sources without method
+ * bodies under a temporary source root.
+ *
+ * <p>Sharded Spoon models ({@link SpoonShards}) use the stubs as their source
+ * classpath: a call into another shard then resolves to the same declaration
+ * as in a model of the whole tree (inherited methods, overloads, varargs,
+ * nested types), while the compiler of a shard only loads the declarations of
+ * the types it refers to.</p>
+ *
+ * <p>Each top-level type is written to its own file, named after it in the
+ * folder of its package, where the compiler looks for the types it has not
+ * seen; types declared in a file of another name are found as well. Method
+ * and constructor bodies become <code>{ throw null; }</code> and initializer
+ * blocks are dropped. A file that does not parse cleanly is copied whole,
+ * under its own name.</p>
+ *
+ * <p>The stubs also give the key of the declarations of the tree: it only
+ * changes when a declaration does, not when a method body is edited. The
+ * stubs are deleted when the instance is closed.</p>
+ */
+class DeclarationStubs implements Closeable {
+
+    private static final String EMPTY_BODY = "{ throw null; }";
+
+    private final Path root;
+    /** Digest of every stub written, with its path. */
+    private final MessageDigest digest;
+    private String key;
+
+    private DeclarationStubs(Path root) {
+        this.root = root;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the stubs of the given files.
+     * @param files Java files of the tree (on disk or in an archive)
+     * @return the stubs, to be closed once the models are built
+     * @throws IOException if the temporary source root cannot be written
+     */
+    static DeclarationStubs write(List<Path> files) throws IOException {
+        DeclarationStubs stubs = new DeclarationStubs(Files.createTempDirectory("ast-analyzer-stubs").toRealPath());
+        ASTParser parser = ParserFactory.newParser();
+        try {
+            for (Path file : files) {
+                String text;
+                try {
+                    text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    // Spoon reports the file when its shard is built
+                    continue;
+                }
+                stubs.writeFile(file, text, parser);
+            }
+        } catch (IOException | RuntimeException e) {
+            stubs.close();
+            throw e;
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : stubs.digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        stubs.key = hex.toString();
+        return stubs;
+    }
+
+    private void writeFile(Path file, String text, ASTParser parser) throws IOException {
+        ParserFactory.prepare(parser, true, false);
+        parser.setSource(text.toCharArray());
+        CompilationUnit unit = (CompilationUnit) parser.createAST(null);
+        String packageName = unit.getPackage() != null ? unit.getPackage().getName().getFullyQualifiedName() : "";
+        Path folder = root.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(folder);
+
+        List<?> types = unit.types();
+        if (hasErrors(unit) || types.isEmpty()) {
+            writeStub(folder.resolve(file.getFileName().toString()), text);
+            return;
+        }
+        List<int[]> bodies = bodiesOf(unit);
+        // Package, imports and the comments around them
+        String header = text.substring(0, ((ASTNode) types.get(0)).getStartPosition());
+        for (Object type : types) {
+            AbstractTypeDeclaration declaration = (AbstractTypeDeclaration) type;
+            int start = declaration.getStartPosition();
+            int end = start + declaration.getLength();
+            StringBuilder stub = new StringBuilder(header);
+            int copied = start;
+            for (int[] body : bodies) {
+                if (body[0] < start || body[0] >= end) continue;
+                stub.append(text, copied, body[0]).append(body[2] == 0 ? "" : EMPTY_BODY);
+                copied = body[1];
+            }
+            stub.append(text, copied, end).append('\n');
+            writeStub(folder.resolve(declaration.getName().getIdentifier() + ".java"), stub.toString());
+        }
+    }
+
+    private void writeStub(Path target, String stub) throws IOException {
+        byte[] bytes = stub.getBytes(StandardCharsets.UTF_8);
+        digest.update(root.relativize(target).toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(bytes);
+        Files.write(target, bytes);
+    }
+
+    private static boolean hasErrors(CompilationUnit unit) {
+        for (IProblem problem : unit.getProblems()) {
+            if (problem.isError()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ranges to replace, outermost first and in source order: {start, end, 1}
+     * for a method body, {start, end, 0} for an initializer.
+     */
+    private static List<int[]> bodiesOf(CompilationUnit unit) {
+        List<int[]> bodies = new ArrayList<>();
+        unit.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodDeclaration node) {
+                if (node.getBody() == null) return true;
+                bodies.add(new int[] {node.getBody().getStartPosition(),
+                    node.getBody().getStartPosition() + node.getBody().getLength(), 1});
+                return false;
+            }
+
+            @Override
+            public boolean visit(Initializer node) {
+                bodies.add(new int[] {node.getStartPosition(), node.getStartPosition() + node.getLength(), 0});
+                return false;
+            }
+        });
+        bodies.sort(Comparator.comparingInt(body -> body[0]));
+        return bodies;
+    }
+
+    /** Source root of the stubs, to put on Spoon's source classpath. */
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Key of the declarations of the tree: a hexadecimal digest of every stub.
+     * Unchanged as long as no declaration, import or package changes.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /** Tells whether a source file is one of the stubs. */
+    boolean contains(Path file) {
+        return file.toAbsolutePath().normalize().startsWith(root);
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    Files.delete(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Suppression des déclarations temporaires impossible: " + e.getMessage());
+        }
+    }
+}
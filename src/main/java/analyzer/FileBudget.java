@@ -0,0 +1,248 @@
+package analyzer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+
+/**
+ * Per-file guardrails against pathological sources (generated parser tables,
+ * protobuf outputs...), whose parsing could otherwise take minutes and
+ * gigabytes while the rest of the analysis waits.
+ *
+ * <p>A file goes through at most two attempts:
+ * <ul>
+ *   <li>a full attempt, skipped when the file is larger than
+ *       {@link AnalysisOptions#maxFileBytes} or holds more than
+ *       {@link AnalysisOptions#maxTokens} tokens ({@link #beforeParse}), so
+ *       that JDT never builds the full tree of such a file;</li>
+ *   <li>a degraded attempt, declarations only (method bodies ignored, no
+ *       calls), when the full attempt exceeded its budget;</li>
+ *   <li>if the degraded attempt exceeds its budget as well, the file is
+ *       quarantined: it contributes no class.</li>
+ * </ul>
+ * Each attempt is limited to {@link AnalysisOptions#maxAstNodes} visited
+ * nodes and {@link AnalysisOptions#maxParseMillis} of wall time. JDT polls the
+ * parser's progress monitor (this budget, or a {@link BatchClock} for a
+ * <code>createASTs</code> batch) between the parse of the declarations and of
+ * the method bodies and while it builds the DOM tree, but not inside the
+ * scanner: the token count bounds that part. The time budget is also checked
+ * during extraction. Degraded and quarantined files are reported with their
+ * cost in a {@link Report}.</p>
+ *
+ * <p>An instance tracks one attempt and is used by one thread.</p>
+ */
+class FileBudget extends NullProgressMonitor {
+
+    /** Nodes visited between two clock reads. */
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    /** Thrown when an attempt exceeds its budget; carries no stack trace. */
+    static class Exceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Exceeded(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    /** What happened to a file that exceeded a budget. */
+    enum Outcome {
+        DEGRADED("dégradé"),
+        QUARANTINED("quarantaine");
+
+        final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+    }
+
+    /** One file that exceeded a budget, with the cost of its attempts. */
+    static class Entry {
+        final Path file;
+        final long bytes;
+        final Outcome outcome;
+        final String reason;
+        /** Nodes visited by the last attempt (0 if it stopped during the parse). */
+        final int nodes;
+        /** Wall time of all attempts. */
+        final long millis;
+
+        Entry(Path file, long bytes, Outcome outcome, String reason, int nodes, long millis) {
+            this.file = file;
+            this.bytes = bytes;
+            this.outcome = outcome;
+            this.reason = reason;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+    }
+
+    /** Files degraded or quarantined during an analysis; shared by the workers. */
+    static class Report {
+        private final List<Entry> entries = new ArrayList<>();
+
+        synchronized void add(Entry entry) {
+            entries.add(entry);
+        }
+
+        synchronized List<Entry> getEntries() {
+            return new ArrayList<>(entries);
+        }
+
+        synchronized boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        /** Files sorted by decreasing cost, one per line. */
+        synchronized String summary() {
+            List<Entry> sorted = new ArrayList<>(entries);
+            Collections.sort(sorted, (a, b) -> Long.compare(b.millis, a.millis));
+            StringBuilder sb = new StringBuilder("=== Fichiers hors budget ===\n");
+            for (Entry e : sorted) {
+                sb.append(String.format("%-12s %8d ms %10d octets %9d noeuds  %s (%s)%n",
+                    e.outcome.label, e.millis, e.bytes, e.nodes, e.file, e.reason));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Progress monitor of a <code>createASTs</code> batch without bindings,
+     * which JDT parses one file after the other: cancels the batch once the
+     * file in progress, the one following the last delivered file, has taken
+     * {@link AnalysisOptions#maxParseMillis}. Used by one thread.
+     */
+    static class BatchClock extends NullProgressMonitor {
+        private final long maxMillis;
+        private long unitStart = System.nanoTime();
+
+        BatchClock(AnalysisOptions options) {
+            this.maxMillis = options.maxParseMillis;
+        }
+
+        /** Starts the clock of the next file, once a file has been delivered. */
+        void nextUnit() {
+            unitStart = System.nanoTime();
+        }
+
+        /** When the file in progress started, as a {@link System#nanoTime()} value. */
+        long unitStart() {
+            return unitStart;
+        }
+
+        long unitMillis() {
+            return (System.nanoTime() - unitStart) / 1_000_000;
+        }
+
+        /** Why the file in progress was stopped. */
+        String failure() {
+            return timeReason(maxMillis);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return unitMillis() > maxMillis;
+        }
+    }
+
+    private final int maxNodes;
+    private final long maxMillis;
+    private final long start;
+    private int nodes;
+
+    FileBudget(AnalysisOptions options) {
+        this(options, System.nanoTime());
+    }
+
+    /**
+     * Budget of an attempt that started earlier, e.g. a file parsed within a
+     * batch ({@link BatchClock#unitStart()}).
+     */
+    FileBudget(AnalysisOptions options, long startNanos) {
+        this.maxNodes = options.maxAstNodes;
+        this.maxMillis = options.maxParseMillis;
+        this.start = startNanos;
+    }
+
+    /**
+     * Checks a source before its full attempt, without parsing it.
+     * @param size Size of the file in bytes
+     * @param text Source text, or null if it was not read; a text is only
+     *             needed when <code>size</code> exceeds {@link AnalysisOptions#maxTokens}
+     *             (every token takes at least one byte)
+     * @param options Budgets of the analysis
+     * @return why the full attempt is skipped, or null to try it
+     */
+    static String beforeParse(long size, char[] text, AnalysisOptions options) {
+        if (size > options.maxFileBytes) return "plus de " + options.maxFileBytes + " octets";
+        if (text != null && size > options.maxTokens && countTokens(text, options.maxTokens) > options.maxTokens) {
+            return "plus de " + options.maxTokens + " lexèmes";
+        }
+        return null;
+    }
+
+    /**
+     * Counts the tokens of a source with JDT's scanner, which is much cheaper
+     * than a parse and allocates nothing per token.
+     * @return the number of tokens, at most <code>limit + 1</code>
+     */
+    static int countTokens(char[] text, int limit) {
+        IScanner scanner = ToolFactory.createScanner(false, false, false,
+            ParserFactory.COMPILER_OPTIONS.get(JavaCore.COMPILER_SOURCE));
+        scanner.setSource(text);
+        int tokens = 0;
+        try {
+            while (tokens <= limit && scanner.getNextToken() != ITerminalSymbols.TokenNameEOF) {
+                tokens++;
+            }
+        } catch (InvalidInputException e) {
+            // Left to the parser, which reports the error
+        }
+        return tokens;
+    }
+
+    /** Counts one visited node; throws {@link Exceeded} when the budget is spent. */
+    void visit() {
+        if (++nodes > maxNodes) {
+            throw new Exceeded("plus de " + maxNodes + " noeuds");
+        }
+        if (nodes % TIME_CHECK_INTERVAL == 0) checkTime();
+    }
+
+    /** Throws {@link Exceeded} if the time budget is spent. */
+    void checkTime() {
+        if (elapsedMillis() > maxMillis) throw timeExceeded();
+    }
+
+    /** Failure reported when the time budget is spent. */
+    Exceeded timeExceeded() {
+        return new Exceeded(timeReason(maxMillis));
+    }
+
+    private static String timeReason(long maxMillis) {
+        return "plus de " + maxMillis + " ms";
+    }
+
+    /** Polled by JDT while it parses and converts the source. */
+    @Override
+    public boolean isCanceled() {
+        return elapsedMillis() > maxMillis;
+    }
+
+    int getNodes() {
+        return nodes;
+    }
+
+    long elapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,143 @@
+package analyzer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtType;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Command-line benchmark of the heap needed to analyze a source tree.
+ *
+ * <p>Usage: <code>java analyzer.HeapBenchmark &lt;source-folder&gt;</code>
+ * (with a fixed heap, e.g. <code>-Xmx2g</code>, so that runs are comparable)</p>
+ *
+ * <p>Three configurations are measured one after the other, in the same JVM:
+ * <ul>
+ *   <li>JDT: {@link Analyzer#analyzeSource(Path, AnalysisOptions)} without
+ *       cache, whose result is the list of classes;</li>
+ *   <li>Spoon: the model built with the default Spoon environment;</li>
+ *   <li>Spoon (léger): the model built with
+ *       {@link AnalysisOptions#spoonLeanProfile}.</li>
+ * </ul>
+ * For each, the table gives the wall time, the peak heap sampled every
+ * {@link #SAMPLE_MILLIS} ms while it runs, and the heap still retained by its
+ * result after a full collection (the model for Spoon), all relative to the
+ * heap in use before the run. The classes extracted from both Spoon models
+ * are counted to check that the lean profile loses nothing.</p>
+ */
+public class HeapBenchmark {
+
+    private static final long SAMPLE_MILLIS = 5;
+    private static final int GC_ROUNDS = 6;
+    private static final double MB = 1024.0 * 1024.0;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java analyzer.HeapBenchmark <dossier-source>");
+            System.exit(1);
+        }
+        Path inputPath = Paths.get(args[0]);
+        System.out.printf("Tas maximal: %.0f Mo%n", Runtime.getRuntime().maxMemory() / MB);
+
+        System.out.println("\n=== Empreinte mémoire ===");
+        System.out.printf("%14s %12s %10s %12s %10s %10s%n",
+            "analyse", "temps (ms)", "pic (Mo)", "retenu (Mo)", "x JDT", "classes");
+
+        Measure jdt = measure(() -> Analyzer.analyzeSource(inputPath, new AnalysisOptions()));
+        print("JDT", jdt, jdt, ((List<?>) jdt.result).size());
+
+        for (boolean lean : new boolean[] {false, true}) {
+            AnalysisOptions options = new AnalysisOptions();
+            options.spoonLeanProfile = lean;
+            Measure spoon = measure(() -> SpoonRunner.buildModel(inputPath, options));
+            CtModel model = (CtModel) spoon.result;
+            int classCount = model != null ? extract(model).size() : 0;
+            // Drop the model before measuring the next configuration
+            spoon.result = null;
+            model = null;
+            print(lean ? "Spoon (léger)" : "Spoon", spoon, jdt, classCount);
+        }
+    }
+
+    /** Classes of a model, extracted as the Spoon analysis does. */
+    private static List<ClassInfo> extract(CtModel model) {
+        List<ClassInfo> classes = new ArrayList<>();
+        SpoonExtractor.Targets targets = new SpoonExtractor.Targets();
+        SymbolTable symbols = new SymbolTable();
+        for (CtType<?> type : model.getAllTypes()) {
+            classes.addAll(SpoonExtractor.extract(type, targets, symbols));
+        }
+        return classes;
+    }
+
+    private static void print(String label, Measure m, Measure jdt, int classCount) {
+        System.out.printf("%14s %12.0f %10.1f %12.1f %10.1f %10d%n", label, m.millis, m.peakBytes / MB,
+            m.retainedBytes / MB, jdt.retainedBytes > 0 ? (double) m.retainedBytes / jdt.retainedBytes : 0, classCount);
+    }
+
+    /**
+     * Runs one configuration while a daemon thread samples the heap, then
+     * measures what its result retains. The result is kept in the measure.
+     */
+    private static Measure measure(Callable<Object> run) throws Exception {
+        long before = usedAfterGc();
+        AtomicLong peak = new AtomicLong(before);
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(MEMORY.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.setDaemon(true);
+
+        Measure m = new Measure();
+        long start = System.nanoTime();
+        sampler.start();
+        try {
+            m.result = run.call();
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        m.millis = (System.nanoTime() - start) / 1e6;
+        m.peakBytes = Math.max(0, peak.get() - before);
+        m.retainedBytes = Math.max(0, usedAfterGc() - before);
+        return m;
+    }
+
+    /**
+     * Heap in use after several full collections: some memory is only freed
+     * by a later collection, so the lowest reading is kept.
+     */
+    static long usedAfterGc() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+            used = Math.min(used, MEMORY.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    /** Time, heap and result of one configuration. */
+    private static class Measure {
+        double millis;
+        long peakBytes;
+        long retainedBytes;
+        Object result;
+    }
+}
@@ -4,9 +4,12 @@ import analyzer.Utils.Dendro;
 import analyzer.Utils.Cluster;
 import analyzer.Utils.ClassInfo;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -44,21 +47,61 @@ public class HierarchicalClusteringAnalyzer {
 	
 	private Dendro dendro;
 	private List<ClassInfo> classes;
-	private Map<String, Double> normalizedCouplings;
+	/** Table of the class IDs. */
+	private SymbolTable symbols;
+	/** Normalized couplings keyed by the pair of class IDs, smaller ID first (see {@link SymbolTable#pairKey}). */
+	private Map<Long, Double> couplingsById;
 	private ArrayList<Dendro> modules;
+	private Path checkpointDirectory;
+	private long checkpointIntervalMillis;
+	/** Merges replayed from the checkpoint by the last clustering. */
+	private int restoredMerges;
 	
 	/**
 	 * Constructs an analyzer instance with the given class information and coupling map.
 	 * Initializes the dendrogram with each class as a separate cluster.
 	 * 
 	 * @param classes List of ClassInfo objects representing the classes to be analyzed.
-	 * @param couplings Map where keys are class pair identifiers (e.g., "A-B") and values
-	 *                  are the normalized coupling scores between the classes.
+	 * @param couplings Map where keys are class pair identifiers (e.g., "A-B", with
+	 *                  fully qualified names) and values are the normalized coupling
+	 *                  scores between the classes. Pairs naming a class unknown to
+	 *                  the analysis are ignored.
 	 */
 	public HierarchicalClusteringAnalyzer(List<ClassInfo> classes, Map<String, Double> couplings) {
+		this(classes, SymbolTable.of(classes));
+		couplingsById = new HashMap<>();
+		for (Map.Entry<String, Double> coupling : couplings.entrySet()) {
+			String[] pair = coupling.getKey().split("-");
+			if (pair.length != 2) continue;
+			// Unknown names stay out of the table the classes share
+			int id1 = symbols.classes.lookup(pair[0]);
+			int id2 = symbols.classes.lookup(pair[1]);
+			if (id1 < 0 || id2 < 0) continue;
+			couplingsById.put(SymbolTable.pairKey(Math.min(id1, id2), Math.max(id1, id2)), coupling.getValue());
+		}
+	}
+	
+	/**
+	 * Constructs an analyzer instance over the couplings computed by a coupling
+	 * analyzer, read by class ID (no "A-B" key is built nor parsed).
+	 * 
+	 * @param classes List of ClassInfo objects representing the classes to be analyzed.
+	 * @param couplings Coupling analyzer of these classes.
+	 */
+	public HierarchicalClusteringAnalyzer(List<ClassInfo> classes, ClassCouplingAnalyzer couplings) {
+		this(classes, couplings.getSymbols() != null ? couplings.getSymbols() : SymbolTable.of(classes));
+		couplingsById = couplings.getNormalizedCouplingsById();
+	}
+	
+	/**
+	 * Initializes the dendrogram with each class as a separate cluster, the
+	 * classes being interned in the table of the couplings.
+	 */
+	private HierarchicalClusteringAnalyzer(List<ClassInfo> classes, SymbolTable symbols) {
 		dendro = new Dendro();
 		this.classes = classes;
-		normalizedCouplings = couplings;
+		this.symbols = symbols;
+		classes.forEach(symbols::intern);
 		
 		ArrayList<Cluster> leafClusters = new ArrayList<>();
 		
@@ -75,16 +118,10 @@ public class HierarchicalClusteringAnalyzer {
 	 * Gets coupling value between two classes
 	 */
 	private double getCoupling(ClassInfo class1, ClassInfo class2) {
-	    String key1 = class1.name + "-" + class2.name;
-	    String key2 = class2.name + "-" + class1.name;
-	    
-	    // Try both key combinations since we don't know the order
-	    if (normalizedCouplings.containsKey(key1)) {
-	        return normalizedCouplings.get(key1);
-	    } else if (normalizedCouplings.containsKey(key2)) {
-	        return normalizedCouplings.get(key2);
-	    }
-	    return 0.0; // No coupling found
+	    int id1 = Math.min(class1.id, class2.id);
+	    int id2 = Math.max(class1.id, class2.id);
+	    Double coupling = couplingsById.get(SymbolTable.pairKey(id1, id2));
+	    return coupling != null ? coupling : 0.0; // 0 when no coupling found
 	}
 	
 	private double computeInterClusterCoupling(Cluster c1, Cluster c2) {
@@ -127,13 +164,29 @@ public class HierarchicalClusteringAnalyzer {
 	
 	private void performClustering() {
 	    int level = 0;
+	    AnalysisCheckpoint.MergeLog log = checkpointDirectory != null
+	        ? AnalysisCheckpoint.MergeLog.open(checkpointDirectory, describeInput(), checkpointIntervalMillis)
+	        : null;
+	    restoredMerges = log != null ? log.getRestoredMerges() : 0;
 	    
 	    while (dendro.clusters.get(level).size() > 1) {
 	        ArrayList<Cluster> currentClusters = dendro.clusters.get(level);
 	        
-	        // Find best pair
-	        Cluster[] bestPair = findBestPair(currentClusters);
-	        double coupling = computeInterClusterCoupling(bestPair[0], bestPair[1]);
+	        Cluster[] bestPair;
+	        double coupling;
+	        if (log != null && level < log.size()) {
+	            // Replay a merge saved by an interrupted run
+	            int[] pair = log.pair(level);
+	            bestPair = new Cluster[]{currentClusters.get(pair[0]), currentClusters.get(pair[1])};
+	            coupling = log.value(level);
+	        } else {
+	            // Find best pair
+	            bestPair = findBestPair(currentClusters);
+	            coupling = computeInterClusterCoupling(bestPair[0], bestPair[1]);
+	            if (log != null) {
+	                log.record(currentClusters.indexOf(bestPair[0]), currentClusters.indexOf(bestPair[1]), coupling);
+	            }
+	        }
 	        
 	        // Merge them
 	        Cluster mergedCluster = mergeClusters(bestPair[0], bestPair[1], coupling);
@@ -150,6 +203,28 @@ public class HierarchicalClusteringAnalyzer {
 	        dendro.clusters.add(nextLevel);
 	        level++;
 	    }
+	    if (log != null) log.delete();
+	}
+	
+	/**
+	 * Describes what is clustered (classes in order and couplings), so that a
+	 * saved merge sequence is only replayed on the same input.
+	 */
+	private String describeInput() {
+	    StringBuilder description = new StringBuilder();
+	    for (ClassInfo cls : classes) {
+	        description.append(cls.packageName).append('.').append(cls.name).append('\n');
+	    }
+	    Map<String, Double> couplings = new TreeMap<>();
+	    for (Map.Entry<Long, Double> coupling : couplingsById.entrySet()) {
+	        String class1 = symbols.classes.name((int) (coupling.getKey() >>> 32));
+	        String class2 = symbols.classes.name(coupling.getKey().intValue());
+	        couplings.put(class1.compareTo(class2) <= 0 ? class1 + "-" + class2 : class2 + "-" + class1, coupling.getValue());
+	    }
+	    for (Map.Entry<String, Double> coupling : couplings.entrySet()) {
+	        description.append(coupling.getKey()).append('=').append(coupling.getValue()).append('\n');
+	    }
+	    return description.toString();
 	}
 
 	private void traverseDendrogram(Cluster cluster) {
@@ -216,6 +291,16 @@ public class HierarchicalClusteringAnalyzer {
 
 	// Public API -------------------------------------------------------------
 	
+	/**
+	 * Periodically saves the merge sequence under the given directory, so that
+	 * an interrupted clustering of the same classes and couplings resumes where
+	 * it stopped (see {@link AnalysisCheckpoint.MergeLog}).
+	 */
+	public void setCheckpoint(Path directory, long intervalMillis) {
+		checkpointDirectory = directory;
+		checkpointIntervalMillis = intervalMillis;
+	}
+	
 	/**
 	 * Runs the hierarchical clustering process (agglomerative) based on the coupling map.
 	 */
@@ -238,6 +323,22 @@ public class HierarchicalClusteringAnalyzer {
 		identifyModules(cp);
 	}
 
+	/**
+	 * Returns the number of merges the last clustering replayed from its
+	 * checkpoint instead of computing them, 0 without checkpoint.
+	 */
+	public int getRestoredMerges() {
+		return restoredMerges;
+	}
+
+	/**
+	 * Returns the dendrogram: one list of clusters per level, from the leaves
+	 * to the root.
+	 */
+	Dendro getDendrogram() {
+		return dendro;
+	}
+
 	/**
 	 * Returns a simple representation of modules: list of modules, each module is a list of class names.
 	 */
@@ -0,0 +1,187 @@
+package analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Compact, columnar store of the classes and methods of an analysis, for
+ * repositories too large to keep one {@link ClassInfo} and
+ * {@link MethodInfo} object graph per declaration.
+ *
+ * <p>A MethodInfo costs its object header, boxed and string fields, a list
+ * of call sites and a hash set of call signatures, whose entries outweigh
+ * the facts they hold. The store keeps the same facts as parallel
+ * <code>int</code> arrays (struct of arrays): one element per class, one per
+ * method and one per call site, with the names and signatures replaced by
+ * their IDs in the {@link SymbolTable} of the stored classes. Arrays grow by
+ * doubling while classes are added; {@link #view()} then returns an
+ * immutable {@link ModelView} trimmed to size, which the analyzers read (e.g.
+ * {@link ClassCouplingAnalyzer#ClassCouplingAnalyzer(ModelView)}).</p>
+ *
+ * <p>Typical use on a very large tree: stream the classes
+ * ({@link Analyzer#publishSource}) into {@link #fromPublisher}, so that each
+ * ClassInfo can be collected as soon as it is stored.</p>
+ *
+ * <p>A store is filled by one thread at a time.</p>
+ */
+class ModelStore {
+
+    /** Number of classes requested at a time from a streamed source. */
+    private static final int STREAM_REQUEST_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Table of the stored IDs: the table of the first class stored. */
+    private SymbolTable symbols;
+    private int classCount;
+    private int[] classIds = new int[INITIAL_CAPACITY];
+    private int[] attributeCounts = new int[INITIAL_CAPACITY];
+    private int[] classModules = new int[INITIAL_CAPACITY];
+    private int[] methodOffsets = new int[INITIAL_CAPACITY + 1];
+    private final List<String> modules = new ArrayList<>();
+    private final Map<String, Integer> moduleIds = new HashMap<>();
+
+    private int methodCount;
+    private int[] methodOwners = new int[INITIAL_CAPACITY];
+    private int[] parameterCounts = new int[INITIAL_CAPACITY];
+    private int[] lineCounts = new int[INITIAL_CAPACITY];
+    private int[] signatures = new int[INITIAL_CAPACITY];
+    private int[] exactSignatures = new int[INITIAL_CAPACITY];
+    private int[] callOffsets = new int[INITIAL_CAPACITY + 1];
+
+    private int callCount;
+    private int[] callSites = new int[INITIAL_CAPACITY];
+
+    /**
+     * Stores a list of classes.
+     * @param classes Classes of the analysis, in project order
+     * @return the view of these classes, in the same order
+     */
+    static ModelView of(List<ClassInfo> classes) {
+        ModelStore store = new ModelStore();
+        classes.forEach(store::add);
+        return store.view();
+    }
+
+    /**
+     * Subscribes to a stream of classes (for instance {@link Analyzer#publishSource})
+     * and stores them as they arrive, without retaining the ClassInfo objects.
+     *
+     * @param publisher source of classes
+     * @return future completed with the view once the stream ends, or
+     *         completed exceptionally if the stream fails
+     */
+    static CompletableFuture<ModelView> fromPublisher(Flow.Publisher<ClassInfo> publisher) {
+        ModelStore store = new ModelStore();
+        CompletableFuture<ModelView> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ClassInfo>() {
+            private Flow.Subscription subscription;
+            private int pending;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                pending = STREAM_REQUEST_SIZE;
+                subscription.request(STREAM_REQUEST_SIZE);
+            }
+
+            @Override
+            public void onNext(ClassInfo cls) {
+                store.add(cls);
+                if (--pending == 0) {
+                    pending = STREAM_REQUEST_SIZE;
+                    subscription.request(STREAM_REQUEST_SIZE);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(store.view());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Appends a class, its methods and their call sites.
+     * @param cls Class to store; it is interned if it was not yet
+     */
+    void add(ClassInfo cls) {
+        if (symbols == null) symbols = cls.symbols != null ? cls.symbols : new SymbolTable();
+        symbols.intern(cls);
+        if (classCount == classIds.length) {
+            int capacity = classCount * 2;
+            classIds = Arrays.copyOf(classIds, capacity);
+            attributeCounts = Arrays.copyOf(attributeCounts, capacity);
+            classModules = Arrays.copyOf(classModules, capacity);
+            methodOffsets = Arrays.copyOf(methodOffsets, capacity + 1);
+        }
+        classIds[classCount] = cls.id;
+        attributeCounts[classCount] = cls.nbAttributes;
+        classModules[classCount] = cls.module != null ? moduleIds.computeIfAbsent(cls.module, this::newModule) : -1;
+
+        for (MethodInfo method : cls.methods) {
+            if (methodCount == methodOwners.length) {
+                int capacity = methodCount * 2;
+                methodOwners = Arrays.copyOf(methodOwners, capacity);
+                parameterCounts = Arrays.copyOf(parameterCounts, capacity);
+                lineCounts = Arrays.copyOf(lineCounts, capacity);
+                signatures = Arrays.copyOf(signatures, capacity);
+                exactSignatures = Arrays.copyOf(exactSignatures, capacity);
+                callOffsets = Arrays.copyOf(callOffsets, capacity + 1);
+            }
+            methodOwners[methodCount] = classCount;
+            parameterCounts[methodCount] = method.nbParameters;
+            lineCounts[methodCount] = method.nbLines;
+            signatures[methodCount] = method.signatureId;
+            exactSignatures[methodCount] = method.exactSignatureId;
+
+            int[] calls = method.callSiteIds;
+            if (callCount + calls.length > callSites.length) {
+                callSites = Arrays.copyOf(callSites, Math.max(callSites.length * 2, callCount + calls.length));
+            }
+            System.arraycopy(calls, 0, callSites, callCount, calls.length);
+            callCount += calls.length;
+            callOffsets[++methodCount] = callCount;
+        }
+        methodOffsets[++classCount] = methodCount;
+    }
+
+    private int newModule(String module) {
+        modules.add(module);
+        return modules.size() - 1;
+    }
+
+    /**
+     * Returns an immutable view of the classes stored so far; classes added
+     * afterwards do not appear in it.
+     */
+    ModelView view() {
+        return new ModelView(symbols != null ? symbols : new SymbolTable(), classCount,
+            Arrays.copyOf(classIds, classCount),
+            Arrays.copyOf(attributeCounts, classCount),
+            Arrays.copyOf(classModules, classCount),
+            modules.toArray(new String[0]),
+            Arrays.copyOf(methodOffsets, classCount + 1),
+            methodCount,
+            Arrays.copyOf(methodOwners, methodCount),
+            Arrays.copyOf(parameterCounts, methodCount),
+            Arrays.copyOf(lineCounts, methodCount),
+            Arrays.copyOf(signatures, methodCount),
+            Arrays.copyOf(exactSignatures, methodCount),
+            Arrays.copyOf(callOffsets, methodCount + 1),
+            Arrays.copyOf(callSites, callCount));
+    }
+}
@@ -0,0 +1,132 @@
+package analyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Command-line benchmark of the heap taken by the analysis model: the
+ * {@link ClassInfo}/{@link MethodInfo} objects versus the columnar
+ * {@link ModelStore}.
+ *
+ * <p>Usage: <code>java analyzer.ModelStoreBenchmark [methods]</code>
+ * (one million by default, with a large enough heap, e.g. <code>-Xmx4g</code>)</p>
+ *
+ * <p>The corpus is synthetic and reproducible: {@link #METHODS_PER_CLASS}
+ * methods per class, {@link #CLASSES_PER_PACKAGE} classes per package, and
+ * 0 to {@link #MAX_CALLS} call sites per method. Each package declares
+ * method names drawn from a pool of its own; most calls stay within the
+ * package, the others call a name of another package. Strings are built one
+ * by one and classes are interned, as the parsers do. The table gives the heap retained by each
+ * model alone, after a full collection, relative to the heap left once both
+ * are dropped:
+ * <ul>
+ *   <li>objets: the classes as produced by the parsers;</li>
+ *   <li>colonnes: the {@link ModelView} built from them.</li>
+ * </ul>
+ * The {@link SymbolTable} is shared by both models and counted in neither: a
+ * first generation of the corpus fills it beforehand.
+ * The couplings computed from both models are timed and compared.</p>
+ */
+public class ModelStoreBenchmark {
+
+    private static final int METHODS_PER_CLASS = 10;
+    private static final int CLASSES_PER_PACKAGE = 50;
+    private static final int MAX_CALLS = 8;
+    /** Method names of each package. */
+    private static final int NAMES_PER_PACKAGE = 100;
+    /** Share of the calls towards another package. */
+    private static final double EXTERNAL_CALLS = 0.1;
+    private static final int MAX_PARAMETERS = 4;
+    private static final double MB = 1024.0 * 1024.0;
+
+    public static void main(String[] args) {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("Tas maximal: %.0f Mo%n", Runtime.getRuntime().maxMemory() / MB);
+
+        // A first generation fills the symbol table, shared by both models
+        SymbolTable symbols = new SymbolTable();
+        generate(methods, symbols);
+
+        // Each model is measured alone, against the heap left once both are dropped
+        List<ClassInfo> classes = generate(methods, symbols);
+        long withObjects = HeapBenchmark.usedAfterGc();
+        ModelView view = ModelStore.of(classes);
+        classes = null;
+        long withView = HeapBenchmark.usedAfterGc();
+        int classCount = view.classCount();
+        int methodCount = view.methodCount();
+        int callCount = view.callCount();
+        long arrayBytes = view.arrayBytes();
+        view = null;
+        long empty = HeapBenchmark.usedAfterGc();
+        long objectBytes = withObjects - empty;
+        long viewBytes = withView - empty;
+
+        classes = generate(methods, symbols);
+        view = ModelStore.of(classes);
+        long start = System.nanoTime();
+        ClassCouplingAnalyzer fromObjects = new ClassCouplingAnalyzer(classes);
+        double objectMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        ClassCouplingAnalyzer fromView = new ClassCouplingAnalyzer(view);
+        double viewMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%nCorpus: %d classes, %d méthodes, %d appels%n", classCount, methodCount, callCount);
+        System.out.printf("Table de symboles (commune): %d classes, %d signatures%n",
+            symbols.classes.size(), symbols.signatures.size());
+        System.out.println("\n=== Empreinte mémoire ===");
+        System.out.printf("%10s %12s %14s %16s%n", "modèle", "retenu (Mo)", "octets/méthode", "couplage (ms)");
+        System.out.printf("%10s %12.1f %14.0f %16.0f%n", "objets", objectBytes / MB,
+            (double) objectBytes / methodCount, objectMillis);
+        System.out.printf("%10s %12.1f %14.0f %16.0f%n", "colonnes", viewBytes / MB,
+            (double) viewBytes / methodCount, viewMillis);
+        System.out.printf("%nTableaux de la vue (calculés): %.1f Mo%n", arrayBytes / MB);
+
+        boolean same = fromObjects.getTotalCouplings() == fromView.getTotalCouplings()
+            && fromObjects.getNormalizedCouplingsById().equals(fromView.getNormalizedCouplingsById());
+        System.out.println("Couplages identiques: " + (same ? "oui" : "NON"));
+    }
+
+    /** Generates a reproducible corpus of about the given number of methods. */
+    private static List<ClassInfo> generate(int methods, SymbolTable symbols) {
+        Random random = new Random(42);
+        int classCount = Math.max(1, methods / METHODS_PER_CLASS);
+        int packageCount = (classCount + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE;
+        List<ClassInfo> classes = new ArrayList<>(classCount);
+        for (int c = 0; c < classCount; c++) {
+            ClassInfo cls = new ClassInfo();
+            cls.name = "Class" + c;
+            int pkg = c / CLASSES_PER_PACKAGE;
+            cls.packageName = "org.example.p" + pkg;
+            cls.nbAttributes = random.nextInt(6);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                MethodInfo method = new MethodInfo();
+                method.name = name(pkg, random);
+                method.nbParameters = random.nextInt(MAX_PARAMETERS);
+                method.nbLines = 1 + random.nextInt(40);
+                method.classOwner = cls.packageName + "." + cls.name;
+                method.callSiteIds = new int[random.nextInt(MAX_CALLS + 1)];
+                for (int k = 0; k < method.callSiteIds.length; k++) {
+                    int target = random.nextDouble() < EXTERNAL_CALLS ? random.nextInt(packageCount) : pkg;
+                    String callSignature = name(target, random) + ":" + random.nextInt(MAX_PARAMETERS);
+                    method.callSiteIds[k] = symbols.signatures.intern(callSignature);
+                }
+                cls.methods.add(method);
+            }
+            cls.nbMethods = cls.methods.size();
+            // As the parsers do
+            symbols.intern(cls);
+            classes.add(cls);
+        }
+        return classes;
+    }
+
+    /** Random method name of a package. */
+    private static String name(int pkg, Random random) {
+        return "p" + pkg + "m" + random.nextInt(NAMES_PER_PACKAGE);
+    }
+}
@@ -0,0 +1,187 @@
+package analyzer;
+
+/**
+ * Read-only columnar view of the classes and methods of an analysis, built by
+ * a {@link ModelStore}.
+ *
+ * <p>Classes and methods are numbered from 0 in the order they were stored;
+ * every fact is an element of a primitive array indexed by that number:
+ * <ul>
+ *   <li>class <code>c</code>: the ID of its qualified name, its number
+ *       of attributes, its module, and its methods, which are the contiguous
+ *       range <code>[firstMethod(c), endMethod(c))</code>;</li>
+ *   <li>method <code>m</code>: its owner class, parameter count, line count,
+ *       the IDs of its signature and exact
+ *       signature, and its call sites, the contiguous range
+ *       <code>[firstCall(m), endCall(m))</code> of a flat array of signature IDs
+ *       (see {@link Utils.MethodInfo#callSiteIds}).</li>
+ * </ul>
+ * Names are not stored: they are read back from the {@link SymbolTable} of
+ * the stored classes, which the view keeps.</p>
+ *
+ * <p>A view is immutable and can be shared between threads. It holds no
+ * resolved call ({@link Utils.MethodInfo#calls}).</p>
+ */
+final class ModelView {
+
+    private final SymbolTable symbols;
+    private final int classCount;
+    private final int[] classIds;
+    private final int[] attributeCounts;
+    private final int[] classModules;
+    private final String[] modules;
+    /** classCount + 1 offsets into the method arrays. */
+    private final int[] methodOffsets;
+
+    private final int methodCount;
+    private final int[] methodOwners;
+    private final int[] parameterCounts;
+    private final int[] lineCounts;
+    private final int[] signatures;
+    private final int[] exactSignatures;
+    /** methodCount + 1 offsets into callSites. */
+    private final int[] callOffsets;
+    private final int[] callSites;
+
+    ModelView(SymbolTable symbols, int classCount, int[] classIds, int[] attributeCounts, int[] classModules,
+              String[] modules, int[] methodOffsets, int methodCount, int[] methodOwners, int[] parameterCounts,
+              int[] lineCounts, int[] signatures, int[] exactSignatures, int[] callOffsets, int[] callSites) {
+        this.symbols = symbols;
+        this.classCount = classCount;
+        this.classIds = classIds;
+        this.attributeCounts = attributeCounts;
+        this.classModules = classModules;
+        this.modules = modules;
+        this.methodOffsets = methodOffsets;
+        this.methodCount = methodCount;
+        this.methodOwners = methodOwners;
+        this.parameterCounts = parameterCounts;
+        this.lineCounts = lineCounts;
+        this.signatures = signatures;
+        this.exactSignatures = exactSignatures;
+        this.callOffsets = callOffsets;
+        this.callSites = callSites;
+    }
+
+    /** Table of the class and signature IDs of the view. */
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    // Classes ---------------------------------------------------------------
+
+    int classCount() {
+        return classCount;
+    }
+
+    /** ID of the qualified name of class c. */
+    int classId(int c) {
+        return classIds[c];
+    }
+
+    String qualifiedName(int c) {
+        return symbols.classes.name(classIds[c]);
+    }
+
+    /** Simple name of class c. */
+    String className(int c) {
+        String name = qualifiedName(c);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /** Package of class c, empty for the default package. */
+    String packageName(int c) {
+        String name = qualifiedName(c);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(0, dot) : "";
+    }
+
+    int attributeCount(int c) {
+        return attributeCounts[c];
+    }
+
+    /** Build module of class c, or null outside a module analysis. */
+    String module(int c) {
+        return classModules[c] >= 0 ? modules[classModules[c]] : null;
+    }
+
+    /** First method of class c. */
+    int firstMethod(int c) {
+        return methodOffsets[c];
+    }
+
+    /** Method following the last method of class c. */
+    int endMethod(int c) {
+        return methodOffsets[c + 1];
+    }
+
+    // Methods ---------------------------------------------------------------
+
+    int methodCount() {
+        return methodCount;
+    }
+
+    /** Class declaring method m. */
+    int methodOwner(int m) {
+        return methodOwners[m];
+    }
+
+    String methodName(int m) {
+        String signature = symbols.signatures.name(signatures[m]);
+        return signature.substring(0, signature.lastIndexOf(':'));
+    }
+
+    int parameterCount(int m) {
+        return parameterCounts[m];
+    }
+
+    int lineCount(int m) {
+        return lineCounts[m];
+    }
+
+    /** ID of "methodName:paramCount". */
+    int signature(int m) {
+        return signatures[m];
+    }
+
+    /** ID of "pkg.Class#methodName:paramCount". */
+    int exactSignature(int m) {
+        return exactSignatures[m];
+    }
+
+    // Calls -----------------------------------------------------------------
+
+    /** Number of call sites of all methods. */
+    int callCount() {
+        return callOffsets[methodCount];
+    }
+
+    /** First call site of method m. */
+    int firstCall(int m) {
+        return callOffsets[m];
+    }
+
+    /** Call site following the last call site of method m. */
+    int endCall(int m) {
+        return callOffsets[m + 1];
+    }
+
+    /** Signature ID called by call site k. */
+    int callSignature(int k) {
+        return callSites[k];
+    }
+
+    /**
+     * Approximate bytes taken by the arrays of the view (16 bytes of header
+     * per array), not counting the module names and the symbol table.
+     */
+    long arrayBytes() {
+        long bytes = 0;
+        for (int[] array : new int[][] {classIds, attributeCounts, classModules, methodOffsets, methodOwners,
+                                         parameterCounts, lineCounts, signatures, exactSignatures, callOffsets,
+                                         callSites}) {
+            bytes += 16 + 4L * array.length;
+        }
+        return bytes + 16 + 4L * modules.length;
+    }
+}
@@ -0,0 +1,231 @@
+package analyzer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Creates and prepares the JDT parsers of the analysis.
+ *
+ * <p>Each parser worker owns one {@link ASTParser} for the whole run (see
+ * {@link #newParser()}). JDT resets a parser to its defaults after every
+ * <code>createAST</code> call, so {@link #prepare} applies the settings again
+ * before each file; the compiler options are computed once per JVM and only
+ * copied by the parser.</p>
+ *
+ * <p>The first files of an analysis are parsed by the interpreter until the
+ * JIT has compiled JDT's scanner, parser and DOM converter: the first file
+ * typically costs a hundred times a file of the same size parsed later.
+ * {@link #warmUpInBackground()} pays that cost beforehand, on a small
+ * synthetic corpus, while the user is still choosing a folder; an analysis
+ * that starts in the meantime stops the warm-up (see {@link #stopWarmUp()}).</p>
+ */
+class ParserFactory {
+
+    /**
+     * Compiler options shared by every parser. The source level matches
+     * {@link AST#JLS11}; JDT would otherwise default to Java 1.3 and report
+     * generics, annotations and lambdas as syntax errors.
+     */
+    static final Map<String, String> COMPILER_OPTIONS = createCompilerOptions();
+
+    /** Longest warm-up, so that it never competes with an analysis for long. */
+    static final long WARM_UP_MILLIS = 5_000;
+    /** Passes over the synthetic corpus; enough for the JIT to compile the hot paths. */
+    static final int WARM_UP_PASSES = 40;
+    /** Synthetic compilation units parsed by each warm-up pass. */
+    private static final int WARM_UP_UNITS = 8;
+
+    private static volatile boolean warmUpStarted;
+    private static volatile boolean warmUpStopped;
+
+    private ParserFactory() {
+    }
+
+    /** Returns a parser for one worker thread; prepare it with {@link #prepare} before each file. */
+    static ASTParser newParser() {
+        return ASTParser.newParser(AST.JLS11);
+    }
+
+    /**
+     * Applies the analysis settings to a parser, which JDT resets after each
+     * <code>createAST</code> or <code>createASTs</code> call.
+     * @param parser Parser owned by the calling thread
+     * @param structureOnly True to skip method bodies
+     * @param resolveBindings True to request bindings (the environment is set by the caller)
+     */
+    static void prepare(ASTParser parser, boolean structureOnly, boolean resolveBindings) {
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setCompilerOptions(COMPILER_OPTIONS);
+        parser.setResolveBindings(resolveBindings);
+        parser.setIgnoreMethodBodies(structureOnly);
+    }
+
+    /**
+     * Parses and extracts one source, under a budget when one is given.
+     * @param text Source text
+     * @param parser Parser owned by the calling thread
+     * @param structureOnly True to skip method bodies (no calls)
+     * @param budget Budget of the attempt, or null for none
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes declared in the source
+     * @throws FileBudget.Exceeded if the budget is spent
+     */
+    static List<ClassInfo> parse(char[] text, ASTParser parser, boolean structureOnly, FileBudget budget,
+                                 SymbolTable symbols) {
+        prepare(parser, structureOnly, false);
+        parser.setSource(text);
+        CompilationUnit cu;
+        try {
+            cu = (CompilationUnit) parser.createAST(budget);
+        } catch (OperationCanceledException e) {
+            throw budget.timeExceeded();
+        }
+        return ClassExtractor.extract(cu, !structureOnly, null, budget, symbols);
+    }
+
+    /**
+     * Starts the warm-up on a daemon thread, once per JVM. Does nothing if a
+     * warm-up already ran or an analysis already started.
+     */
+    static void warmUpInBackground() {
+        if (warmUpStarted || warmUpStopped) return;
+        Thread thread = new Thread(ParserFactory::warmUp, "analyzer-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Parses the synthetic corpus {@link #WARM_UP_PASSES} times (at most
+     * {@link #WARM_UP_MILLIS}) on the calling thread, once per JVM.
+     * @return number of compilation units parsed
+     */
+    static int warmUp() {
+        synchronized (ParserFactory.class) {
+            if (warmUpStarted) return 0;
+            warmUpStarted = true;
+        }
+        char[][] corpus = new char[WARM_UP_UNITS][];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = syntheticUnit(i).toCharArray();
+        }
+        ASTParser parser = newParser();
+        // Synthetic names stay out of the tables of the analyses
+        SymbolTable symbols = new SymbolTable();
+        long deadline = System.currentTimeMillis() + WARM_UP_MILLIS;
+        int parsed = 0;
+        for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+            for (int i = 0; i < corpus.length; i++) {
+                if (warmUpStopped || System.currentTimeMillis() > deadline) return parsed;
+                // One unit in four without bodies, as in the structure-only mode
+                parse(corpus[i], parser, i % 4 == 3, null, symbols);
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    /** Stops a running warm-up at the end of its current unit, and prevents later ones. */
+    static void stopWarmUp() {
+        warmUpStopped = true;
+    }
+
+    /**
+     * Builds a compilation unit using the constructs met in real projects
+     * (generics, lambdas, anonymous and nested classes, enums, annotations,
+     * switch, try-with-resources...), so that every hot path of the scanner,
+     * the parser, the DOM converter and {@link ClassExtractor} gets compiled.
+     */
+    private static String syntheticUnit(int n) {
+        String name = "Unit" + n;
+        StringBuilder sb = new StringBuilder();
+        sb.append("package warmup.p").append(n % 3).append(";\n\n")
+          .append("import java.util.*;\nimport java.util.function.*;\nimport java.io.*;\n\n")
+          .append("/** Synthetic unit ").append(n).append(". */\n")
+          .append("@SuppressWarnings(\"unchecked\")\n")
+          .append("public class ").append(name).append("<T extends Comparable<T>> extends AbstractList<T>")
+          .append(" implements Serializable, Cloneable {\n")
+          .append("    private static final long serialVersionUID = ").append(n).append("L;\n")
+          .append("    private final List<T> items = new ArrayList<>();\n")
+          .append("    private Map<String, List<Integer>> index = new HashMap<>();\n")
+          .append("    protected int count, limit = 0x7f;\n")
+          .append("    volatile double ratio = 1.5e3;\n\n")
+          .append("    enum Kind { FIRST, SECOND(2), THIRD(3) { @Override int weight() { return 9; } };\n")
+          .append("        private final int value;\n")
+          .append("        Kind() { this(1); }\n")
+          .append("        Kind(int value) { this.value = value; }\n")
+          .append("        int weight() { return value * 2; }\n")
+          .append("    }\n\n")
+          .append("    interface Visitor<R> { R visit(").append(name).append("<?> unit, Kind kind); }\n\n")
+          .append("    static class Node<K, V> implements Map.Entry<K, V> {\n")
+          .append("        K key; V value; Node<K, V> next;\n")
+          .append("        Node(K key, V value) { this.key = key; this.value = value; }\n")
+          .append("        public K getKey() { return key; }\n")
+          .append("        public V getValue() { return value; }\n")
+          .append("        public V setValue(V v) { V old = value; value = v; return old; }\n")
+          .append("    }\n\n")
+          .append("    public ").append(name).append("(Collection<? extends T> source) {\n")
+          .append("        super();\n")
+          .append("        for (T item : source) { if (item != null) items.add(item); }\n")
+          .append("    }\n\n")
+          .append("    @Override\n")
+          .append("    public T get(int i) { return items.get(i); }\n\n")
+          .append("    @Override\n")
+          .append("    public int size() { return items.size(); }\n\n");
+        for (int m = 0; m < 12; m++) {
+            sb.append("    /**\n     * Method ").append(m).append(".\n     * @param values input\n     */\n")
+              .append("    public <R> List<R> transform").append(m)
+              .append("(List<T> values, Function<? super T, ? extends R> mapper, int... extra) throws IOException {\n")
+              .append("        List<R> result = new ArrayList<>(values.size() + extra.length);\n")
+              .append("        int total = 0;\n")
+              .append("        for (int i = 0; i < values.size(); i++) {\n")
+              .append("            T value = values.get(i);\n")
+              .append("            if (value == null || i % ").append(m + 2).append(" == 0) continue;\n")
+              .append("            total += i > limit ? i << 1 : (i >>> 2) & 0xff;\n")
+              .append("            result.add(mapper.apply(value));\n")
+              .append("        }\n")
+              .append("        switch (total % 4) {\n")
+              .append("            case 0: count++; break;\n")
+              .append("            case 1: case 2: count += total; break;\n")
+              .append("            default: count = Math.max(count, total);\n")
+              .append("        }\n")
+              .append("        try (StringReader reader = new StringReader(String.valueOf(total))) {\n")
+              .append("            while (reader.read() >= 0) { ratio *= 0.5d; }\n")
+              .append("        } catch (IllegalStateException | UnsupportedOperationException e) {\n")
+              .append("            throw new IOException(\"échec \" + e.getMessage(), e);\n")
+              .append("        } finally {\n")
+              .append("            index.computeIfAbsent(\"k").append(m).append("\", k -> new ArrayList<>()).add(total);\n")
+              .append("        }\n")
+              .append("        Runnable task = new Runnable() {\n")
+              .append("            @Override public void run() { Collections.sort(items); }\n")
+              .append("        };\n")
+              .append("        task.run();\n")
+              .append("        Optional<T> best = items.stream().filter(Objects::nonNull)\n")
+              .append("            .sorted(Comparator.reverseOrder()).findFirst();\n")
+              .append("        String label = best.map(Object::toString).orElse(\"aucun\");\n")
+              .append("        Object[] row = { label, total, ratio, (char) ('a' + ").append(m).append(") };\n")
+              .append("        assert row.length == 4 : \"ligne\";\n")
+              .append("        synchronized (this) { do { total--; } while (total > 0 && !label.isEmpty()); }\n")
+              .append("        return result instanceof RandomAccess ? result : new LinkedList<>(result);\n")
+              .append("    }\n\n");
+        }
+        sb.append("    <R> R accept(Visitor<R> visitor) { return visitor.visit(this, Kind.values()[count % 3]); }\n")
+          .append("}\n");
+        return sb.toString();
+    }
+
+    private static Map<String, String> createCompilerOptions() {
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_11, options);
+        return Collections.unmodifiableMap(options);
+    }
+}
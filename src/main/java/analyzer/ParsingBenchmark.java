@@ -0,0 +1,148 @@
+package analyzer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTParser;
+
+/**
+ * Command-line benchmark measuring the JDT parsing engine.
+ *
+ * <p>Usage: <code>java analyzer.ParsingBenchmark &lt;source-folder&gt; [runs] [--warm-up]</code></p>
+ *
+ * <p>The first table gives the parse latency of the first
+ * {@link #LATENCY_FILES} files, one at a time on a single thread: in the
+ * freshly started JVM (after {@link ParserFactory#warmUp()} with
+ * <code>--warm-up</code>), then once the JIT has compiled the parser. Run the
+ * benchmark with and without <code>--warm-up</code> to compare.</p>
+ *
+ * <p>The other tables give the best wall time over <code>runs</code> analyses
+ * after a warm-up pass:
+ * <ul>
+ *   <li>scaling: throughput (files/s) and speedup for 1, 2, 4, 8, 16 and 32
+ *       worker threads;</li>
+ *   <li>parsing mode: one createAST call per file (reading and parsing on
+ *       the same thread), the same with a separate reading stage, and batched
+ *       createASTs calls, all at the default thread count;</li>
+ *   <li>extraction: full analysis versus the structure-only mode, which
+ *       skips method bodies (no calls).</li>
+ * </ul></p>
+ */
+public class ParsingBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+    /** Files whose parse latency is measured. */
+    private static final int LATENCY_FILES = 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java analyzer.ParsingBenchmark <dossier-source> [runs] [--warm-up]");
+            System.exit(1);
+        }
+        Path inputPath = Paths.get(args[0]);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean warmUp = args.length > 2 && args[2].equals("--warm-up");
+        List<Path> files = Analyzer.collectSourceFiles(inputPath);
+        int fileCount = files.size();
+
+        System.out.println("Fichiers: " + fileCount + ", processeurs: " + Runtime.getRuntime().availableProcessors());
+
+        // Measured first: the JVM is still cold
+        if (warmUp) {
+            long start = System.nanoTime();
+            int units = ParserFactory.warmUp();
+            System.out.printf("Préchauffage: %d unités en %.0f ms%n", units, (System.nanoTime() - start) / 1e6);
+        }
+        List<Path> sample = files.subList(0, Math.min(LATENCY_FILES, fileCount));
+        double[] first = latencies(sample);
+
+        // Warm-up: let the JIT compile the parser before measuring
+        Analyzer.analyzeSource(inputPath, new AnalysisOptions());
+        double[] steady = latencies(sample);
+
+        System.out.println("\n=== Latence de parsing (" + sample.size() + " premiers fichiers) ===");
+        System.out.printf("%16s %14s %14s %12s%n", "", "premier (ms)", "médiane (ms)", "total (ms)");
+        printLatencies(warmUp ? "préchauffé" : "à froid", first);
+        printLatencies("régime établi", steady);
+
+        System.out.println("\n=== Passage à l'échelle ===");
+        System.out.printf("%8s %12s %12s %10s %10s%n", "threads", "temps (ms)", "fichiers/s", "speedup", "classes");
+        double baseline = 0;
+        for (int threads : THREAD_COUNTS) {
+            AnalysisOptions options = new AnalysisOptions();
+            options.threads = threads;
+            Measure m = measure(inputPath, options, runs);
+            if (baseline == 0) baseline = m.millis;
+            System.out.printf("%8d %12.1f %12.1f %10.2f %10d%n",
+                threads, m.millis, fileCount / (m.millis / 1000.0), baseline / m.millis, m.classCount);
+        }
+
+        System.out.println("\n=== Mode de parsing ===");
+        System.out.printf("%10s %12s %12s %10s%n", "mode", "temps (ms)", "fichiers/s", "classes");
+        for (String mode : new String[] {"par-fichier", "pipeline", "batch"}) {
+            AnalysisOptions options = new AnalysisOptions();
+            options.pipelining = mode.equals("pipeline");
+            options.batchParsing = mode.equals("batch");
+            Measure m = measure(inputPath, options, runs);
+            System.out.printf("%10s %12.1f %12.1f %10d%n",
+                mode, m.millis, fileCount / (m.millis / 1000.0), m.classCount);
+        }
+
+        System.out.println("\n=== Extraction ===");
+        System.out.printf("%10s %12s %12s %10s %10s%n", "mode", "temps (ms)", "fichiers/s", "speedup", "classes");
+        double full = 0;
+        for (String mode : new String[] {"complet", "structure"}) {
+            AnalysisOptions options = new AnalysisOptions();
+            options.structureOnly = mode.equals("structure");
+            Measure m = measure(inputPath, options, runs);
+            if (full == 0) full = m.millis;
+            System.out.printf("%10s %12.1f %12.1f %10.2f %10d%n",
+                mode, m.millis, fileCount / (m.millis / 1000.0), full / m.millis, m.classCount);
+        }
+    }
+
+    /** Parses each file on the calling thread and returns its parse time in milliseconds. */
+    private static double[] latencies(List<Path> files) throws IOException {
+        ASTParser parser = ParserFactory.newParser();
+        double[] millis = new double[files.size()];
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < millis.length; i++) {
+            char[] text = new String(Files.readAllBytes(files.get(i)), StandardCharsets.UTF_8).toCharArray();
+            long start = System.nanoTime();
+            ParserFactory.parse(text, parser, false, null, symbols);
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        return millis;
+    }
+
+    private static void printLatencies(String label, double[] millis) {
+        if (millis.length == 0) return;
+        double[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%16s %14.1f %14.1f %12.1f%n",
+            label, millis[0], sorted[sorted.length / 2], Arrays.stream(millis).sum());
+    }
+
+    private static Measure measure(Path inputPath, AnalysisOptions options, int runs) throws IOException {
+        Measure m = new Measure();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < runs; r++) {
+            long start = System.nanoTime();
+            m.classCount = Analyzer.analyzeSource(inputPath, options).size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        m.millis = best / 1_000_000.0;
+        return m;
+    }
+
+    /** Best wall time and number of classes found for one configuration. */
+    private static class Measure {
+        double millis;
+        int classCount;
+    }
+}
@@ -0,0 +1,103 @@
+package analyzer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the two-stage reading/parsing pipeline used by
+ * {@link Analyzer#analyzeSource(java.nio.file.Path, AnalysisOptions)} when
+ * {@link AnalysisOptions#pipelining} is enabled. Filled concurrently by both
+ * stages when {@link AnalysisOptions#pipelineStats} is set.
+ *
+ * <p>For each stage: number of files, busy time, time spent waiting on the
+ * queue between the stages and throughput over the stage's wall time. A read
+ * stage that waits a lot for queue space means parsing is the bottleneck; a
+ * parse stage that waits a lot for input means the disk is.</p>
+ */
+class PipelineStats {
+
+    /** Counters of one stage. */
+    static class Stage {
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+        /** Records one file processed between the given {@link System#nanoTime()} values. */
+        void processed(long start, long end) {
+            files.incrementAndGet();
+            busyNanos.addAndGet(end - start);
+            firstStart.accumulateAndGet(start, Math::min);
+            lastEnd.accumulateAndGet(end, Math::max);
+        }
+
+        /** Records time spent blocked on the queue between the stages. */
+        void waited(long nanos) {
+            waitNanos.addAndGet(nanos);
+        }
+
+        int getFiles() {
+            return files.get();
+        }
+
+        /** Time spent processing files, summed over the threads of the stage. */
+        long getBusyMillis() {
+            return busyNanos.get() / 1_000_000;
+        }
+
+        /** Time spent blocked on the queue, summed over the threads of the stage. */
+        long getWaitMillis() {
+            return waitNanos.get() / 1_000_000;
+        }
+
+        /** Files per second between the first start and the last end of the stage. */
+        double getThroughput() {
+            long wall = lastEnd.get() - firstStart.get();
+            return wall > 0 ? files.get() * 1e9 / wall : 0;
+        }
+    }
+
+    /** Reading, hashing and decoding stage. */
+    final Stage read = new Stage();
+    /** Parsing and extraction stage. */
+    final Stage parse = new Stage();
+
+    private volatile int queueDepth;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong depthSum = new AtomicLong();
+    private final AtomicLong depthSamples = new AtomicLong();
+
+    /** Records the queue depth observed right after a file entered or left it. */
+    void sampleQueue(int depth) {
+        queueDepth = depth;
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        depthSum.addAndGet(depth);
+        depthSamples.incrementAndGet();
+    }
+
+    /** Number of files read and waiting to be parsed, as last observed. */
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /** Queue depth averaged over every enqueue and dequeue. */
+    double getAverageQueueDepth() {
+        long samples = depthSamples.get();
+        return samples > 0 ? (double) depthSum.get() / samples : 0;
+    }
+
+    /** Two-line summary: one line per stage, with the queue depth. */
+    String summary() {
+        return String.format("Pipeline lecture: %d fichier(s), %.1f fichiers/s, occupé %d ms, attente file %d ms%n"
+                + "Pipeline analyse: %d fichier(s), %.1f fichiers/s, occupé %d ms, attente file %d ms "
+                + "(profondeur moyenne %.1f, max %d)",
+            read.getFiles(), read.getThroughput(), read.getBusyMillis(), read.getWaitMillis(),
+            parse.getFiles(), parse.getThroughput(), parse.getBusyMillis(), parse.getWaitMillis(),
+            getAverageQueueDepth(), getMaxQueueDepth());
+    }
+}
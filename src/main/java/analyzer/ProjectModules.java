@@ -0,0 +1,245 @@
+package analyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Discovers the modules of a multi-module Maven or Gradle build, with their
+ * source roots, so that a repository root is analyzed module by module (see
+ * {@link Analyzer#analyzeProject}).
+ *
+ * <p>Modules are read from the build files, without running the build:
+ * <ul>
+ *   <li>Maven: the <code>&lt;modules&gt;</code> of <code>pom.xml</code>,
+ *       followed recursively through aggregator poms. A module's source roots
+ *       are its <code>sourceDirectory</code> and <code>testSourceDirectory</code>
+ *       (<code>src/main/java</code> and <code>src/test/java</code> by default);</li>
+ *   <li>Gradle: the <code>include</code> statements of
+ *       <code>settings.gradle</code> or <code>settings.gradle.kts</code>
+ *       (<code>":a:b"</code> is the folder <code>a/b</code>, unless a
+ *       <code>projectDir</code> assignment says otherwise). A module's source
+ *       roots are its <code>src/&lt;sourceSet&gt;/java</code> folders.</li>
+ * </ul>
+ * The root project is a module too when it has source roots of its own.
+ * Modules are named after their folder, relative to the root ("." for the
+ * root itself). Source roots that do not exist are ignored, and so are
+ * modules left without any.</p>
+ */
+class ProjectModules {
+
+    private static final Pattern GRADLE_INCLUDE = Pattern.compile("\\binclude\\b\\s*\\(?((?:\\s*['\"][^'\"]+['\"]\\s*,?)+)");
+    private static final Pattern QUOTED = Pattern.compile("['\"]([^'\"]+)['\"]");
+    private static final Pattern GRADLE_PROJECT_DIR = Pattern.compile(
+        "project\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)\\s*\\.projectDir\\s*=\\s*(?:new\\s+File\\s*\\(\\s*(?:settingsDir|rootDir)\\s*,\\s*|file\\s*\\(\\s*)['\"]([^'\"]+)['\"]");
+    private static final Pattern COMMENTS = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+
+    /** A module of the build and the folders holding its Java sources. */
+    static class Module {
+        /** Folder of the module relative to the project root, "." for the root project. */
+        final String name;
+        final Path directory;
+        final List<Path> sourceRoots;
+
+        Module(String name, Path directory, List<Path> sourceRoots) {
+            this.name = name;
+            this.directory = directory;
+            this.sourceRoots = sourceRoots;
+        }
+    }
+
+    private ProjectModules() {
+    }
+
+    /**
+     * Lists the modules declared by the build files at the given root.
+     * @param root Project root (a folder)
+     * @return modules in declaration order, or an empty list when the root is
+     *         not a multi-module build
+     * @throws IOException if a build file cannot be read
+     */
+    static List<Module> discover(Path root) throws IOException {
+        root = root.toAbsolutePath().normalize();
+        Map<Path, List<Path>> modules = new LinkedHashMap<>();
+        if (Files.isRegularFile(root.resolve("pom.xml"))) {
+            readMaven(root, modules, new HashSet<>());
+        } else if (Files.isRegularFile(root.resolve("settings.gradle"))) {
+            readGradle(root, root.resolve("settings.gradle"), modules);
+        } else if (Files.isRegularFile(root.resolve("settings.gradle.kts"))) {
+            readGradle(root, root.resolve("settings.gradle.kts"), modules);
+        }
+        List<Module> result = new ArrayList<>();
+        // The root project alone is not a multi-module build: analyze it as a plain folder
+        if (modules.size() < 2) return result;
+        for (Map.Entry<Path, List<Path>> entry : modules.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            String name = root.equals(entry.getKey()) ? "."
+                : root.relativize(entry.getKey()).toString().replace('\\', '/');
+            result.add(new Module(name, entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Groups files by module: each file goes to the module whose source root
+     * contains it, the deepest one when source roots are nested. Files outside
+     * every source root (samples, build scripts...) are left out.
+     * @param files Files of the project, in analysis order
+     * @param modules Modules returned by {@link #discover}
+     * @return module name of each file kept, in file order
+     */
+    static Map<Path, String> assign(List<Path> files, List<Module> modules) {
+        Map<Path, String> moduleOf = new LinkedHashMap<>();
+        for (Path file : files) {
+            Path absolute = file.toAbsolutePath().normalize();
+            Path best = null;
+            String name = null;
+            for (Module module : modules) {
+                for (Path sourceRoot : module.sourceRoots) {
+                    if (absolute.startsWith(sourceRoot)
+                        && (best == null || sourceRoot.getNameCount() > best.getNameCount())) {
+                        best = sourceRoot;
+                        name = module.name;
+                    }
+                }
+            }
+            if (name != null) moduleOf.put(file, name);
+        }
+        return moduleOf;
+    }
+
+    /**
+     * Splits classes by {@link ClassInfo#module}, e.g. to compute couplings or
+     * modules within each build module.
+     * @param classes Classes returned by {@link Analyzer#analyzeProject}
+     * @return classes of each module, in module order of first appearance
+     */
+    static Map<String, List<ClassInfo>> groupByModule(List<ClassInfo> classes) {
+        Map<String, List<ClassInfo>> groups = new LinkedHashMap<>();
+        for (ClassInfo cls : classes) {
+            String module = cls.module != null ? cls.module : ".";
+            groups.computeIfAbsent(module, m -> new ArrayList<>()).add(cls);
+        }
+        return groups;
+    }
+
+    private static void readMaven(Path directory, Map<Path, List<Path>> modules, Set<Path> visited) throws IOException {
+        Path pom = directory.resolve("pom.xml");
+        if (!visited.add(directory) || !Files.isRegularFile(pom)) return;
+        Element project;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            // A pom never needs external entities
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document document;
+            try (InputStream in = Files.newInputStream(pom)) {
+                document = builder.parse(in);
+            }
+            project = document.getDocumentElement();
+        } catch (Exception e) {
+            throw new IOException("pom.xml illisible: " + pom, e);
+        }
+
+        Element build = child(project, "build");
+        Set<Path> roots = new LinkedHashSet<>();
+        roots.add(directory.resolve(text(build, "sourceDirectory", "src/main/java")).normalize());
+        roots.add(directory.resolve(text(build, "testSourceDirectory", "src/test/java")).normalize());
+        modules.put(directory, existing(roots));
+
+        Element declared = child(project, "modules");
+        if (declared == null) return;
+        for (Node node = declared.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals("module")) {
+                Path module = directory.resolve(node.getTextContent().trim()).normalize();
+                // A module may name its pom file instead of its folder
+                if (Files.isRegularFile(module)) module = module.getParent();
+                readMaven(module, modules, visited);
+            }
+        }
+    }
+
+    private static void readGradle(Path root, Path settings, Map<Path, List<Path>> modules) throws IOException {
+        String script = COMMENTS.matcher(new String(Files.readAllBytes(settings), StandardCharsets.UTF_8)).replaceAll("");
+        Map<String, Path> projectDirs = new LinkedHashMap<>();
+        Matcher dirs = GRADLE_PROJECT_DIR.matcher(script);
+        while (dirs.find()) {
+            projectDirs.put(gradlePath(dirs.group(1)), root.resolve(dirs.group(2)).normalize());
+        }
+        modules.put(root, gradleSourceRoots(root));
+        Matcher includes = GRADLE_INCLUDE.matcher(script);
+        while (includes.find()) {
+            Matcher quoted = QUOTED.matcher(includes.group(1));
+            while (quoted.find()) {
+                String path = gradlePath(quoted.group(1));
+                Path directory = projectDirs.getOrDefault(path, root.resolve(path.replace(':', '/')).normalize());
+                modules.put(directory, gradleSourceRoots(directory));
+            }
+        }
+    }
+
+    /** Project path without its leading colon: ":a:b" becomes "a:b". */
+    private static String gradlePath(String path) {
+        return path.startsWith(":") ? path.substring(1) : path;
+    }
+
+    private static List<Path> gradleSourceRoots(Path directory) throws IOException {
+        List<Path> roots = new ArrayList<>();
+        Path src = directory.resolve("src");
+        if (!Files.isDirectory(src)) return roots;
+        try (DirectoryStream<Path> sourceSets = Files.newDirectoryStream(src)) {
+            for (Path sourceSet : sourceSets) {
+                Path java = sourceSet.resolve("java");
+                if (Files.isDirectory(java)) roots.add(java);
+            }
+        }
+        roots.sort(null);
+        return roots;
+    }
+
+    private static List<Path> existing(Set<Path> roots) {
+        List<Path> result = new ArrayList<>();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) result.add(root);
+        }
+        return result;
+    }
+
+    private static Element child(Element parent, String tag) {
+        if (parent == null) return null;
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals(tag)) return (Element) node;
+        }
+        return null;
+    }
+
+    /** Text of a child element with Maven's <code>${basedir}</code> removed, or the default. */
+    private static String text(Element parent, String tag, String defaultValue) {
+        Element element = child(parent, tag);
+        if (element == null) return defaultValue;
+        String value = element.getTextContent().trim()
+            .replace("${project.basedir}/", "").replace("${basedir}/", "");
+        return value.isEmpty() || value.contains("${") ? defaultValue : value;
+    }
+}
@@ -0,0 +1,324 @@
+package analyzer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Keeps the analysis of a source folder up to date while its files are being
+ * edited, using a {@link WatchService}.
+ *
+ * <p>After an initial full analysis, the watcher waits for file events and
+ * groups them: once no event arrived for {@link #DEBOUNCE_MILLIS} (or at most
+ * {@link #MAX_DELAY_MILLIS} after the first one), it
+ * <ul>
+ *   <li>rescans the folder with the analysis filters ({@link SourceScanner})
+ *       to find created and deleted files, and registers new folders;</li>
+ *   <li>re-parses only the created and modified files (through the cache when
+ *       one is configured);</li>
+ *   <li>patches the per-file classes, the {@link SignatureIndex} and the
+ *       {@link ClassCouplingAnalyzer} by removing the old classes of each
+ *       changed file and adding the new ones;</li>
+ *   <li>re-resolves the calls of the classes whose call sites involve a
+ *       signature declared by a changed class;</li>
+ *   <li>notifies the listeners.</li>
+ * </ul></p>
+ *
+ * <p>The state is only modified by the watcher thread, under the watcher's
+ * lock; {@link #getClasses()} returns an immutable snapshot in file order,
+ * identical to what a full {@link Analyzer#analyzeSource} would return.
+ * Unchanged classes are shared between snapshots, and the watcher resolves
+ * their {@link MethodInfo#calls} again in place: read the calls of a snapshot
+ * through {@link #getCallGraph()}, which copies them under the lock.</p>
+ */
+class ProjectWatcher implements Closeable {
+
+    /** Quiet period closing a group of file events. */
+    static final long DEBOUNCE_MILLIS = 200;
+    /** Longest delay between the first event of a group and its processing. */
+    static final long MAX_DELAY_MILLIS = 800;
+
+    /** Receives the result of every re-analysis, on the watcher thread. */
+    interface Listener {
+        void projectUpdated(ProjectWatcher watcher, Update update);
+    }
+
+    /** Summary of one re-analysis. */
+    static class Update {
+        /** Files parsed again (created or modified). */
+        final int parsedFiles;
+        /** Files that disappeared from the analysis. */
+        final int removedFiles;
+        /** Classes whose calls were resolved again. */
+        final int resolvedClasses;
+        /** True when the coupling values changed. */
+        final boolean couplingsChanged;
+        /** Time from the first event of the group to the end of the update. */
+        final long millis;
+
+        Update(int parsedFiles, int removedFiles, int resolvedClasses, boolean couplingsChanged, long millis) {
+            this.parsedFiles = parsedFiles;
+            this.removedFiles = removedFiles;
+            this.resolvedClasses = resolvedClasses;
+            this.couplingsChanged = couplingsChanged;
+            this.millis = millis;
+        }
+    }
+
+    private final Path root;
+    private final AnalysisOptions options;
+    private final Map<Path, List<ClassInfo>> classesByFile = new TreeMap<>();
+    /** Table of every class parsed by the watcher, so that IDs stay valid across updates. */
+    private final SymbolTable symbols = new SymbolTable();
+    private final SignatureIndex index = new SignatureIndex(symbols);
+    private final ClassCouplingAnalyzer coupling = new ClassCouplingAnalyzer();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private List<ClassInfo> snapshot = Collections.emptyList();
+    /** Call graph of the snapshot, built on first request. */
+    private CallGraph callGraph;
+    private Map<Long, Double> lastCouplings = Collections.emptyMap();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param root Folder (or single Java file) to watch
+     * @param options Analysis options (filters, threads, cache...)
+     */
+    ProjectWatcher(Path root, AnalysisOptions options) {
+        // Absolute, so that event paths and scanned paths compare equal
+        this.root = root.toAbsolutePath();
+        this.options = options;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Analyzes the whole folder, then starts watching it on a daemon thread.
+     * @throws IOException if the folder cannot be analyzed or watched
+     */
+    void start() throws IOException {
+        if (SourceArchives.isArchive(root)) {
+            throw new IOException("Une archive ne peut pas être surveillée: " + root.getFileName());
+        }
+        watchService = root.getFileSystem().newWatchService();
+        List<Path> directories = new ArrayList<>();
+        List<Path> files = SourceScanner.scan(root, options, directories);
+        if (!Files.isDirectory(root)) {
+            // A single file is watched through its folder
+            directories.add(root.getParent());
+        }
+        registerAll(directories);
+
+        Map<Path, List<ClassInfo>> parsed = new ConcurrentHashMap<>();
+        Analyzer.parseFiles(files, options, parsed::put, symbols);
+        synchronized (this) {
+            for (Path file : files) {
+                List<ClassInfo> classes = parsed.getOrDefault(file, Collections.emptyList());
+                classesByFile.put(file, classes);
+                index.addFile(file, classes);
+                classes.forEach(coupling::addClass);
+            }
+            for (List<ClassInfo> classes : classesByFile.values()) {
+                classes.forEach(index::resolveCalls);
+            }
+            snapshot = flatten();
+            callGraph = null;
+            lastCouplings = new HashMap<>(coupling.getNormalizedCouplingsById());
+        }
+
+        thread = new Thread(this::watch, "analyzer-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Current classes of the project, in file order. */
+    synchronized List<ClassInfo> getClasses() {
+        return snapshot;
+    }
+
+    /**
+     * Call graph of the current classes. Its calls are copied from the
+     * classes under the watcher's lock, so later updates do not affect it.
+     */
+    synchronized CallGraph getCallGraph() {
+        if (callGraph == null) callGraph = CallGraph.of(snapshot);
+        return callGraph;
+    }
+
+    /** Coupling analyzer kept up to date with the project; read it under the watcher's lock. */
+    ClassCouplingAnalyzer getCouplingAnalyzer() {
+        return coupling;
+    }
+
+    /**
+     * Writes the coupling graph of the current state, from the coupling
+     * analyzer patched by the updates. The module report needs a full
+     * clustering and is left to the caller, on demand.
+     * @param couplingFile Coupling graph HTML file
+     * @throws IOException if the report cannot be written
+     */
+    synchronized void writeCouplingGraph(String couplingFile) throws IOException {
+        coupling.generateHtmlGraph(couplingFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (thread != null) thread.interrupt();
+        if (watchService != null) watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                long firstEvent = System.currentTimeMillis();
+                Set<Path> changed = new HashSet<>();
+                boolean overflow = false;
+                // Collect events until the folder has been quiet for a moment
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            changed.add(((Path) key.watchable()).resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        synchronized (watchedDirectories) {
+                            watchedDirectories.remove((Path) key.watchable());
+                        }
+                    }
+                    long wait = Math.min(DEBOUNCE_MILLIS, firstEvent + MAX_DELAY_MILLIS - System.currentTimeMillis());
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                try {
+                    update(changed, overflow, firstEvent);
+                } catch (IOException | RuntimeException e) {
+                    // Keep watching: the next save will trigger a new attempt
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed
+        }
+    }
+
+    private void update(Set<Path> changed, boolean overflow, long firstEvent) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        List<Path> files = SourceScanner.scan(root, options, directories);
+        registerAll(directories);
+        if (!Files.exists(root)) {
+            files = Collections.emptyList();
+        }
+
+        Set<Path> current = new HashSet<>(files);
+        Set<Path> known;
+        synchronized (this) {
+            known = new HashSet<>(classesByFile.keySet());
+        }
+        Set<Path> removed = new TreeSet<>();
+        for (Path file : known) {
+            if (!current.contains(file)) removed.add(file);
+        }
+        Set<Path> toParse = new TreeSet<>();
+        for (Path file : files) {
+            // After an overflow, events were lost: re-read everything (cheap with the cache)
+            if (!known.contains(file) || overflow || changed.contains(file)) toParse.add(file);
+        }
+        if (toParse.isEmpty() && removed.isEmpty()) return;
+
+        Map<Path, List<ClassInfo>> parsed = new ConcurrentHashMap<>();
+        Analyzer.parseFiles(new ArrayList<>(toParse), options, parsed::put, symbols);
+
+        Update update;
+        synchronized (this) {
+            Set<Integer> touched = new HashSet<>();
+            Set<Path> outdated = new TreeSet<>(removed);
+            outdated.addAll(toParse);
+            for (Path file : outdated) {
+                List<ClassInfo> old = classesByFile.remove(file);
+                if (old == null) continue;
+                touched.addAll(index.removeClasses(old));
+                old.forEach(coupling::removeClass);
+            }
+            Set<ClassInfo> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Path file : toParse) {
+                List<ClassInfo> classes = parsed.getOrDefault(file, Collections.emptyList());
+                classesByFile.put(file, classes);
+                touched.addAll(index.addFile(file, classes));
+                classes.forEach(coupling::addClass);
+                fresh.addAll(classes);
+            }
+
+            int resolved = 0;
+            for (List<ClassInfo> classes : classesByFile.values()) {
+                for (ClassInfo cls : classes) {
+                    if (fresh.contains(cls) || callsAny(cls, touched)) {
+                        index.resolveCalls(cls);
+                        resolved++;
+                    }
+                }
+            }
+            snapshot = flatten();
+            callGraph = null;
+
+            Map<Long, Double> couplings = new HashMap<>(coupling.getNormalizedCouplingsById());
+            boolean couplingsChanged = !couplings.equals(lastCouplings);
+            lastCouplings = couplings;
+            update = new Update(toParse.size(), removed.size(), resolved, couplingsChanged,
+                System.currentTimeMillis() - firstEvent);
+        }
+        for (Listener listener : listeners) {
+            listener.projectUpdated(this, update);
+        }
+    }
+
+    private static boolean callsAny(ClassInfo cls, Set<Integer> signatures) {
+        for (MethodInfo method : cls.methods) {
+            for (int callSignature : method.callSiteIds) {
+                if (signatures.contains(callSignature)) return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ClassInfo> flatten() {
+        List<ClassInfo> classes = new ArrayList<>();
+        for (List<ClassInfo> fileClasses : classesByFile.values()) {
+            classes.addAll(fileClasses);
+        }
+        return Collections.unmodifiableList(classes);
+    }
+
+    private void registerAll(List<Path> directories) throws IOException {
+        synchronized (watchedDirectories) {
+            for (Path dir : directories) {
+                if (watchedDirectories.add(dir)) {
+                    dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+        }
+    }
+}
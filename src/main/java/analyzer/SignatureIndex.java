@@ -0,0 +1,228 @@
+package analyzer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Project-wide index from call signatures ("methodName:paramCount") to the
+ * methods declaring them, used to resolve the call sites of the methods
+ * ({@link MethodInfo#callSiteIds}) into {@link MethodInfo#calls} with hash
+ * lookups. Signatures are looked up by their ID in the {@link SymbolTable} of
+ * the analysis.
+ *
+ * <p>A call is bound to a method of the caller's own class when it declares the
+ * signature, otherwise to the first declaration in project (file) order,
+ * whichever file it lives in.</p>
+ *
+ * <p>Every declaration is also indexed under its exact signature
+ * ("pkg.Class#methodName:paramCount", see {@link #exactSignatureOf}), the form
+ * recorded for calls resolved through bindings ({@link BindingEnvironment}):
+ * such a call only binds to the declaring class itself.</p>
+ *
+ * <p>The index built by {@link #build(List)} is never modified afterwards,
+ * so it can be shared by every parser worker without locking. In watch mode
+ * the index is instead patched file by file ({@link #addFile},
+ * {@link #removeClasses}); it must then not be read while it is being patched.</p>
+ */
+class SignatureIndex {
+
+    /** One declaration of a signature. */
+    private static class Declaration {
+        /** Declaring file, or null when the index was built from a plain class list. */
+        final Path file;
+        final ClassInfo owner;
+        final MethodInfo method;
+
+        Declaration(Path file, ClassInfo owner, MethodInfo method) {
+            this.file = file;
+            this.owner = owner;
+            this.method = method;
+        }
+    }
+
+    /** Declarations sharing one signature. */
+    private static class Entry {
+        /** Declarations in project order. */
+        final List<Declaration> declarations = new ArrayList<>(1);
+        /** First declaration per class, only allocated when several classes declare the signature. */
+        Map<ClassInfo, MethodInfo> byOwner;
+
+        /** Records a declaration at the end of the project order. */
+        void append(Declaration declaration) {
+            declarations.add(declaration);
+            if (byOwner == null && declaration.owner != declarations.get(0).owner) {
+                byOwner = new IdentityHashMap<>();
+                byOwner.put(declarations.get(0).owner, declarations.get(0).method);
+            }
+            if (byOwner != null) byOwner.putIfAbsent(declaration.owner, declaration.method);
+        }
+
+        /** Recomputes the per-class lookup after declarations were inserted or removed. */
+        void reindex() {
+            List<Declaration> all = new ArrayList<>(declarations);
+            declarations.clear();
+            byOwner = null;
+            for (Declaration declaration : all) append(declaration);
+        }
+    }
+
+    /** Table of the indexed classes: signature IDs are only comparable within it. */
+    private final SymbolTable symbols;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    /**
+     * Creates an empty index, to be filled with {@link #addFile}.
+     * @param symbols Table the classes of every file are interned in
+     */
+    SignatureIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Builds the index over the given classes.
+     * @param classes All classes of the analysis, in project order
+     * @return an index that is safe to share as long as it is not patched
+     */
+    static SignatureIndex build(List<ClassInfo> classes) {
+        SignatureIndex index = new SignatureIndex(SymbolTable.of(classes));
+        for (ClassInfo cls : classes) {
+            index.symbols.intern(cls);
+            for (MethodInfo method : cls.methods) {
+                Declaration declaration = new Declaration(null, cls, method);
+                index.entries.computeIfAbsent(method.signatureId, k -> new Entry()).append(declaration);
+                index.entries.computeIfAbsent(method.exactSignatureId, k -> new Entry()).append(declaration);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Adds the declarations of one file, keeping the project order (files
+     * sorted by path) whatever the order in which files are added.
+     * @param file File declaring the classes
+     * @param classes Classes of the file, in declaration order
+     * @return IDs of the signatures whose resolution may have changed
+     */
+    Set<Integer> addFile(Path file, List<ClassInfo> classes) {
+        Set<Integer> touched = new HashSet<>();
+        for (ClassInfo cls : classes) {
+            symbols.intern(cls);
+            for (MethodInfo method : cls.methods) {
+                Declaration declaration = new Declaration(file, cls, method);
+                for (int signature : new int[] {method.signatureId, method.exactSignatureId}) {
+                    touched.add(signature);
+                    Entry entry = entries.computeIfAbsent(signature, k -> new Entry());
+                    int position = entry.declarations.size();
+                    while (position > 0 && isAfter(entry.declarations.get(position - 1).file, file)) {
+                        position--;
+                    }
+                    if (position == entry.declarations.size()) {
+                        entry.append(declaration);
+                    } else {
+                        entry.declarations.add(position, declaration);
+                        entry.reindex();
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    private static boolean isAfter(Path declared, Path file) {
+        return declared != null && file != null && declared.compareTo(file) > 0;
+    }
+
+    /**
+     * Removes the declarations of the given classes, e.g. those of a file
+     * that changed or was deleted.
+     * @param classes Classes to remove
+     * @return IDs of the signatures whose resolution may have changed
+     */
+    Set<Integer> removeClasses(List<ClassInfo> classes) {
+        Set<ClassInfo> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(classes);
+        Set<Integer> touched = new HashSet<>();
+        for (ClassInfo cls : classes) {
+            for (MethodInfo method : cls.methods) {
+                touched.add(method.signatureId);
+                touched.add(method.exactSignatureId);
+            }
+        }
+        for (int signature : touched) {
+            Entry entry = entries.get(signature);
+            if (entry == null) continue;
+            entry.declarations.removeIf(d -> removed.contains(d.owner));
+            if (entry.declarations.isEmpty()) {
+                entries.remove(signature);
+            } else {
+                entry.reindex();
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Returns the signature of a declared method, in the same form as the
+     * call signatures recorded by the parsers.
+     */
+    static String signatureOf(MethodInfo method) {
+        return method.name + ":" + method.nbParameters;
+    }
+
+    /**
+     * Returns the exact signature of a declared method, in the form recorded
+     * for calls resolved through bindings.
+     */
+    static String exactSignatureOf(MethodInfo method) {
+        return method.classOwner + "#" + signatureOf(method);
+    }
+
+    /**
+     * Resolves one call signature made from a method of the given class.
+     * @param caller Class declaring the calling method
+     * @param callSignature ID of a signature "methodName:paramCount", or of an
+     *                      exact signature "pkg.Class#methodName:paramCount"
+     * @return the called method, or null when no analyzed class declares it
+     */
+    MethodInfo resolve(ClassInfo caller, int callSignature) {
+        Entry entry = entries.get(callSignature);
+        if (entry == null) return null;
+        if (entry.byOwner != null) {
+            MethodInfo local = entry.byOwner.get(caller);
+            if (local != null) return local;
+        }
+        return entry.declarations.get(0).method;
+    }
+
+    /**
+     * Fills {@link MethodInfo#calls} for every method of the given class from
+     * its recorded call sites. Only the methods of that class are modified, so
+     * distinct classes can be resolved concurrently. Each method receives a new
+     * list, so a class can be resolved again while readers still iterate over
+     * its previous calls.
+     * @param cls Class whose methods should be resolved
+     */
+    void resolveCalls(ClassInfo cls) {
+        symbols.intern(cls);
+        for (MethodInfo method : cls.methods) {
+            List<MethodInfo> calls = new ArrayList<>(method.callSiteIds.length);
+            for (int callSignature : method.callSiteIds) {
+                MethodInfo callee = resolve(cls, callSignature);
+                if (callee != null) {
+                    calls.add(callee);
+                }
+            }
+            method.calls = calls;
+        }
+    }
+}
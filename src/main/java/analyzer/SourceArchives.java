@@ -0,0 +1,69 @@
+package analyzer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mounts source archives (<code>.jar</code>/<code>.zip</code>, typically
+ * <code>-sources.jar</code> artifacts) as read-only zip file systems, so that
+ * their entries are scanned and read in place, without extracting anything.
+ *
+ * <p>Paths of a mounted archive only support channel-based reading: they
+ * cannot be memory-mapped nor handed to JDT's batch parser, which expects
+ * files on disk. {@link SourceLoader} and {@link Analyzer} fall back
+ * accordingly. The archives stay mounted until {@link #close()}.</p>
+ */
+class SourceArchives implements Closeable {
+
+    private final List<FileSystem> mounted = new ArrayList<>();
+
+    /** Tells whether the path is a regular file with a .jar or .zip extension. */
+    static boolean isArchive(Path path) {
+        Path name = path.getFileName();
+        if (name == null || !Files.isRegularFile(path)) return false;
+        String lower = name.toString().toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jar") || lower.endsWith(".zip");
+    }
+
+    /** Tells whether the path lives on the default file system, i.e. on disk. */
+    static boolean isOnDisk(Path path) {
+        return path.getFileSystem() == FileSystems.getDefault();
+    }
+
+    /**
+     * Returns the folder to scan for an analysis input: the root of the
+     * mounted archive for an archive, the input itself otherwise.
+     * @param input Java file, folder or source archive
+     * @return path to scan
+     * @throws IOException if the archive cannot be opened
+     */
+    Path open(Path input) throws IOException {
+        if (!isArchive(input)) return input;
+        FileSystem fs = FileSystems.newFileSystem(input, (ClassLoader) null);
+        synchronized (mounted) {
+            mounted.add(fs);
+        }
+        return fs.getRootDirectories().iterator().next();
+    }
+
+    @Override
+    public void close() {
+        synchronized (mounted) {
+            for (FileSystem fs : mounted) {
+                try {
+                    fs.close();
+                } catch (IOException e) {
+                    System.err.println("Fermeture de l'archive impossible: " + e.getMessage());
+                }
+            }
+            mounted.clear();
+        }
+    }
+}
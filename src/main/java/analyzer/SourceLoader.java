@@ -0,0 +1,173 @@
+package analyzer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads Java source files through NIO channels with reusable buffers.
+ *
+ * <p>Compared to <code>Files.readString(p).toCharArray()</code>, which
+ * allocates a byte array, a String and a char array for every file, a loader:
+ * <ul>
+ *   <li>reads small files into a pooled direct {@link ByteBuffer} and
+ *       memory-maps large ones, so no heap byte array is allocated (entries
+ *       of a mounted source archive are always read into the pooled buffer);</li>
+ *   <li>decodes UTF-8 with a reused {@link CharsetDecoder} into a reused
+ *       {@link CharBuffer};</li>
+ *   <li>allocates a single exact-size <code>char[]</code> per file, which is
+ *       what {@link org.eclipse.jdt.core.dom.ASTParser#setSource(char[])}
+ *       needs since it treats the whole array as the source text.</li>
+ * </ul></p>
+ *
+ * <p>A loader keeps mutable buffers and is therefore not thread-safe: each
+ * parser worker owns one. The buffer returned by {@link #read(Path)} is only
+ * valid until the next call.</p>
+ */
+class SourceLoader {
+
+    /** Files at least this large are memory-mapped instead of copied into the pooled buffer. */
+    private static final int MAP_THRESHOLD = 1 << 20;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private ByteBuffer byteBuffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private CharBuffer charBuffer = CharBuffer.allocate(INITIAL_CAPACITY);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Reads the raw content of a file.
+     * @param p File to read
+     * @return buffer positioned on the file content; valid until the next call
+     * @throws IOException if the file cannot be read
+     */
+    ByteBuffer read(Path p) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(p, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Fichier trop volumineux: " + p);
+            }
+            // Only files on disk can be mapped; archive entries are read through the channel
+            if (size >= MAP_THRESHOLD && channel instanceof FileChannel) {
+                return ((FileChannel) channel).map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (byteBuffer.capacity() < size) {
+                byteBuffer = ByteBuffer.allocateDirect(capacityFor((int) size));
+            }
+            byteBuffer.clear();
+            byteBuffer.limit((int) size);
+            while (byteBuffer.hasRemaining() && channel.read(byteBuffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            byteBuffer.flip();
+            return byteBuffer;
+        }
+    }
+
+    /**
+     * Decodes UTF-8 content into an exact-size character array. Malformed
+     * input is replaced rather than rejected, as a best-effort analysis should
+     * not fail on a stray byte. The given buffer is consumed.
+     * @param bytes Content returned by {@link #read(Path)}
+     * @return decoded source text
+     */
+    char[] decode(ByteBuffer bytes) {
+        // UTF-8 never produces more chars than bytes
+        int needed = bytes.remaining();
+        if (charBuffer.capacity() < needed) {
+            charBuffer = CharBuffer.allocate(capacityFor(needed));
+        }
+        charBuffer.clear();
+        decoder.reset();
+        decoder.decode(bytes, charBuffer, true);
+        decoder.flush(charBuffer);
+        return Arrays.copyOf(charBuffer.array(), charBuffer.position());
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = Integer.highestOneBit(size);
+        return capacity == size || capacity >= (1 << 30) ? size : capacity << 1;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 when the JVM cannot measure it.
+     */
+    static long threadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Per-file loading statistics, filled concurrently by the parser workers
+     * when {@link AnalysisOptions#loadStats} is set.
+     */
+    static class Stats {
+        /** Measurements for one file. Allocation values are -1 when not measurable. */
+        static class FileLoad {
+            final Path path;
+            /** Size of the file content read from disk. */
+            final long bytesRead;
+            /** Heap allocated while reading and decoding the file. */
+            final long loadAllocatedBytes;
+            /** Heap allocated for the whole file: loading, parsing and extraction. */
+            final long totalAllocatedBytes;
+
+            FileLoad(Path path, long bytesRead, long loadAllocatedBytes, long totalAllocatedBytes) {
+                this.path = path;
+                this.bytesRead = bytesRead;
+                this.loadAllocatedBytes = loadAllocatedBytes;
+                this.totalAllocatedBytes = totalAllocatedBytes;
+            }
+        }
+
+        private final ConcurrentMap<Path, FileLoad> files = new ConcurrentHashMap<>();
+
+        void record(Path path, long bytesRead, long loadAllocatedBytes, long totalAllocatedBytes) {
+            files.put(path, new FileLoad(path, bytesRead, loadAllocatedBytes, totalAllocatedBytes));
+        }
+
+        /** Measurements of every loaded file, sorted by path. */
+        List<FileLoad> getFiles() {
+            List<FileLoad> sorted = new ArrayList<>(files.values());
+            sorted.sort((a, b) -> a.path.compareTo(b.path));
+            return sorted;
+        }
+
+        /** One-line summary: files, bytes read and average allocation per file. */
+        String summary() {
+            long bytes = 0, loadAlloc = 0, totalAlloc = 0;
+            for (FileLoad f : files.values()) {
+                bytes += f.bytesRead;
+                loadAlloc += Math.max(0, f.loadAllocatedBytes);
+                totalAlloc += Math.max(0, f.totalAllocatedBytes);
+            }
+            int n = Math.max(1, files.size());
+            return String.format("Lecture: %d fichier(s), %.1f Ko lus, allocation moyenne %.1f Ko/fichier "
+                    + "(dont lecture %.1f Ko)",
+                files.size(), bytes / 1024.0, totalAlloc / 1024.0 / n, loadAlloc / 1024.0 / n);
+        }
+    }
+}
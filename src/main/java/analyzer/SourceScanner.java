@@ -0,0 +1,349 @@
+package analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the Java files to analyze under a folder.
+ *
+ * <p>Unlike a plain <code>Files.walk</code>, the scanner decides for every
+ * folder whether it is worth entering before listing it, so that build
+ * outputs and tool folders are never walked:
+ * <ul>
+ *   <li><code>.git</code>, <code>.hg</code>, <code>.svn</code>,
+ *       <code>.gradle</code> and <code>node_modules</code> are always skipped;</li>
+ *   <li><code>target</code> and <code>build</code> are skipped when their
+ *       parent holds a build file (pom.xml, build.gradle...), so that a
+ *       package named <code>build</code> is still analyzed;</li>
+ *   <li>paths ignored by the <code>.gitignore</code> files found while
+ *       walking are skipped ({@link AnalysisOptions#respectGitignore});</li>
+ *   <li>test roots (<code>src/test</code>, <code>src/testFixtures</code>,
+ *       <code>src/integrationTest</code>...) and generated-source folders can
+ *       be skipped on request;</li>
+ *   <li>user exclude globs prune matching folders as well as files, and
+ *       include globs restrict the files kept.</li>
+ * </ul></p>
+ *
+ * <p>Globs use the {@link FileSystem#getPathMatcher} syntax and are matched
+ * against paths relative to the analyzed folder. The result is sorted, so it
+ * does not depend on the file system iteration order nor on the parallel
+ * scan ({@link AnalysisOptions#parallelScan}).</p>
+ */
+class SourceScanner {
+
+    private static final Set<String> ALWAYS_SKIPPED =
+        new HashSet<>(Arrays.asList(".git", ".hg", ".svn", ".gradle", "node_modules"));
+    private static final Set<String> BUILD_OUTPUTS = new HashSet<>(Arrays.asList("target", "build"));
+    private static final List<String> BUILD_FILES =
+        Arrays.asList("pom.xml", "build.gradle", "build.gradle.kts", "build.xml");
+    private static final Set<String> GENERATED_FOLDERS =
+        new HashSet<>(Arrays.asList("generated", "generated-sources", "generated-test-sources"));
+    private static final String GITIGNORE = ".gitignore";
+
+    private final Path root;
+    private final AnalysisOptions options;
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    /** Receives the folders walked, or null. */
+    private Collection<Path> directories;
+
+    private SourceScanner(Path root, AnalysisOptions options) {
+        this.root = root;
+        this.options = options;
+        FileSystem fs = root.getFileSystem();
+        for (String glob : options.includeGlobs) includes.add(fs.getPathMatcher("glob:" + glob));
+        for (String glob : options.excludeGlobs) excludes.add(fs.getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Lists the Java files to analyze under the given path.
+     * @param inputPath Java file or folder
+     * @param options Filters and scan mode
+     * @return sorted list of .java files (or the input itself if it is a file)
+     * @throws IOException if the folder itself cannot be read
+     */
+    static List<Path> scan(Path inputPath, AnalysisOptions options) throws IOException {
+        return scan(inputPath, options, null);
+    }
+
+    /**
+     * Lists the Java files to analyze under the given path, and the folders
+     * that were walked to find them (e.g. to watch them for changes).
+     * @param inputPath Java file or folder
+     * @param options Filters and scan mode
+     * @param directories Receives every folder walked, or null
+     * @return sorted list of .java files (or the input itself if it is a file)
+     * @throws IOException if the folder itself cannot be read
+     */
+    static List<Path> scan(Path inputPath, AnalysisOptions options, Collection<Path> directories)
+            throws IOException {
+        if (!Files.isDirectory(inputPath)) {
+            return Collections.singletonList(inputPath);
+        }
+        SourceScanner scanner = new SourceScanner(inputPath, options);
+        scanner.directories = directories == null ? null : Collections.synchronizedCollection(directories);
+        List<Path> files = options.parallelScan ? scanner.scanParallel() : scanner.scanSequential();
+        Collections.sort(files);
+        return files;
+    }
+
+    private List<Path> scanSequential() throws IOException {
+        List<Path> files = new ArrayList<>();
+        // LinkedList accepts the null rules used when .gitignore files are not honoured
+        Deque<IgnoreRules> rules = new LinkedList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                IgnoreRules inherited = rules.peek();
+                if (!dir.equals(root) && skipDirectory(dir, inherited)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                rules.push(IgnoreRules.load(dir, inherited, options.respectGitignore));
+                if (directories != null) directories.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (acceptFile(file, attrs, rules.peek())) files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Lecture impossible: " + file + " (" + e.getMessage() + ")");
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                rules.pop();
+                if (e != null) {
+                    System.err.println("Lecture impossible: " + dir + " (" + e.getMessage() + ")");
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private List<Path> scanParallel() {
+        return ForkJoinPool.commonPool().invoke(new DirectoryTask(root, null));
+    }
+
+    /**
+     * Lists one folder and forks a task per subfolder worth entering, so that
+     * large trees are listed by several threads.
+     */
+    private class DirectoryTask extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final IgnoreRules inherited;
+
+        DirectoryTask(Path dir, IgnoreRules inherited) {
+            this.dir = dir;
+            this.inherited = inherited;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            IgnoreRules rules = IgnoreRules.load(dir, inherited, options.respectGitignore);
+            if (directories != null) directories.add(dir);
+            List<Path> files = new ArrayList<>();
+            List<DirectoryTask> subfolders = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        if (!skipDirectory(entry, rules)) subfolders.add(new DirectoryTask(entry, rules));
+                    } else if (acceptFile(entry, attrs, rules)) {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                System.err.println("Lecture impossible: " + dir + " (" + e.getMessage() + ")");
+            }
+            invokeAll(subfolders);
+            for (DirectoryTask subfolder : subfolders) {
+                files.addAll(subfolder.join());
+            }
+            return files;
+        }
+    }
+
+    private boolean skipDirectory(Path dir, IgnoreRules rules) {
+        String name = dir.getFileName().toString();
+        if (ALWAYS_SKIPPED.contains(name)) return true;
+        if (BUILD_OUTPUTS.contains(name) && hasBuildFile(dir.getParent())) return true;
+        if (options.skipGeneratedSources && GENERATED_FOLDERS.contains(name)) return true;
+        if (options.skipTestSources && isTestRoot(dir, name)) return true;
+        if (matchesAny(excludes, dir)) return true;
+        return rules != null && rules.isIgnored(dir, true);
+    }
+
+    private boolean acceptFile(Path file, BasicFileAttributes attrs, IgnoreRules rules) {
+        // Symbolic links to files are kept, as Files.walk did
+        if (attrs.isDirectory() || !file.getFileName().toString().endsWith(".java")) return false;
+        if (!includes.isEmpty() && !matchesAny(includes, file)) return false;
+        if (matchesAny(excludes, file)) return false;
+        return rules == null || !rules.isIgnored(file, false);
+    }
+
+    private boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        if (matchers.isEmpty()) return false;
+        Path relative = root.relativize(path);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasBuildFile(Path dir) {
+        if (dir == null) return false;
+        for (String buildFile : BUILD_FILES) {
+            if (Files.isRegularFile(dir.resolve(buildFile))) return true;
+        }
+        return false;
+    }
+
+    /** Maven and Gradle test source sets: src/test, src/testFixtures, src/integrationTest... */
+    private static boolean isTestRoot(Path dir, String name) {
+        Path parent = dir.getParent();
+        return parent != null && parent.getFileName() != null && parent.getFileName().toString().equals("src")
+            && (name.startsWith("test") || name.endsWith("Test"));
+    }
+
+    /**
+     * Patterns of the .gitignore file of one folder, chained to those of the
+     * enclosing folders. Supports comments, negation, folder-only patterns,
+     * anchored patterns and the <code>*</code>, <code>?</code>,
+     * <code>[...]</code> and <code>**</code> wildcards.
+     */
+    static class IgnoreRules {
+        /** One pattern line, compiled to a regular expression on '/'-separated relative paths. */
+        private static class Rule {
+            final Pattern pattern;
+            final boolean negated;
+            final boolean directoryOnly;
+
+            Rule(Pattern pattern, boolean negated, boolean directoryOnly) {
+                this.pattern = pattern;
+                this.negated = negated;
+                this.directoryOnly = directoryOnly;
+            }
+        }
+
+        private final IgnoreRules parent;
+        private final Path base;
+        private final List<Rule> rules;
+
+        private IgnoreRules(IgnoreRules parent, Path base, List<Rule> rules) {
+            this.parent = parent;
+            this.base = base;
+            this.rules = rules;
+        }
+
+        /**
+         * Returns the rules applying inside a folder: those of its .gitignore
+         * file, if any, on top of the inherited ones.
+         */
+        static IgnoreRules load(Path dir, IgnoreRules inherited, boolean enabled) {
+            if (!enabled) return null;
+            Path file = dir.resolve(GITIGNORE);
+            if (!Files.isRegularFile(file)) return inherited;
+            List<Rule> rules = new ArrayList<>();
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    Rule rule = parse(line);
+                    if (rule != null) rules.add(rule);
+                }
+            } catch (IOException e) {
+                return inherited;
+            }
+            return rules.isEmpty() ? inherited : new IgnoreRules(inherited, dir, rules);
+        }
+
+        /**
+         * Tells whether a path is ignored. Within a file the last matching
+         * pattern wins, and a deeper file overrides the enclosing ones.
+         */
+        boolean isIgnored(Path path, boolean directory) {
+            for (IgnoreRules level = this; level != null; level = level.parent) {
+                String relative = level.base.relativize(path).toString().replace(File.separatorChar, '/');
+                for (int i = level.rules.size() - 1; i >= 0; i--) {
+                    Rule rule = level.rules.get(i);
+                    if (rule.directoryOnly && !directory) continue;
+                    if (rule.pattern.matcher(relative).matches()) return !rule.negated;
+                }
+            }
+            return false;
+        }
+
+        private static Rule parse(String line) {
+            String pattern = line.endsWith("\\ ") ? line : line.replaceAll("\\s+$", "");
+            if (pattern.isEmpty() || pattern.startsWith("#")) return null;
+            boolean negated = pattern.startsWith("!");
+            if (negated) pattern = pattern.substring(1);
+            else if (pattern.startsWith("\\#") || pattern.startsWith("\\!")) pattern = pattern.substring(1);
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) pattern = pattern.substring(0, pattern.length() - 1);
+            // A pattern containing a slash is relative to the .gitignore folder, otherwise it matches at any depth
+            boolean anchored = pattern.contains("/");
+            if (pattern.startsWith("/")) pattern = pattern.substring(1);
+            if (pattern.isEmpty()) return null;
+            String regex = (anchored ? "" : "(?:.*/)?") + toRegex(pattern);
+            return new Rule(Pattern.compile(regex), negated, directoryOnly);
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            while (i < glob.length()) {
+                char c = glob.charAt(i);
+                if (glob.startsWith("**/", i)) {
+                    regex.append("(?:.*/)?");
+                    i += 3;
+                } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+                    regex.append("/.*");
+                    i += 3;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                    i++;
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                    i++;
+                } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                    int end = glob.indexOf(']', i + 1);
+                    String set = glob.substring(i + 1, end).replace("\\", "\\\\");
+                    if (set.startsWith("!")) set = "^" + set.substring(1);
+                    regex.append('[').append(set).append(']');
+                    i = end + 1;
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                    i += 2;
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    i++;
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
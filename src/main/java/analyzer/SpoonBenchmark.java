@@ -0,0 +1,117 @@
+package analyzer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import spoon.reflect.CtModel;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Command-line benchmark of the Spoon extraction.
+ *
+ * <p>Usage: <code>java analyzer.SpoonBenchmark &lt;source-folder&gt; [runs]</code></p>
+ *
+ * <p>The Spoon model is built once; its conversion to classes is then timed
+ * (best wall time over <code>runs</code>, after a warm-up pass) for:
+ * <ul>
+ *   <li>per-method: the previous extractor, which queried
+ *       <code>getElements(new TypeFilter&lt;&gt;(CtInvocation.class))</code> on
+ *       every method of every top-level class;</li>
+ *   <li>scanner: {@link SpoonExtractor}, one scan of the whole model.</li>
+ * </ul>
+ * The number of classes, methods and call signatures found is printed next to
+ * each time: the scanner also reports nested and local classes and
+ * constructors.</p>
+ */
+public class SpoonBenchmark {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java analyzer.SpoonBenchmark <dossier-source> [runs]");
+            System.exit(1);
+        }
+        Path inputPath = Paths.get(args[0]);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        long start = System.nanoTime();
+        CtModel model = SpoonRunner.buildModel(inputPath, new AnalysisOptions());
+        if (model == null) System.exit(1);
+        System.out.printf("Modèle Spoon: %d types, construit en %.0f ms%n",
+            model.getAllTypes().size(), (System.nanoTime() - start) / 1e6);
+
+        System.out.println("\n=== Extraction ===");
+        System.out.printf("%12s %12s %10s %10s %12s%n", "extracteur", "temps (ms)", "classes", "méthodes", "signatures");
+        for (String mode : new String[] {"par-méthode", "scanner"}) {
+            boolean scanner = mode.equals("scanner");
+            List<ClassInfo> classes = scanner ? scan(model) : perMethod(model);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < runs; r++) {
+                start = System.nanoTime();
+                classes = scanner ? scan(model) : perMethod(model);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            int methods = 0;
+            int signatures = 0;
+            for (ClassInfo cls : classes) {
+                methods += cls.methods.size();
+                for (MethodInfo method : cls.methods) {
+                    signatures += (int) Arrays.stream(method.callSiteIds).distinct().count();
+                }
+            }
+            System.out.printf("%12s %12.1f %10d %10d %12d%n", mode, best / 1e6, classes.size(), methods, signatures);
+        }
+    }
+
+    private static List<ClassInfo> scan(CtModel model) {
+        List<ClassInfo> classes = new ArrayList<>();
+        SpoonExtractor.Targets targets = new SpoonExtractor.Targets();
+        SymbolTable symbols = new SymbolTable();
+        for (CtType<?> ctType : model.getAllTypes()) {
+            classes.addAll(SpoonExtractor.extract(ctType, targets, symbols));
+        }
+        return classes;
+    }
+
+    /** The previous extractor, kept as the reference of the benchmark. */
+    private static List<ClassInfo> perMethod(CtModel model) {
+        List<ClassInfo> classes = new ArrayList<>();
+        SymbolTable symbols = new SymbolTable();
+        for (CtType<?> ctType : model.getAllTypes()) {
+            if (!ctType.isClass()) continue;
+            ClassInfo classInfo = new ClassInfo();
+            classInfo.name = ctType.getSimpleName();
+            classInfo.packageName = ctType.getPackage() != null ? ctType.getPackage().getQualifiedName() : "";
+            Set<CtMethod<?>> methods = ctType.getMethods();
+            classInfo.nbMethods = methods.size();
+            for (CtMethod<?> ctMethod : methods) {
+                MethodInfo mi = new MethodInfo();
+                mi.name = ctMethod.getSimpleName();
+                mi.nbParameters = ctMethod.getParameters().size();
+                mi.classOwner = classInfo.packageName + "." + classInfo.name;
+                int startLine = ctMethod.getPosition().getLine();
+                int endLine = ctMethod.getPosition().getEndLine();
+                if (startLine > 0 && endLine >= startLine) mi.nbLines = endLine - startLine + 1;
+                List<CtInvocation<?>> invocations = ctMethod.getElements(new TypeFilter<>(CtInvocation.class));
+                mi.callSiteIds = new int[invocations.size()];
+                for (int i = 0; i < mi.callSiteIds.length; i++) {
+                    CtInvocation<?> inv = invocations.get(i);
+                    mi.callSiteIds[i] = symbols.signatures.intern(inv.getExecutable().getSimpleName() + ":"
+                        + inv.getArguments().size());
+                }
+                classInfo.methods.add(mi);
+            }
+            classes.add(classInfo);
+        }
+        return classes;
+    }
+}
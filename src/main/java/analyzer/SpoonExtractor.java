@@ -0,0 +1,257 @@
+package analyzer;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtAnnotationType;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtEnum;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtInterface;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtRecord;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.CtScanner;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Single-pass Spoon extractor: scans a type of the Spoon model once and emits
+ * classes, methods and call signatures, following the rules of
+ * {@link ClassExtractor}.
+ *
+ * <p>The scanner keeps a stack of enclosing types and a stack of enclosing
+ * methods:
+ * <ul>
+ *   <li>every class (top-level, nested or local) and every record gets its
+ *       own ClassInfo, named after its enclosing types as well ("Outer$Inner");</li>
+ *   <li>interfaces, enums and annotation types are not reported, and neither
+ *       are the methods they declare;</li>
+ *   <li>constructors are reported as methods named after their class;
+ *       implicit constructors added by Spoon are not;</li>
+ *   <li>methods of an anonymous class are attributed to the enclosing class;</li>
+ *   <li>invocations are recorded on the innermost enclosing method, including
+ *       those in lambdas and anonymous classes; constructor calls
+ *       (<code>this(...)</code>, <code>super(...)</code>) are not recorded.</li>
+ * </ul></p>
+ *
+ * <p>Spoon resolves the executable reference of most invocations. When the
+ * called method is declared in the model (or in the JDK), the call is recorded
+ * with its exact target "pkg.Class#name:paramCount", in the form of
+ * {@link BindingEnvironment#targetOf}: the owner is the declaring class as
+ * modelled here (anonymous classes folded into their enclosing class) and the
+ * parameter count is the declaration's, so varargs calls match. A call Spoon
+ * cannot resolve without classpath keeps its "name:argCount" signature. Targets
+ * are computed once per called method and shared through the {@link Targets}
+ * of the model.</p>
+ *
+ * <p>As with the JDT extractor, calls are only recorded as the IDs of their
+ * signatures in the {@link SymbolTable} of the analysis, where the classes are
+ * interned as well; {@link MethodInfo#calls} is left empty until a
+ * {@link SignatureIndex} resolves them.</p>
+ */
+class SpoonExtractor extends CtScanner {
+
+    /**
+     * Exact call targets of one Spoon model, cached per executable reference
+     * (declaring type and signature): looking up a declaration is by far the
+     * most expensive step of the scan, and the same methods are called from
+     * many places. Used by one thread at a time, like the model itself.
+     */
+    static class Targets {
+        /** Cached value of a reference whose declaration is unknown. */
+        private static final String UNRESOLVED = "";
+        private final Map<String, String> targets = new HashMap<>();
+
+        /**
+         * Returns the exact target of an invocation, or null when Spoon does
+         * not know the declaration of the called method.
+         */
+        String targetOf(CtExecutableReference<?> reference) {
+            CtTypeReference<?> declaringType = reference.getDeclaringType();
+            if (declaringType == null) return null;
+            String key = declaringType.getQualifiedName() + "#" + reference.getSignature();
+            String target = targets.get(key);
+            if (target == null) {
+                CtExecutable<?> declaration = reference.getExecutableDeclaration();
+                target = declaration != null ? exactTarget(declaration) : UNRESOLVED;
+                targets.put(key, target);
+            }
+            return target.isEmpty() ? null : target;
+        }
+
+        private static String exactTarget(CtExecutable<?> declaration) {
+            CtType<?> owner = declaration.getParent(CtType.class);
+            while (owner instanceof CtClass && ((CtClass<?>) owner).isAnonymous()
+                && owner.getParent(CtType.class) != null) {
+                owner = owner.getParent(CtType.class);
+            }
+            if (owner == null) return UNRESOLVED;
+            String packageName = owner.getPackage() != null ? owner.getPackage().getQualifiedName() : "";
+            return packageName + "." + nameOf(owner) + "#" + declaration.getSimpleName() + ":"
+                + declaration.getParameters().size();
+        }
+    }
+
+    private final Targets targets;
+    private final SymbolTable symbols;
+    private final List<ClassInfo> classes = new ArrayList<>();
+    /** Enclosing types; a null element stands for a type that is not reported. */
+    private final Deque<ClassInfo> typeStack = new LinkedList<>();
+    /** Enclosing methods; a null element stands for a method that is not reported. */
+    private final Deque<ClassExtractor.CallSites> methodStack = new LinkedList<>();
+
+    private SpoonExtractor(Targets targets, SymbolTable symbols) {
+        this.targets = targets;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Extracts the classes declared by a top-level type and the types nested in it.
+     * @param type Top-level type of the Spoon model
+     * @param targets Call targets of the model the type belongs to
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes found, in declaration order (calls not resolved)
+     */
+    static List<ClassInfo> extract(CtType<?> type, Targets targets, SymbolTable symbols) {
+        SpoonExtractor extractor = new SpoonExtractor(targets, symbols);
+        extractor.scan(type);
+        extractor.classes.forEach(symbols::intern);
+        return extractor.classes;
+    }
+
+    // Types -----------------------------------------------------------------
+
+    @Override
+    public <T> void visitCtClass(CtClass<T> ctClass) {
+        if (ctClass.isAnonymous()) {
+            // Anonymous classes have no name: their members belong to the enclosing class
+            typeStack.push(typeStack.peek());
+        } else {
+            typeStack.push(newClass(ctClass));
+        }
+        super.visitCtClass(ctClass);
+        typeStack.pop();
+    }
+
+    @Override
+    public void visitCtRecord(CtRecord record) {
+        typeStack.push(newClass(record));
+        super.visitCtRecord(record);
+        typeStack.pop();
+    }
+
+    @Override
+    public <T> void visitCtInterface(CtInterface<T> ctInterface) {
+        typeStack.push(null);
+        super.visitCtInterface(ctInterface);
+        typeStack.pop();
+    }
+
+    @Override
+    public <T extends Enum<?>> void visitCtEnum(CtEnum<T> ctEnum) {
+        typeStack.push(null);
+        super.visitCtEnum(ctEnum);
+        typeStack.pop();
+    }
+
+    @Override
+    public <A extends java.lang.annotation.Annotation> void visitCtAnnotationType(CtAnnotationType<A> annotationType) {
+        typeStack.push(null);
+        super.visitCtAnnotationType(annotationType);
+        typeStack.pop();
+    }
+
+    private ClassInfo newClass(CtType<?> type) {
+        ClassInfo cls = new ClassInfo();
+        cls.name = nameOf(type);
+        cls.packageName = type.getPackage() != null ? type.getPackage().getQualifiedName() : "";
+        cls.nbAttributes = type.getFields().size();
+        classes.add(cls);
+        return cls;
+    }
+
+    /**
+     * Name of a type within its package: the names of its enclosing types,
+     * then its own, separated by '$' as in binary names. Anonymous classes are
+     * skipped, since their members belong to the enclosing class.
+     */
+    private static String nameOf(CtType<?> type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (CtType<?> outer = type.getParent(CtType.class); outer != null; outer = outer.getParent(CtType.class)) {
+            if (!(outer instanceof CtClass && ((CtClass<?>) outer).isAnonymous())) {
+                name.insert(0, '$').insert(0, outer.getSimpleName());
+            }
+        }
+        return name.toString();
+    }
+
+    // Methods and invocations -------------------------------------------------
+
+    @Override
+    public <T> void visitCtMethod(CtMethod<T> m) {
+        methodStack.push(newMethod(m, m.getSimpleName()));
+        super.visitCtMethod(m);
+        endMethod();
+    }
+
+    @Override
+    public <T> void visitCtConstructor(CtConstructor<T> c) {
+        // Default constructors only exist in the model
+        if (c.isImplicit()) return;
+        methodStack.push(newMethod(c, c.getDeclaringType().getSimpleName()));
+        super.visitCtConstructor(c);
+        endMethod();
+    }
+
+    private ClassExtractor.CallSites newMethod(CtExecutable<?> executable, String name) {
+        ClassInfo currentClass = typeStack.peek();
+        if (currentClass == null) return null;
+        MethodInfo method = new MethodInfo();
+        method.name = name;
+        method.nbParameters = executable.getParameters().size();
+        method.classOwner = currentClass.packageName + "." + currentClass.name;
+        method.nbLines = lineCount(executable);
+        currentClass.methods.add(method);
+        currentClass.nbMethods++;
+        return new ClassExtractor.CallSites(method);
+    }
+
+    private void endMethod() {
+        ClassExtractor.CallSites callSites = methodStack.pop();
+        if (callSites != null) callSites.close();
+    }
+
+    @Override
+    public <T> void visitCtInvocation(CtInvocation<T> invocation) {
+        ClassExtractor.CallSites callSites = methodStack.peek();
+        CtExecutableReference<?> executable = invocation.getExecutable();
+        String calledName = executable.getSimpleName();
+        if (callSites != null && !calledName.equals(CtExecutableReference.CONSTRUCTOR_NAME)) {
+            String callSignature = targets.targetOf(executable);
+            if (callSignature == null) callSignature = calledName + ":" + invocation.getArguments().size();
+            callSites.add(symbols.signatures.intern(callSignature));
+        }
+        super.visitCtInvocation(invocation);
+    }
+
+    /** Lines spanned by an element, or 0 when it has no source position. */
+    private static int lineCount(CtElement element) {
+        SourcePosition position = element.getPosition();
+        if (!position.isValidPosition()) return 0;
+        int start = position.getLine();
+        int end = position.getEndLine();
+        return start > 0 && end >= start ? end - start + 1 : 0;
+    }
+}
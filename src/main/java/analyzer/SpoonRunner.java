@@ -4,17 +4,19 @@ import analyzer.Utils.ClassInfo;
 import analyzer.Utils.MethodInfo;
 
 import spoon.Launcher;
+import spoon.compiler.Environment;
 import spoon.reflect.CtModel;
-import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.CtType;
-import spoon.reflect.code.CtInvocation;
-import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.compiler.VirtualFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 /**
  * Utility to run analysis using Spoon instead of the JDT-based parser.
@@ -22,76 +24,163 @@ import java.util.Set;
 public class SpoonRunner {
 
     /**
-     * Build ClassInfo structures from source using Spoon.
+     * Build ClassInfo structures from source using Spoon. The input may be a
+     * Java file, a folder or a source archive (.jar/.zip), read in place.
+     * Calls are resolved into {@link MethodInfo#calls}, so the result can
+     * feed {@link CallGraphBuilder}.
      */
     public static List<ClassInfo> buildClassesFromSpoon(Path inputPath) {
-        Launcher launcher = new Launcher();
-        launcher.getEnvironment().setNoClasspath(true);
-        launcher.addInputResource(inputPath.toString());
-        launcher.buildModel();
-        CtModel model = launcher.getModel();
+        List<ClassInfo> classes = new ArrayList<>();
+        buildClassesFromSpoon(inputPath, new AnalysisOptions(), classes::add);
+        return resolveCalls(classes);
+    }
 
+    /**
+     * Build ClassInfo structures using Spoon, as one model of the whole input
+     * or, with {@link AnalysisOptions#spoonSharding}, one model per shard of
+     * packages built in parallel (see {@link SpoonShards}). Both give the same
+     * classes, in the same order, with the same call targets.
+     * @param inputPath Source file, folder or source archive
+     * @param options Spoon profile, sharding settings and scan filters (used when sharding)
+     * @return classes found by Spoon
+     * @throws IOException if the input cannot be read or the analysis is interrupted
+     */
+    public static List<ClassInfo> buildClassesFromSpoon(Path inputPath, AnalysisOptions options) throws IOException {
+        if (options.spoonSharding) return resolveCalls(SpoonShards.build(inputPath, options));
         List<ClassInfo> classes = new ArrayList<>();
+        buildClassesFromSpoon(inputPath, options, classes::add);
+        return resolveCalls(classes);
+    }
 
+    /** Fills {@link MethodInfo#calls} from the recorded call sites, as the JDT analysis does. */
+    private static List<ClassInfo> resolveCalls(List<ClassInfo> classes) {
+        SignatureIndex index = SignatureIndex.build(classes);
+        classes.forEach(index::resolveCalls);
+        return classes;
+    }
+
+    /**
+     * Streams the classes built by Spoon: each class is published as soon as
+     * it has been converted, so subscribers (e.g.
+     * {@link ClassCouplingAnalyzer#fromPublisher}) work while the remaining
+     * types are still being converted. The Spoon model itself is built first,
+     * as Spoon needs the whole source set to build it.
+     * @param inputPath Source file, folder or source archive
+     * @return a publisher running one Spoon analysis per subscriber
+     */
+    public static Flow.Publisher<ClassInfo> publishClassesFromSpoon(Path inputPath) {
+        return ClassPublisher.create("spoon-stream", new AnalysisOptions().streamBufferSize,
+            sink -> buildClassesFromSpoon(inputPath, new AnalysisOptions(), sink));
+    }
+
+    /** Builds the model and extracts its classes; the model is dropped on return. */
+    private static void buildClassesFromSpoon(Path inputPath, AnalysisOptions options, Consumer<ClassInfo> sink) {
+        CtModel model = buildModel(inputPath, options);
+        if (model == null) return;
+        // One scan per top-level type, which covers its nested, local and anonymous types
+        SpoonExtractor.Targets targets = new SpoonExtractor.Targets();
+        SymbolTable symbols = new SymbolTable();
         for (CtType<?> ctType : model.getAllTypes()) {
-            // Only consider classes (exclude interfaces, enums, annotations)
-            if (!ctType.isClass()) continue;
-
-            ClassInfo classInfo = new ClassInfo();
-            classInfo.name = ctType.getSimpleName();
-            try {
-                classInfo.packageName = ctType.getPackage().getQualifiedName();
-            } catch (Exception e) {
-                classInfo.packageName = "";
-            }
+            SpoonExtractor.extract(ctType, targets, symbols).forEach(sink);
+        }
+    }
 
-            Set<CtMethod<?>> methods = ctType.getMethods();
-            classInfo.nbAttributes = 0; // attribute counting can be extended if needed
-            classInfo.nbMethods = methods.size();
-
-            for (CtMethod<?> ctMethod : methods) {
-                MethodInfo mi = new MethodInfo();
-                mi.name = ctMethod.getSimpleName();
-                mi.nbParameters = ctMethod.getParameters().size();
-                mi.classOwner = classInfo.packageName + "." + classInfo.name;
-
-                // Best-effort number of lines
-                try {
-                    int start = ctMethod.getPosition().getLine();
-                    int end = ctMethod.getPosition().getEndLine();
-                    if (start > 0 && end >= start) mi.nbLines = end - start + 1;
-                } catch (Exception e) {
-                    mi.nbLines = 0;
-                }
-
-                // Collect method invocations as call signatures
-                List<CtInvocation<?>> invocations = ctMethod.getElements(new TypeFilter<>(CtInvocation.class));
-                for (CtInvocation<?> inv : invocations) {
-                    String calledName = inv.getExecutable().getSimpleName();
-                    int args = inv.getArguments() == null ? 0 : inv.getArguments().size();
-                    String callSig = calledName + ":" + args;
-                    mi.callSignatures.add(callSig);
-                }
-
-                classInfo.methods.add(mi);
+    /**
+     * Builds the Spoon model of a Java file, a folder or a source archive.
+     * @param options Spoon profile (see {@link #newLauncher})
+     * @return the model, or null if the input cannot be read
+     */
+    static CtModel buildModel(Path inputPath, AnalysisOptions options) {
+        Launcher launcher = newLauncher(options);
+        try (SourceArchives archives = new SourceArchives()) {
+            if (SourceArchives.isArchive(inputPath)) {
+                addArchiveSources(launcher, archives.open(inputPath));
+            } else {
+                launcher.addInputResource(inputPath.toString());
             }
+            launcher.buildModel();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return launcher.getModel();
+    }
 
-            classes.add(classInfo);
+    /**
+     * Creates a launcher for a model built without classpath. With
+     * {@link AnalysisOptions#spoonLeanProfile}, the environment keeps only
+     * what the extraction reads (declarations, invocations and positions):
+     * <ul>
+     *   <li>comments and javadoc are not turned into model elements;</li>
+     *   <li>no import is computed: auto-imports are off and elements print
+     *       with fully qualified names;</li>
+     *   <li>nothing is prepared for writing sources back (line numbers,
+     *       resources);</li>
+     *   <li>the consistency checks run on every model change are skipped.</li>
+     * </ul>
+     * Only the launcher refers to its compiler: callers keep the model, not
+     * the launcher, so that the JDT units are collected once it is built.
+     */
+    static Launcher newLauncher(AnalysisOptions options) {
+        return newLauncher(new Launcher(), options);
+    }
+
+    /** Applies the environment of {@link #newLauncher(AnalysisOptions)} to a launcher. */
+    static Launcher newLauncher(Launcher launcher, AnalysisOptions options) {
+        Environment environment = launcher.getEnvironment();
+        environment.setNoClasspath(true);
+        if (options.spoonLeanProfile) {
+            environment.setCommentEnabled(false);
+            environment.setAutoImports(false);
+            environment.setPrettyPrintingMode(Environment.PRETTY_PRINTING_MODE.FULLYQUALIFIED);
+            environment.setPreserveLineNumbers(false);
+            environment.setCopyResources(false);
+            environment.disableConsistencyChecks();
         }
+        return launcher;
+    }
 
-        return classes;
+    /**
+     * Hands the Java entries of a mounted source archive to Spoon as in-memory
+     * files, so that nothing is extracted to disk.
+     */
+    private static void addArchiveSources(Launcher launcher, Path archiveRoot) throws IOException {
+        for (Path entry : SourceScanner.scan(archiveRoot, new AnalysisOptions())) {
+            addSource(launcher, entry);
+        }
+    }
+
+    /** Adds one Java file to a launcher; archive entries are read into an in-memory file. */
+    static void addSource(Launcher launcher, Path file) {
+        if (SourceArchives.isOnDisk(file)) {
+            launcher.addInputResource(file.toString());
+            return;
+        }
+        try {
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            launcher.addInputResource(new VirtualFile(source, file.toString()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
      * Run the full coupling + hierarchical module identification pipeline using Spoon.
      */
     public static void runSpoonAnalysis(Path inputPath, double cp) {
+        runSpoonAnalysis(inputPath, cp, new AnalysisOptions());
+    }
+
+    /**
+     * Run the Spoon pipeline with the given options (e.g. sharded model building).
+     */
+    public static void runSpoonAnalysis(Path inputPath, double cp, AnalysisOptions options) {
         try {
-            List<ClassInfo> classes = buildClassesFromSpoon(inputPath);
+            List<ClassInfo> classes = buildClassesFromSpoon(inputPath, options);
             ClassCouplingAnalyzer cca = new ClassCouplingAnalyzer(classes);
             cca.generateHtmlGraph("coupling_graph.html");
 
-            HierarchicalClusteringAnalyzer hc = new HierarchicalClusteringAnalyzer(classes, cca.getNormalizedCouplings());
+            HierarchicalClusteringAnalyzer hc = new HierarchicalClusteringAnalyzer(classes, cca);
             hc.runClusteringAndIdentifyModules(cp);
             hc.generateHtmlModules("modules.html");
 
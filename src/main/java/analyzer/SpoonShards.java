@@ -0,0 +1,426 @@
+package analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+
+import spoon.Launcher;
+import spoon.SpoonModelBuilder;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.support.compiler.jdt.JDTBasedSpoonCompiler;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Sharded Spoon analysis ({@link AnalysisOptions#spoonSharding}): instead of
+ * one model of the whole tree, Spoon builds one model per shard of packages,
+ * several shards at a time, and the classes of every shard are merged.
+ *
+ * <p>Shards follow the layout of the sources:
+ * <ul>
+ *   <li>files are first grouped by build module (see {@link ProjectModules}),
+ *       then by folder, i.e. by package;</li>
+ *   <li>consecutive packages of a module are packed into shards of at most
+ *       {@link AnalysisOptions#spoonShardMaxFiles} files; a larger package
+ *       forms a shard of its own.</li>
+ * </ul>
+ * Shards are built by {@link AnalysisOptions#spoonConcurrency} threads, and a
+ * model is dropped as soon as its classes are extracted: at most that many
+ * models are in memory at once. The heap of a single shard cannot be capped
+ * inside one JVM; it grows with the shard size.</p>
+ *
+ * <p>Spoon runs without classpath, but each shard sees the declarations of
+ * the other shards through {@link DeclarationStubs}: a class extracted from
+ * its shard is the same as from the whole model, calls into other shards
+ * included (see {@link SpoonExtractor}). Classes are merged back in the order
+ * of {@link CtModel#getAllTypes()} (see {@link #MODEL_ORDER}).
+ * A shard that Spoon fails to build is rebuilt file by file; files that still
+ * fail are skipped and reported, instead of failing the whole analysis.</p>
+ *
+ * <p>When {@link AnalysisOptions#cacheDirectory} is set, the classes of every
+ * file are stored in the {@link AnalysisCache}, keyed by the content of the
+ * file, the declarations of the tree and the Spoon configuration. On the next
+ * run, only the files whose entry is missing are given to Spoon: editing a
+ * method body rebuilds that file alone, whatever its shard, and shard
+ * boundaries moving as packages grow do not invalidate anything. Changing a
+ * declaration rebuilds every file. The Spoon model itself is not persisted;
+ * only the extracted classes are.</p>
+ */
+class SpoonShards {
+
+    /**
+     * Bumped whenever {@link SpoonExtractor} changes what it extracts, which
+     * invalidates the cached Spoon results.
+     */
+    private static final int EXTRACTOR_VERSION = 4;
+
+    /** Classes extracted from one file, with its sort key. */
+    private static class FileClasses {
+        final List<String> packageSegments;
+        final String fileName;
+        /** Classes of the types declared in the file, in declaration order. */
+        final List<ClassInfo> classes;
+
+        FileClasses(String packageName, String fileName, List<ClassInfo> classes) {
+            this.packageSegments = packageName.isEmpty()
+                ? Collections.emptyList() : Arrays.asList(packageName.split("\\."));
+            this.fileName = fileName;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Order of the Spoon model: packages depth-first, sorted by name; within a
+     * package, files sorted by name. The sort is stable, so the types of a file
+     * keep their declaration order and files with the same name keep file order.
+     */
+    private static final Comparator<FileClasses> MODEL_ORDER = (a, b) -> {
+        int common = Math.min(a.packageSegments.size(), b.packageSegments.size());
+        for (int i = 0; i < common; i++) {
+            int c = a.packageSegments.get(i).compareTo(b.packageSegments.get(i));
+            if (c != 0) return c;
+        }
+        if (a.packageSegments.size() != b.packageSegments.size()) {
+            return Integer.compare(a.packageSegments.size(), b.packageSegments.size());
+        }
+        return a.fileName.compareTo(b.fileName);
+    };
+
+    private SpoonShards() {
+    }
+
+    /**
+     * Builds the classes of a tree, one Spoon model per shard.
+     * @param inputPath Java file, folder or source archive
+     * @param options Shard size, concurrency, cache and scan filters
+     * @return classes of the tree, in the order of a single-model analysis
+     * @throws IOException if the tree cannot be read or the analysis is interrupted
+     */
+    static List<ClassInfo> build(Path inputPath, AnalysisOptions options) throws IOException {
+        try (SourceArchives archives = new SourceArchives()) {
+            Path root = archives.open(inputPath);
+            List<Path> sources = SourceScanner.scan(root, options);
+            List<List<Path>> shards = partition(root, sources, options.spoonShardMaxFiles);
+            AnalysisCache cache = openCache(options);
+            AtomicInteger reused = new AtomicInteger();
+            // One table for every shard: the classes are merged into one analysis
+            SymbolTable symbols = new SymbolTable();
+            int threads = Math.max(1, Math.min(options.spoonConcurrency, shards.size()));
+            AtomicInteger count = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "spoon-shard-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try (DeclarationStubs stubs = DeclarationStubs.write(sources)) {
+                List<Future<List<FileClasses>>> results = new ArrayList<>();
+                for (List<Path> shard : shards) {
+                    results.add(pool.submit(() -> buildShard(shard, stubs, options, cache, reused, symbols)));
+                }
+                List<FileClasses> files = new ArrayList<>();
+                for (Future<List<FileClasses>> result : results) {
+                    files.addAll(result.get());
+                }
+                files.sort(MODEL_ORDER);
+                List<ClassInfo> classes = new ArrayList<>();
+                for (FileClasses file : files) {
+                    classes.addAll(file.classes);
+                }
+                if (options.verbose) {
+                    System.out.println("Spoon: " + shards.size() + " lot(s) sur " + threads + " thread(s)");
+                    if (cache != null) {
+                        System.out.println("Cache Spoon: " + reused.get() + " fichier(s) réutilisé(s), "
+                            + (sources.size() - reused.get()) + " analysé(s)");
+                    }
+                }
+                if (cache != null) cache.evict();
+                return classes;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Analyse interrompue");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IOException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Opens the cache of Spoon results in {@link AnalysisOptions#cacheDirectory},
+     * if any. Its entries share the directory and the size cap of the JDT
+     * entries; the configuration fingerprint keeps their keys apart.
+     */
+    private static AnalysisCache openCache(AnalysisOptions options) {
+        if (options.cacheDirectory == null) return null;
+        String spoonVersion = Objects.toString(Launcher.class.getPackage().getImplementationVersion(), "?");
+        try {
+            return new AnalysisCache(options.cacheDirectory, options.cacheMaxBytes,
+                "spoon " + spoonVersion + "|extractor " + EXTRACTOR_VERSION + "|noclasspath|stubs"
+                    + (options.spoonLeanProfile ? "|lean" : ""));
+        } catch (IOException e) {
+            System.err.println("Cache Spoon désactivé: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Splits files into shards of whole packages, module by module.
+     * @param root Analyzed folder, used to find build modules
+     * @param files Files to analyze, sorted by path
+     * @param maxFiles Preferred maximum number of files per shard
+     * @return non-empty shards, in file order
+     */
+    static List<List<Path>> partition(Path root, List<Path> files, int maxFiles) throws IOException {
+        List<ProjectModules.Module> modules = ProjectModules.discover(root);
+        Map<Path, String> moduleOf = modules.isEmpty()
+            ? Collections.emptyMap() : ProjectModules.assign(files, modules);
+        // Module, then package folder, in file order
+        Map<String, Map<Path, List<Path>>> packages = new LinkedHashMap<>();
+        for (Path file : files) {
+            String module = moduleOf.getOrDefault(file, "");
+            packages.computeIfAbsent(module, m -> new LinkedHashMap<>())
+                .computeIfAbsent(file.getParent(), p -> new ArrayList<>()).add(file);
+        }
+        List<List<Path>> shards = new ArrayList<>();
+        for (Map<Path, List<Path>> modulePackages : packages.values()) {
+            List<Path> shard = new ArrayList<>();
+            for (List<Path> packageFiles : modulePackages.values()) {
+                if (!shard.isEmpty() && shard.size() + packageFiles.size() > maxFiles) {
+                    shards.add(shard);
+                    shard = new ArrayList<>();
+                }
+                shard.addAll(packageFiles);
+            }
+            if (!shard.isEmpty()) shards.add(shard);
+        }
+        return shards;
+    }
+
+    /**
+     * Builds the classes of one shard, reading back the files found in the
+     * cache.
+     *
+     * <p>The model of a shard is built from its files, with the declarations
+     * of the whole tree on Spoon's source classpath (see
+     * {@link DeclarationStubs}): a call into another shard resolves to the
+     * same declaration as in a single model. The stub types Spoon loads to do
+     * so are not extracted.</p>
+     *
+     * <p>The classes of a file therefore depend on its own content and on the
+     * declarations of the tree, and nothing else: the entry of each file is
+     * keyed by both (see {@link #entryKeys}). Only the files without an entry
+     * are given to Spoon, the other files of the shard being seen through
+     * their stubs like those of the other shards. Files Spoon fails to model
+     * are cached as failures, so that they are not built again on every run;
+     * they are reported again when read back.</p>
+     * @param stubs Declarations of the whole tree
+     * @param reused Incremented for every file read back from the cache
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes of each file of the shard, in file order
+     */
+    private static List<FileClasses> buildShard(List<Path> files, DeclarationStubs stubs, AnalysisOptions options,
+                                                AnalysisCache cache, AtomicInteger reused, SymbolTable symbols) {
+        String[] keys = cache != null ? entryKeys(files, stubs, cache) : new String[files.size()];
+        FileClasses[] results = new FileClasses[files.size()];
+        List<Path> toBuild = new ArrayList<>();
+        Map<Path, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            if (keys[i] != null) {
+                List<ClassInfo> classes = cache.get(keys[i], symbols);
+                if (classes != null) {
+                    String packageName = classes.isEmpty() ? "" : classes.get(0).packageName;
+                    results[i] = new FileClasses(packageName, fileName(file), classes);
+                    reused.incrementAndGet();
+                    continue;
+                }
+                if (cache.get(failureKey(keys[i], cache), symbols) != null) {
+                    System.err.println("Spoon: fichier ignoré " + file + " (échec lors d'une analyse précédente)");
+                    reused.incrementAndGet();
+                    continue;
+                }
+            }
+            indexOf.put(file, i);
+            toBuild.add(file);
+        }
+
+        // Types Spoon reports under a file that was not given to it (not expected)
+        List<FileClasses> extra = new ArrayList<>();
+        boolean[] failed = new boolean[files.size()];
+        if (!toBuild.isEmpty()) {
+            try {
+                Map<Path, FileClasses> built = extract(buildModel(toBuild, stubs, options), toBuild, stubs, symbols);
+                for (Path file : toBuild) results[indexOf.get(file)] = built.remove(file);
+                extra.addAll(built.values());
+            } catch (RuntimeException e) {
+                // Isolate the files Spoon cannot model instead of losing the whole shard
+                for (Path file : toBuild) {
+                    List<Path> single = Collections.singletonList(file);
+                    try {
+                        Map<Path, FileClasses> built = extract(buildModel(single, stubs, options), single, stubs, symbols);
+                        results[indexOf.get(file)] = built.remove(file);
+                        extra.addAll(built.values());
+                    } catch (RuntimeException fileFailure) {
+                        failed[indexOf.get(file)] = true;
+                        System.err.println("Spoon: fichier ignoré " + file + " (" + firstLine(fileFailure) + ")");
+                    }
+                }
+            }
+        }
+        for (Path file : toBuild) {
+            int i = indexOf.get(file);
+            if (keys[i] == null) continue;
+            if (results[i] != null) {
+                cache.put(keys[i], results[i].classes);
+            } else if (failed[i]) {
+                cache.put(failureKey(keys[i], cache), Collections.emptyList());
+            }
+        }
+
+        List<FileClasses> shardClasses = new ArrayList<>();
+        for (FileClasses result : results) {
+            if (result != null) shardClasses.add(result);
+        }
+        shardClasses.addAll(extra);
+        return shardClasses;
+    }
+
+    /**
+     * Computes the cache key of every file of a shard, from the content of
+     * the file and the key of the declarations of the tree: editing a method
+     * body only invalidates its own file, while a changed declaration
+     * invalidates every file, since any of them may call it.
+     * @return the keys; null for a file that cannot be read (Spoon then reports it)
+     */
+    private static String[] entryKeys(List<Path> files, DeclarationStubs stubs, AnalysisCache cache) {
+        String[] keys = new String[files.size()];
+        for (int i = 0; i < keys.length; i++) {
+            try {
+                String contentKey = cache.keyOf(ByteBuffer.wrap(Files.readAllBytes(files.get(i))));
+                keys[i] = cache.keyOf(ByteBuffer.wrap((contentKey + "#" + stubs.getKey())
+                    .getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                keys[i] = null;
+            }
+        }
+        return keys;
+    }
+
+    private static String failureKey(String key, AnalysisCache cache) {
+        return cache.keyOf(ByteBuffer.wrap((key + "#failed").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static CtModel buildModel(List<Path> files, DeclarationStubs stubs, AnalysisOptions options) {
+        Launcher launcher = SpoonRunner.newLauncher(new StubLauncher(), options);
+        launcher.getEnvironment().setSourceClasspath(new String[] {stubs.getRoot().toString()});
+        for (Path file : files) {
+            SpoonRunner.addSource(launcher, file);
+        }
+        launcher.buildModel();
+        return launcher.getModel();
+    }
+
+    /**
+     * Extracts the classes of a model, file by file.
+     * @param model Model built from the given files
+     * @param files Files of the model
+     * @param stubs Declarations on the source classpath of the model
+     * @param symbols Table of the analysis, where the classes are interned
+     * @return classes of every file, including files that declare no class; a
+     *         type whose file cannot be matched is kept under its file name,
+     *         unless it is a stub
+     */
+    private static Map<Path, FileClasses> extract(CtModel model, List<Path> files, DeclarationStubs stubs,
+                                                  SymbolTable symbols) {
+        // Spoon reports archive entries under their own name and disk files under their absolute path
+        Map<String, Path> byName = new HashMap<>();
+        for (Path file : files) {
+            byName.put(file.toString(), file);
+            if (SourceArchives.isOnDisk(file)) byName.put(file.toAbsolutePath().normalize().toString(), file);
+        }
+        Map<Path, List<ClassInfo>> classes = new LinkedHashMap<>();
+        Map<Path, String> packages = new HashMap<>();
+        for (Path file : files) classes.put(file, new ArrayList<>());
+        SpoonExtractor.Targets targets = new SpoonExtractor.Targets();
+        for (CtType<?> type : model.getAllTypes()) {
+            File source = type.getPosition().isValidPosition() ? type.getPosition().getFile() : null;
+            Path file = source != null ? byName.get(source.getPath()) : null;
+            if (file == null && source != null && stubs.contains(source.toPath())) continue;
+            if (file == null) {
+                file = Paths.get(source != null ? source.getName() : type.getSimpleName() + ".java");
+                classes.putIfAbsent(file, new ArrayList<>());
+            }
+            packages.putIfAbsent(file, type.getPackage() != null ? type.getPackage().getQualifiedName() : "");
+            classes.get(file).addAll(SpoonExtractor.extract(type, targets, symbols));
+        }
+        Map<Path, FileClasses> result = new LinkedHashMap<>();
+        for (Map.Entry<Path, List<ClassInfo>> entry : classes.entrySet()) {
+            Path file = entry.getKey();
+            result.put(file, new FileClasses(packages.getOrDefault(file, ""), fileName(file), entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Launcher working around a Spoon 10 failure with a source classpath: the
+     * compiler grows its array of units when it loads a type from the source
+     * classpath, and Spoon then reads the empty slots at its end while
+     * looking up a package. The array is trimmed before the model is built.
+     */
+    private static class StubLauncher extends Launcher {
+        @Override
+        protected SpoonModelBuilder getCompilerInstance(Factory factory) {
+            return new JDTBasedSpoonCompiler(factory) {
+                @Override
+                protected void buildModel(CompilationUnitDeclaration[] units, Factory modelFactory) {
+                    for (CompilationUnitDeclaration unit : units) {
+                        if (unit.scope == null) continue;
+                        Compiler compiler = (Compiler) unit.scope.environment.typeRequestor;
+                        compiler.unitsToProcess = Arrays.copyOf(compiler.unitsToProcess, compiler.totalUnits);
+                        break;
+                    }
+                    super.buildModel(units, modelFactory);
+                }
+            };
+        }
+    }
+
+    private static String fileName(Path file) {
+        Path name = file.getFileName();
+        return name != null ? name.toString() : "";
+    }
+
+    private static String firstLine(Throwable failure) {
+        String message = Objects.toString(failure.getMessage(), failure.getClass().getSimpleName());
+        int newline = message.indexOf('\n');
+        return newline >= 0 ? message.substring(0, newline) : message;
+    }
+}
@@ -0,0 +1,155 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Interned symbols with dense integer IDs (0, 1, 2...), so that the analyzers
+ * compare and hash ints instead of building and hashing strings.
+ *
+ * <p>A table holds two sets of names:
+ * <ul>
+ *   <li>{@link #classes}: fully qualified class names, as returned by
+ *       {@link #qualifiedName(ClassInfo)};</li>
+ *   <li>{@link #signatures}: method signatures, in the two forms recorded by the
+ *       parsers ("methodName:paramCount" and "pkg.Class#methodName:paramCount"),
+ *       which keep only the IDs of the calls they find.</li>
+ * </ul>
+ * Each analysis has its own table: {@link Analyzer} and {@link SpoonRunner}
+ * create one per run, and a {@link ProjectWatcher} one for its lifetime, so
+ * that the same name keeps its ID across updates. The parsers intern every
+ * class they produce with {@link #intern(ClassInfo)}, which records the table
+ * in {@link ClassInfo#symbols}; the analyzers work in the table of the classes
+ * they receive ({@link #of}). The table is dropped with the last class that
+ * refers to it.</p>
+ *
+ * <p>IDs are only comparable within one table: interning a class in another
+ * table replaces its IDs. Interning is thread-safe: known names are found
+ * without locking, and only the assignment of a new ID is synchronized.</p>
+ */
+class SymbolTable {
+
+    /** Fully qualified class names. */
+    final Names classes = new Names();
+    /** Call and declaration signatures. */
+    final Names signatures = new Names();
+
+    /** Names of one kind, numbered in the order they were first interned. */
+    static final class Names {
+
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        /** Name of each ID; replaced by a larger copy when full. */
+        private volatile String[] names = new String[1024];
+        private int size;
+
+        /**
+         * Returns the ID of a name, assigning the next free one on first use.
+         * @param name Symbol to intern
+         * @return its ID
+         */
+        int intern(String name) {
+            Integer id = ids.get(name);
+            if (id != null) return id;
+            synchronized (this) {
+                id = ids.get(name);
+                if (id != null) return id;
+                int next = size;
+                String[] current = names;
+                if (next == current.length) {
+                    current = Arrays.copyOf(current, next * 2);
+                }
+                current[next] = name;
+                names = current;
+                size = next + 1;
+                // Published last: a reader that finds the ID also sees its name
+                ids.put(name, next);
+                return next;
+            }
+        }
+
+        /**
+         * Returns the ID of a name without assigning one.
+         * @param name Symbol to look up
+         * @return its ID, or -1 if it was never interned
+         */
+        int lookup(String name) {
+            Integer id = ids.get(name);
+            return id != null ? id : -1;
+        }
+
+        /**
+         * Returns the name of an ID.
+         * @param id ID returned by {@link #intern}
+         * @return the interned name
+         */
+        String name(int id) {
+            return names[id];
+        }
+
+        /** Number of IDs assigned so far; every ID is below it. */
+        synchronized int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the table of a list of classes: the table of the first interned
+     * one, or a new table when none is.
+     * @param classes Classes of one analysis
+     * @return the table to intern them in
+     */
+    static SymbolTable of(List<ClassInfo> classes) {
+        for (ClassInfo cls : classes) {
+            if (cls.symbols != null) return cls.symbols;
+        }
+        return new SymbolTable();
+    }
+
+    /**
+     * Fully qualified name of a class, its package followed by its name
+     * ("pkg.Outer$Inner" for a nested class), or its name alone in the default
+     * package.
+     */
+    static String qualifiedName(ClassInfo cls) {
+        return cls.packageName == null || cls.packageName.isEmpty() ? cls.name : cls.packageName + "." + cls.name;
+    }
+
+    /**
+     * Fills the IDs of a class and of its methods in this table, unless they
+     * already belong to it. Call it once the class is complete (all methods
+     * and call sites recorded). The call sites of a class that was never
+     * interned must already be IDs of this table, as recorded by the parsers;
+     * those of a class of another table are converted.
+     * @param cls Class to intern
+     */
+    void intern(ClassInfo cls) {
+        if (cls.symbols == this) return;
+        SymbolTable previous = cls.symbols;
+        for (MethodInfo method : cls.methods) {
+            method.signatureId = signatures.intern(SignatureIndex.signatureOf(method));
+            method.exactSignatureId = signatures.intern(SignatureIndex.exactSignatureOf(method));
+            if (previous != null) {
+                int[] callSiteIds = new int[method.callSiteIds.length];
+                for (int i = 0; i < callSiteIds.length; i++) {
+                    callSiteIds[i] = signatures.intern(previous.signatures.name(method.callSiteIds[i]));
+                }
+                method.callSiteIds = callSiteIds;
+            }
+        }
+        cls.id = classes.intern(qualifiedName(cls));
+        cls.symbols = this;
+    }
+
+    /**
+     * Packs an ordered pair of IDs into one key, e.g. to count the calls
+     * between two classes in a single map.
+     */
+    static long pairKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+}
@@ -30,7 +30,10 @@ public class Utils {
     *</p>
     */
     static class ClassInfo {
-        /** Simple class name (without package). */
+        /**
+         * Class name within its package: its simple name, preceded by those of
+         * its enclosing types for a nested or local class ("Outer$Inner").
+         */
         String name;
         /** Fully-qualified package name, may be empty for default package. */
         String packageName;
@@ -44,14 +47,21 @@ public class Utils {
         Set<String> dependencies = new HashSet<>();
         /** Set of classes that depend on this class (inverse relation). */
         Set<String> dependents = new HashSet<>();
+        /** Build module declaring the class (see {@link ProjectModules}), or null outside a module analysis. */
+        String module;
+        /** ID of the fully qualified name in {@link #symbols}, or -1 until interned. */
+        int id = -1;
+        /** Table holding the IDs of the class and of its methods, or null until interned. */
+        SymbolTable symbols;
     }
 
     /**
     * Represents a Java method and lightweight metrics collected for analysis.
     *
-    * <p>callSignatures contains method invocation signatures in the form
-    * "methodName:paramCount" which are used by the coupling analyzer to map
-    * calls to candidate target classes when full type binding is not available.
+    * <p>Calls are recorded as the IDs of their signatures in the table of the
+    * class ({@link #callSiteIds}): "methodName:paramCount", which the coupling
+    * analyzer maps to candidate target classes when full type binding is not
+    * available, or "pkg.Class#methodName:paramCount" for a resolved call.
     *</p>
     */
     static class MethodInfo {
@@ -63,15 +73,21 @@ public class Utils {
         int nbLines = 0;
         /** Direct callees discovered in the same analysis run (for call graph). */
         List<MethodInfo> calls = new ArrayList<>();
-        /**
-         * Call signatures used for class-level coupling analysis. Stored as
-         * "methodName:paramCount". Using a Set avoids duplicates.
-         */
-        Set<String> callSignatures = new HashSet<>();
         /** Unique identifier used for graph node generation. */
         int graphId;
         /** Fully qualified owner class name (package + class) when available. */
         String classOwner;
+        /** ID of "methodName:paramCount" in the table of its class, or -1 until interned. */
+        int signatureId = -1;
+        /** ID of "classOwner#methodName:paramCount" in the table of its class, or -1 until interned. */
+        int exactSignatureId = -1;
+        /**
+         * IDs of the call signatures in the table of its class, in source order
+         * and including repeated calls. Kept by the parser so that {@link #calls}
+         * can be resolved once all declarations are known; the names are read
+         * back from the table.
+         */
+        int[] callSiteIds = new int[0];
     }
     
     /**
@@ -0,0 +1,199 @@
+package analyzer;
+
+import static analyzer.TestProjects.describe;
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Checks that {@link AnalysisCache} gives the same classes as a parse, is
+ * missed by edited files and by other parser settings, and stays within its
+ * size cap.
+ */
+class AnalysisCacheTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void cachedRunEqualsUncachedRun() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path cacheDirectory = temp.resolve("cache");
+        List<String> expected = describe(Analyzer.analyzeSource(sources, new AnalysisOptions()));
+
+        assertEquals(expected, describe(Analyzer.analyzeSource(sources, cached(cacheDirectory))));
+        List<Path> entries = entries(cacheDirectory);
+        assertEquals(3, entries.size());
+
+        // Every file of the second run is read from the cache, which refreshes its entry
+        for (Path entry : entries) Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+        assertEquals(expected, describe(Analyzer.analyzeSource(sources, cached(cacheDirectory))));
+        assertEquals(entries, entries(cacheDirectory));
+        for (Path entry : entries) assertTrue(Files.getLastModifiedTime(entry).toMillis() > 0, entry.toString());
+    }
+
+    @Test
+    void editedFileMissesTheCache() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path cacheDirectory = temp.resolve("cache");
+        Analyzer.analyzeSource(sources, cached(cacheDirectory));
+        List<Path> before = entries(cacheDirectory);
+
+        write(sources, "shop/Cart.java",
+            "package shop;\n"
+            + "public class Cart {\n"
+            + "    public int total(Item item, int n) { return item.price() * n + item.tax(); }\n"
+            + "    public int empty() { return 0; }\n"
+            + "}\n");
+        List<String> expected = describe(Analyzer.analyzeSource(sources, new AnalysisOptions()));
+
+        assertEquals(expected, describe(Analyzer.analyzeSource(sources, cached(cacheDirectory))));
+        List<Path> after = entries(cacheDirectory);
+        assertEquals(before.size() + 1, after.size());
+        assertTrue(after.containsAll(before));
+    }
+
+    @Test
+    void structureOnlyRunsUseOtherKeys() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path cacheDirectory = temp.resolve("cache");
+        Analyzer.analyzeSource(sources, cached(cacheDirectory));
+        List<Path> full = entries(cacheDirectory);
+
+        AnalysisOptions structureOnly = cached(cacheDirectory);
+        structureOnly.structureOnly = true;
+        AnalysisOptions uncached = new AnalysisOptions();
+        uncached.structureOnly = true;
+        List<String> expected = describe(Analyzer.analyzeSource(sources, uncached));
+
+        assertEquals(expected, describe(Analyzer.analyzeSource(sources, structureOnly)));
+        assertEquals(2 * full.size(), entries(cacheDirectory).size());
+    }
+
+    @Test
+    void extractorVersionIsPartOfTheKey() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path cacheDirectory = temp.resolve("cache");
+        String configuration = Analyzer.parserConfiguration(new AnalysisOptions());
+        String version = "extractor=" + ClassExtractor.VERSION;
+        assertTrue(configuration.contains(version), configuration);
+
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(sources.resolve("shop/Item.java")));
+        List<ClassInfo> classes = Analyzer.analyzeSource(sources.resolve("shop/Item.java"), new AnalysisOptions());
+        AnalysisCache cache = new AnalysisCache(cacheDirectory, Long.MAX_VALUE, configuration);
+        cache.put(cache.keyOf(content), classes);
+
+        AnalysisCache bumped = new AnalysisCache(cacheDirectory, Long.MAX_VALUE,
+            configuration.replace(version, "extractor=" + (ClassExtractor.VERSION + 1)));
+        assertNotEquals(cache.keyOf(content), bumped.keyOf(content));
+        assertNull(bumped.get(bumped.keyOf(content), new SymbolTable()));
+        List<ClassInfo> cached = cache.get(cache.keyOf(content), new SymbolTable());
+        assertNotNull(cached);
+        assertEquals(describe(classes).get(0), describe(cached).get(0));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, bumped.getMisses());
+    }
+
+    @Test
+    void evictionKeepsTheMostRecentlyUsedEntries() throws IOException {
+        Path cacheDirectory = temp.resolve("cache");
+        AnalysisCache probe = new AnalysisCache(cacheDirectory, Long.MAX_VALUE, "test");
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String key = probe.keyOf(ByteBuffer.wrap(("class C" + i + " {}").getBytes(StandardCharsets.UTF_8)));
+            probe.put(key, new ArrayList<>());
+            keys.add(key);
+        }
+        List<Path> entries = new ArrayList<>();
+        long entryBytes = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Path entry = entry(cacheDirectory, keys.get(i));
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(1_000_000L * (i + 1)));
+            entries.add(entry);
+            entryBytes = Math.max(entryBytes, Files.size(entry));
+        }
+        // A stale temporary file is deleted as well
+        Path stale = write(cacheDirectory, "00/left.tmp", "partial");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(0));
+
+        new AnalysisCache(cacheDirectory, 2 * entryBytes, "test").evict();
+
+        assertEquals(Set.copyOf(entries.subList(3, 5)), Set.copyOf(entries(cacheDirectory)));
+        assertTrue(Files.notExists(stale));
+        long total = 0;
+        for (Path entry : entries(cacheDirectory)) total += Files.size(entry);
+        assertTrue(total <= 2 * entryBytes);
+    }
+
+    @Test
+    void runEvictsBeyondTheCap() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path cacheDirectory = temp.resolve("cache");
+        AnalysisOptions options = cached(cacheDirectory);
+        options.cacheMaxBytes = 0;
+
+        List<String> expected = describe(Analyzer.analyzeSource(sources, new AnalysisOptions()));
+        assertEquals(expected, describe(Analyzer.analyzeSource(sources, options)));
+        assertEquals(List.of(), entries(cacheDirectory));
+    }
+
+    private static AnalysisOptions cached(Path cacheDirectory) {
+        AnalysisOptions options = new AnalysisOptions();
+        options.cacheDirectory = cacheDirectory;
+        return options;
+    }
+
+    /** Entry file of a key, as laid out by the cache. */
+    private static Path entry(Path cacheDirectory, String key) {
+        return cacheDirectory.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    /** Entry files of a cache directory, sorted. */
+    private static List<Path> entries(Path cacheDirectory) throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            return files.filter(p -> p.toString().endsWith(".bin")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /** Three files calling each other, by name (no bindings). */
+    private static Path writeProject(Path root) throws IOException {
+        write(root, "shop/Item.java",
+            "package shop;\n"
+            + "public class Item {\n"
+            + "    private int price;\n"
+            + "    public int price() { return price; }\n"
+            + "    public int tax() { return price() / 5; }\n"
+            + "}\n");
+        write(root, "shop/Cart.java",
+            "package shop;\n"
+            + "public class Cart {\n"
+            + "    public int total(Item item, int n) { return item.price() * n; }\n"
+            + "}\n");
+        write(root, "shop/Checkout.java",
+            "package shop;\n"
+            + "public class Checkout {\n"
+            + "    public int pay(Cart cart, Item item) { return cart.total(item, 2) + item.tax(); }\n"
+            + "}\n");
+        return root;
+    }
+}
@@ -0,0 +1,195 @@
+package analyzer;
+
+import static analyzer.TestProjects.describe;
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.Cluster;
+
+/**
+ * Interrupts checkpointed analyses after a few steps, resumes them and checks
+ * that the results are those of an uninterrupted run.
+ */
+class AnalysisCheckpointTest {
+
+    private static final int PACKAGES = 3;
+    private static final int CLASSES_PER_PACKAGE = 4;
+
+    @TempDir
+    Path temp;
+
+    /** Thrown by a sink or by the couplings to stop a run, as if it were killed. */
+    private static class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Test
+    void resumedFileLevelRunEqualsCleanRun() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path checkpoints = temp.resolve("checkpoints");
+
+        List<ClassInfo> clean = Analyzer.analyzeSource(sources, options(null));
+
+        // Stop after three files, as a killed run would
+        AtomicInteger files = new AtomicInteger();
+        assertThrows(Stop.class, () -> Analyzer.analyze(Collections.singletonList(sources), options(checkpoints),
+            (file, classes) -> {
+                if (files.incrementAndGet() == 3) throw new Stop();
+            }));
+        assertFalse(checkpointFiles(checkpoints).isEmpty(), "no checkpoint left by the interrupted run");
+
+        List<ClassInfo> resumed = Analyzer.analyzeSource(sources, options(checkpoints));
+        assertTrue(checkpointFiles(checkpoints).isEmpty(), "checkpoint not deleted after the resumed run");
+
+        assertEquals(describe(clean), describe(resumed));
+        assertEquals(new ClassCouplingAnalyzer(clean).getNormalizedCouplings(),
+            new ClassCouplingAnalyzer(resumed).getNormalizedCouplings());
+    }
+
+    @Test
+    void resumedClusteringEqualsCleanRun() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        Path checkpoints = temp.resolve("checkpoints");
+        List<ClassInfo> classes = Analyzer.analyzeSource(sources, options(null));
+        ClassCouplingAnalyzer couplings = new ClassCouplingAnalyzer(classes);
+
+        StoppingMap<Long> counted = new StoppingMap<>(couplings.getNormalizedCouplingsById(), Long.MAX_VALUE);
+        HierarchicalClusteringAnalyzer clean = new HierarchicalClusteringAnalyzer(classes, readThrough(classes, counted));
+        clean.runClustering();
+        long lookups = counted.lookups;
+        clean.identifyModules(0.01);
+
+        // Stop halfway through the coupling lookups, after the first merges are saved
+        HierarchicalClusteringAnalyzer interrupted = new HierarchicalClusteringAnalyzer(classes,
+            readThrough(classes, new StoppingMap<>(couplings.getNormalizedCouplingsById(), lookups / 2)));
+        interrupted.setCheckpoint(checkpoints, 0);
+        assertThrows(Stop.class, interrupted::runClustering);
+        assertFalse(checkpointFiles(checkpoints).isEmpty(), "no merge log left by the interrupted clustering");
+
+        HierarchicalClusteringAnalyzer resumed = new HierarchicalClusteringAnalyzer(classes, couplings);
+        resumed.setCheckpoint(checkpoints, AnalysisCheckpoint.DEFAULT_INTERVAL_MILLIS);
+        resumed.runClusteringAndIdentifyModules(0.01);
+        assertTrue(resumed.getRestoredMerges() > 0, "no merge restored from the checkpoint");
+        assertTrue(checkpointFiles(checkpoints).isEmpty(), "merge log not deleted after the resumed clustering");
+
+        assertEquals(levels(clean.getDendrogram()), levels(resumed.getDendrogram()));
+        assertEquals(clean.getModulesAsClassNames(), resumed.getModulesAsClassNames());
+    }
+
+    /** Coupling analyzer of the classes whose normalized couplings are read from the given map. */
+    private static ClassCouplingAnalyzer readThrough(List<ClassInfo> classes, StoppingMap<Long> couplings) {
+        return new ClassCouplingAnalyzer(classes) {
+            @Override
+            Map<Long, Double> getNormalizedCouplingsById() {
+                return couplings;
+            }
+        };
+    }
+
+    /**
+     * Couplings that count their lookups and throw {@link Stop} once a given
+     * number is reached, as if the clustering reading them were killed.
+     */
+    private static class StoppingMap<K> extends HashMap<K, Double> {
+        private static final long serialVersionUID = 1L;
+        private final long limit;
+        long lookups;
+
+        StoppingMap(Map<K, Double> couplings, long limit) {
+            super(couplings);
+            this.limit = limit;
+        }
+
+        @Override
+        public Double get(Object key) {
+            lookup();
+            return super.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            lookup();
+            return super.containsKey(key);
+        }
+
+        private void lookup() {
+            if (++lookups > limit) throw new Stop();
+        }
+    }
+
+    private static AnalysisOptions options(Path checkpoints) {
+        AnalysisOptions options = new AnalysisOptions();
+        // One worker parsing file by file: the run stops at a known file
+        options.threads = 1;
+        options.pipelining = false;
+        options.checkpointDirectory = checkpoints;
+        return options;
+    }
+
+    /**
+     * Writes a small project whose classes call methods of the next class of
+     * their package and of the same class in the next package.
+     */
+    private static Path writeProject(Path root) throws IOException {
+        for (int p = 0; p < PACKAGES; p++) {
+            for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+                String next = "pkg" + p + ".C" + ((c + 1) % CLASSES_PER_PACKAGE);
+                String other = "pkg" + ((p + 1) % PACKAGES) + ".C" + c;
+                StringBuilder source = new StringBuilder();
+                source.append("package pkg").append(p).append(";\n\n")
+                      .append("public class C").append(c).append(" {\n")
+                      .append("    private int value;\n\n")
+                      .append("    public int get() {\n        return value;\n    }\n\n")
+                      .append("    public int sum(int x) {\n")
+                      .append("        return x + new ").append(next).append("().get()");
+                for (int k = 0; k <= c; k++) {
+                    source.append(" + new ").append(other).append("().get()");
+                }
+                source.append(";\n    }\n}\n");
+                write(root, "pkg" + p + "/C" + c + ".java", source.toString());
+            }
+        }
+        return root;
+    }
+
+    private static List<Path> checkpointFiles(Path checkpoints) throws IOException {
+        if (!Files.isDirectory(checkpoints)) return Collections.emptyList();
+        try (Stream<Path> walk = Files.walk(checkpoints)) {
+            List<Path> files = new ArrayList<>();
+            walk.filter(Files::isRegularFile).forEach(files::add);
+            return files;
+        }
+    }
+
+    private static List<String> levels(Utils.Dendro dendrogram) {
+        List<String> levels = new ArrayList<>();
+        for (List<Cluster> level : dendrogram.clusters) {
+            StringBuilder line = new StringBuilder();
+            for (Cluster cluster : level) {
+                line.append('[');
+                for (ClassInfo cls : cluster.classes) line.append(cls.name).append(' ');
+                line.append(cluster.mergeCouplingValue).append(']');
+            }
+            levels.add(line.toString());
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,163 @@
+package analyzer;
+
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Checks {@link CallGraph} against the resolved calls it is built from.
+ */
+class CallGraphTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void graphMatchesResolvedCalls() throws IOException {
+        List<ClassInfo> classes = analyze();
+        CallGraph graph = CallGraph.of(classes);
+
+        check(graph, classes);
+
+        // Cart.total calls price, then itself; Cart.price is called by total, check and pay
+        int total = number(graph, "Cart", "total");
+        int price = number(graph, "Cart", "price");
+        List<Integer> targets = new ArrayList<>();
+        for (int k = graph.firstCall(total); k < graph.endCall(total); k++) targets.add(graph.target(k));
+        assertEquals(List.of(price, total), targets);
+        List<Integer> callers = new ArrayList<>();
+        for (int k = graph.firstCaller(price); k < graph.endCaller(price); k++) callers.add(graph.caller(k));
+        assertEquals(List.of(total, number(graph, "Cart", "check"), number(graph, "Checkout", "pay")), callers);
+    }
+
+    @Test
+    void callsOutsideTheClassesAreDropped() throws IOException {
+        List<ClassInfo> classes = analyze();
+        List<ClassInfo> kept = new ArrayList<>();
+        ClassInfo dropped = null;
+        for (ClassInfo cls : classes) {
+            if (cls.name.equals("Store")) dropped = cls;
+            else kept.add(cls);
+        }
+        CallGraph graph = CallGraph.of(kept);
+
+        check(graph, kept);
+        int calls = 0;
+        for (ClassInfo cls : kept) {
+            for (MethodInfo method : cls.methods) {
+                for (MethodInfo callee : method.calls) {
+                    if (!dropped.methods.contains(callee)) calls++;
+                }
+            }
+        }
+        assertTrue(calls < countCalls(classes));
+        assertEquals(calls, graph.callCount());
+    }
+
+    /**
+     * Checks owners and method ranges, that the calls of each method are its
+     * resolved calls in order (those to a method of the graph), and that the
+     * callers are their exact transpose.
+     */
+    private static void check(CallGraph graph, List<ClassInfo> classes) {
+        Map<MethodInfo, Integer> numbers = new IdentityHashMap<>();
+        assertEquals(classes.size(), graph.classCount());
+        int m = 0;
+        for (int c = 0; c < classes.size(); c++) {
+            ClassInfo cls = classes.get(c);
+            assertSame(cls, graph.classInfo(c));
+            assertEquals(m, graph.firstMethod(c));
+            for (MethodInfo method : cls.methods) {
+                assertSame(method, graph.method(m));
+                assertEquals(c, graph.owner(m));
+                numbers.put(method, m++);
+            }
+            assertEquals(m, graph.endMethod(c));
+        }
+        assertEquals(m, graph.methodCount());
+
+        List<List<Integer>> callers = new ArrayList<>();
+        for (int i = 0; i < graph.methodCount(); i++) callers.add(new ArrayList<>());
+        for (int i = 0; i < graph.methodCount(); i++) {
+            List<Integer> expected = new ArrayList<>();
+            for (MethodInfo callee : graph.method(i).calls) {
+                Integer target = numbers.get(callee);
+                if (target != null) expected.add(target);
+            }
+            List<Integer> targets = new ArrayList<>();
+            for (int k = graph.firstCall(i); k < graph.endCall(i); k++) {
+                targets.add(graph.target(k));
+                callers.get(graph.target(k)).add(i);
+            }
+            assertEquals(expected, targets, graph.method(i).name);
+        }
+        for (int i = 0; i < graph.methodCount(); i++) {
+            List<Integer> found = new ArrayList<>();
+            for (int k = graph.firstCaller(i); k < graph.endCaller(i); k++) found.add(graph.caller(k));
+            assertEquals(callers.get(i), found, graph.method(i).name);
+        }
+    }
+
+    /** Number of a method in the graph. */
+    private static int number(CallGraph graph, String className, String methodName) {
+        for (int m = 0; m < graph.methodCount(); m++) {
+            if (graph.classInfo(graph.owner(m)).name.equals(className) && graph.method(m).name.equals(methodName)) return m;
+        }
+        throw new AssertionError(className + "#" + methodName);
+    }
+
+    private static int countCalls(List<ClassInfo> classes) {
+        int calls = 0;
+        for (ClassInfo cls : classes) {
+            for (MethodInfo method : cls.methods) calls += method.calls.size();
+        }
+        return calls;
+    }
+
+    /** Project with repeated, recursive and cross-class calls, resolved with bindings. */
+    private List<ClassInfo> analyze() throws IOException {
+        Path root = temp.resolve("src");
+        write(root, "shop/Store.java",
+            "package shop;\n"
+            + "public class Store {\n"
+            + "    public int stock(String item) { return item.length(); }\n"
+            + "    public void restock(String item) { stock(item); }\n"
+            + "}\n");
+        write(root, "shop/Cart.java",
+            "package shop;\n"
+            + "public class Cart {\n"
+            + "    private final Store store = new Store();\n"
+            + "    public int total(int n) { return n <= 0 ? 0 : price() + total(n - 1); }\n"
+            + "    public int price() { return 3; }\n"
+            + "    public boolean check(String item) {\n"
+            + "        return store.stock(item) > price() && store.stock(item) > 0;\n"
+            + "    }\n"
+            + "}\n");
+        write(root, "shop/Checkout.java",
+            "package shop;\n"
+            + "public class Checkout {\n"
+            + "    public int pay(Cart cart) {\n"
+            + "        cart.check(\"a\");\n"
+            + "        new Store().restock(\"a\");\n"
+            + "        return cart.total(2) + cart.price();\n"
+            + "    }\n"
+            + "}\n");
+        AnalysisOptions options = new AnalysisOptions();
+        options.resolveBindings = true;
+        return Analyzer.analyzeSource(root, options);
+    }
+}
@@ -0,0 +1,165 @@
+package analyzer;
+
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Checks the fallbacks of files exceeding their budget ({@link FileBudget}):
+ * degraded to their declarations, or quarantined, while the other files of
+ * the run are analyzed in full. Each case runs with one parse per file and
+ * with batch parsing.
+ */
+class FileBudgetTest {
+
+    @TempDir
+    Path temp;
+
+    private Path sources;
+
+    /**
+     * Small calls Big, whose method bodies are large but whose declarations
+     * are few, and Huge declares many fields.
+     */
+    @BeforeEach
+    void writeProject() throws IOException {
+        sources = temp.resolve("src");
+        write(sources, "p/Small.java",
+            "package p;\n"
+            + "public class Small {\n"
+            + "    public static int ping() { return Big.first(); }\n"
+            + "}\n");
+        StringBuilder big = new StringBuilder("package p;\npublic class Big {\n");
+        for (int m = 0; m < 2; m++) {
+            big.append("    public static int ").append(m == 0 ? "first" : "second").append("() {\n");
+            big.append("        int total = 0;\n");
+            for (int s = 0; s < 200; s++) big.append("        total += Small.ping() * ").append(s).append(";\n");
+            big.append("        return total;\n    }\n");
+        }
+        write(sources, "p/Big.java", big.append("}\n").toString());
+        StringBuilder huge = new StringBuilder("package p;\npublic class Huge {\n");
+        for (int f = 0; f < 300; f++) huge.append("    int field").append(f).append(";\n");
+        huge.append("    int sum() { return Small.ping(); }\n");
+        write(sources, "p/Huge.java", huge.append("}\n").toString());
+    }
+
+    @Test
+    void nodeBudgetDegradesThenQuarantines() throws IOException {
+        for (boolean batch : new boolean[] {false, true}) {
+            AnalysisOptions options = options(batch);
+            options.maxAstNodes = 500;
+            Map<String, ClassInfo> classes = analyze(options);
+
+            assertEquals(Map.of("Big", FileBudget.Outcome.DEGRADED, "Huge", FileBudget.Outcome.QUARANTINED),
+                outcomes(options.budgetReport, "plus de 500 noeuds"));
+            assertEquals(List.of("Big", "Small"), List.copyOf(classes.keySet()));
+            assertStructureOnly(classes.get("Big"));
+            assertCalls(classes.get("Small"));
+        }
+    }
+
+    @Test
+    void sizeBudgetSkipsTheFullAttempt() throws IOException {
+        for (boolean batch : new boolean[] {false, true}) {
+            AnalysisOptions options = options(batch);
+            options.maxFileBytes = 2000;
+            Map<String, ClassInfo> classes = analyze(options);
+
+            assertEquals(Map.of("Big", FileBudget.Outcome.DEGRADED, "Huge", FileBudget.Outcome.DEGRADED),
+                outcomes(options.budgetReport, "plus de 2000 octets"));
+            assertEquals(List.of("Big", "Huge", "Small"), List.copyOf(classes.keySet()));
+            assertStructureOnly(classes.get("Big"));
+            assertStructureOnly(classes.get("Huge"));
+            assertCalls(classes.get("Small"));
+        }
+    }
+
+    @Test
+    void tokenBudgetSkipsTheFullAttempt() throws IOException {
+        for (boolean batch : new boolean[] {false, true}) {
+            AnalysisOptions options = options(batch);
+            options.maxTokens = 2000;
+            Map<String, ClassInfo> classes = analyze(options);
+
+            // Huge has fewer tokens than the limit, Big has many more
+            assertEquals(Map.of("Big", FileBudget.Outcome.DEGRADED),
+                outcomes(options.budgetReport, "plus de 2000 lexèmes"));
+            assertEquals(List.of("Big", "Huge", "Small"), List.copyOf(classes.keySet()));
+            assertStructureOnly(classes.get("Big"));
+            assertCalls(classes.get("Huge"));
+            assertCalls(classes.get("Small"));
+        }
+    }
+
+    @Test
+    void batchClockTimesTheFileInProgress() throws InterruptedException {
+        AnalysisOptions options = new AnalysisOptions();
+        options.maxParseMillis = 20;
+        FileBudget.BatchClock clock = new FileBudget.BatchClock(options);
+        Thread.sleep(50);
+        assertTrue(clock.isCanceled());
+        assertEquals("plus de 20 ms", clock.failure());
+
+        options.maxParseMillis = 60_000;
+        clock = new FileBudget.BatchClock(options);
+        Thread.sleep(50);
+        long started = clock.unitStart();
+        clock.nextUnit();
+        assertTrue(clock.unitStart() > started);
+        assertTrue(clock.unitMillis() < 50);
+        assertFalse(clock.isCanceled());
+    }
+
+    private static AnalysisOptions options(boolean batch) {
+        AnalysisOptions options = new AnalysisOptions();
+        options.batchParsing = batch;
+        options.budgetReport = new FileBudget.Report();
+        return options;
+    }
+
+    /** Analyzes the project and returns its classes by name, sorted. */
+    private Map<String, ClassInfo> analyze(AnalysisOptions options) throws IOException {
+        Map<String, ClassInfo> classes = new TreeMap<>();
+        for (ClassInfo cls : Analyzer.analyzeSource(sources, options)) classes.put(cls.name, cls);
+        return classes;
+    }
+
+    /** Outcome of each reported file, by class name; checks that each failed first for the given reason. */
+    private static Map<String, FileBudget.Outcome> outcomes(FileBudget.Report report, String reason) {
+        Map<String, FileBudget.Outcome> outcomes = new HashMap<>();
+        for (FileBudget.Entry entry : report.getEntries()) {
+            assertTrue(entry.reason.startsWith(reason), entry.file + ": " + entry.reason);
+            outcomes.put(entry.file.getFileName().toString().replace(".java", ""), entry.outcome);
+        }
+        return outcomes;
+    }
+
+    /** A degraded class keeps its methods but records no call. */
+    private static void assertStructureOnly(ClassInfo cls) {
+        assertTrue(cls.nbMethods > 0, cls.name);
+        for (MethodInfo method : cls.methods) {
+            assertEquals(0, method.callSiteIds.length, cls.name + "#" + method.name);
+        }
+    }
+
+    private static void assertCalls(ClassInfo cls) {
+        for (MethodInfo method : cls.methods) {
+            assertTrue(method.callSiteIds.length > 0, cls.name + "#" + method.name);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package analyzer;
+
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+
+/**
+ * Checks that the columnar view of {@link ModelStore} gives the same
+ * couplings as the classes it was built from, and keeps their names.
+ */
+class ModelStoreTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void viewCouplingsEqualClassCouplings() throws IOException {
+        Path root = writeProject(temp.resolve("project"));
+        AnalysisOptions options = new AnalysisOptions();
+        options.resolveBindings = true;
+        List<ClassInfo> classes = Analyzer.analyzeProject(root, options);
+
+        ModelView view = ModelStore.of(classes);
+        ClassCouplingAnalyzer fromClasses = new ClassCouplingAnalyzer(classes);
+        ClassCouplingAnalyzer fromView = new ClassCouplingAnalyzer(view);
+
+        assertTrue(fromClasses.getTotalCouplings() > 0);
+        assertEquals(fromClasses.getNormalizedCouplingsById(), fromView.getNormalizedCouplingsById());
+        assertEquals(fromClasses.getTotalCouplings(), fromView.getTotalCouplings());
+    }
+
+    @Test
+    void viewKeepsClassNames() throws IOException {
+        Path root = writeProject(temp.resolve("project"));
+        List<ClassInfo> classes = Analyzer.analyzeProject(root, new AnalysisOptions());
+        ModelView view = ModelStore.of(classes);
+
+        assertEquals(classes.size(), view.classCount());
+        boolean defaultPackage = false;
+        boolean nested = false;
+        for (int c = 0; c < view.classCount(); c++) {
+            ClassInfo cls = classes.get(c);
+            String packageName = cls.packageName == null ? "" : cls.packageName;
+            assertEquals(cls.name, view.className(c));
+            assertEquals(packageName, view.packageName(c));
+            assertEquals(SymbolTable.qualifiedName(cls), view.qualifiedName(c));
+            assertNotNull(cls.module, cls.name);
+            assertEquals(cls.module, view.module(c));
+            defaultPackage |= packageName.isEmpty();
+            nested |= cls.name.equals("Shape$Corner");
+        }
+        assertTrue(defaultPackage, "default package class missing");
+        assertTrue(nested, "nested class missing");
+    }
+
+    /**
+     * Maven build with two modules: "core" declares shapes with a nested
+     * class and overloads, "app" uses them from the default package.
+     */
+    private static Path writeProject(Path root) throws IOException {
+        write(root, "pom.xml",
+            "<project>\n"
+            + "  <modules>\n"
+            + "    <module>core</module>\n"
+            + "    <module>app</module>\n"
+            + "  </modules>\n"
+            + "</project>\n");
+        write(root, "core/pom.xml", "<project></project>\n");
+        write(root, "app/pom.xml", "<project></project>\n");
+        write(root, "core/src/main/java/geo/Shape.java",
+            "package geo;\n"
+            + "public class Shape {\n"
+            + "    public static class Corner {\n"
+            + "        public int x() { return 0; }\n"
+            + "        public int x(int scale) { return scale; }\n"
+            + "    }\n"
+            + "    public int area() { return new Corner().x() * new Corner().x(2); }\n"
+            + "}\n");
+        write(root, "core/src/main/java/geo/Square.java",
+            "package geo;\n"
+            + "public class Square extends Shape {\n"
+            + "    public int area() { return super.area() + new Corner().x(); }\n"
+            + "}\n");
+        write(root, "app/src/main/java/Main.java",
+            "import geo.Shape;\n"
+            + "import geo.Square;\n"
+            + "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        System.out.println(new Square().area() + new Shape.Corner().x(3));\n"
+            + "    }\n"
+            + "}\n");
+        return root;
+    }
+}
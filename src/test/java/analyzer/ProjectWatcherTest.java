@@ -0,0 +1,154 @@
+package analyzer;
+
+import static analyzer.TestProjects.describe;
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Checks that the state a {@link ProjectWatcher} patches after created,
+ * edited and deleted files equals a full analysis of the folder.
+ */
+class ProjectWatcherTest {
+
+    /** Longest wait for the watcher to catch up with the changes. */
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void incrementalUpdatesEqualFullAnalysis() throws IOException, InterruptedException {
+        Path root = temp.resolve("src");
+        Path staging = Files.createDirectories(temp.resolve("staging"));
+        writeProject(root);
+        AnalysisOptions options = new AnalysisOptions();
+
+        BlockingQueue<ProjectWatcher.Update> updates = new LinkedBlockingQueue<>();
+        try (ProjectWatcher watcher = new ProjectWatcher(root, options)) {
+            watcher.addListener((source, update) -> updates.add(update));
+            watcher.start();
+            assertSameAsFullAnalysis(watcher, root, options);
+
+            // New class declaring a method Cart already calls, and an overload added to Item
+            replace(staging, root, "shop/Discount.java",
+                "package shop;\n"
+                + "public class Discount {\n"
+                + "    public int rebate(int total) { return total / 10; }\n"
+                + "}\n");
+            replace(staging, root, "shop/Item.java",
+                "package shop;\n"
+                + "public class Item {\n"
+                + "    private int price;\n"
+                + "    public int price() { return price; }\n"
+                + "    public int price(int quantity) { return price() * quantity; }\n"
+                + "}\n");
+            replace(staging, root, "shop/Checkout.java",
+                "package shop;\n"
+                + "public class Checkout {\n"
+                + "    public int pay(Cart cart, Item item) { return cart.total(item) + item.price(3); }\n"
+                + "}\n");
+            awaitFullAnalysis(watcher, updates, root, options);
+
+            Files.delete(root.resolve("shop/Discount.java"));
+            awaitFullAnalysis(watcher, updates, root, options);
+        }
+    }
+
+    /** Moves a file into the project in one step, so that the watcher never reads it half written. */
+    private static void replace(Path staging, Path root, String name, String source) throws IOException {
+        Path file = write(staging, name, source);
+        Files.move(file, root.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Waits for the updates until the watcher's classes equal a full analysis, then checks its whole state. */
+    private static void awaitFullAnalysis(ProjectWatcher watcher, BlockingQueue<ProjectWatcher.Update> updates,
+                                          Path root, AnalysisOptions options) throws IOException, InterruptedException {
+        List<String> expected = describe(Analyzer.analyzeSource(root, options));
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!expected.equals(describe(watcher.getClasses()))) {
+            long wait = deadline - System.currentTimeMillis();
+            assertNotNull(wait > 0 ? updates.poll(wait, TimeUnit.MILLISECONDS) : null,
+                "no update matching the full analysis");
+        }
+        assertSameAsFullAnalysis(watcher, root, options);
+    }
+
+    private static void assertSameAsFullAnalysis(ProjectWatcher watcher, Path root, AnalysisOptions options)
+            throws IOException {
+        List<ClassInfo> classes = Analyzer.analyzeSource(root, options);
+        ClassCouplingAnalyzer coupling = new ClassCouplingAnalyzer(classes);
+        synchronized (watcher) {
+            assertEquals(describe(classes), describe(watcher.getClasses()));
+            assertEquals(edges(CallGraph.of(classes)), edges(watcher.getCallGraph()));
+            assertEquals(couplings(coupling), couplings(watcher.getCouplingAnalyzer()));
+        }
+    }
+
+    /** Calls of the graph, one line per method with its callees in call order. */
+    private static List<String> edges(CallGraph graph) {
+        List<String> edges = new ArrayList<>();
+        for (int m = 0; m < graph.methodCount(); m++) {
+            StringBuilder line = new StringBuilder(name(graph, m)).append(" ->");
+            for (int k = graph.firstCall(m); k < graph.endCall(m); k++) line.append(' ').append(name(graph, graph.target(k)));
+            edges.add(line.toString());
+        }
+        return edges;
+    }
+
+    private static String name(CallGraph graph, int m) {
+        MethodInfo method = graph.method(m);
+        return SymbolTable.qualifiedName(graph.classInfo(graph.owner(m))) + "#" + method.name + "/" + method.nbParameters;
+    }
+
+    /** Couplings by ID, keyed by the class names since each analysis numbers its classes. */
+    private static Map<String, Double> couplings(ClassCouplingAnalyzer analyzer) {
+        Map<String, Double> couplings = new TreeMap<>();
+        SymbolTable symbols = analyzer.getSymbols();
+        for (Map.Entry<Long, Double> entry : analyzer.getNormalizedCouplingsById().entrySet()) {
+            String first = symbols.classes.name((int) (entry.getKey() >>> 32));
+            String second = symbols.classes.name((int) (long) entry.getKey());
+            couplings.put(first.compareTo(second) < 0 ? first + "-" + second : second + "-" + first, entry.getValue());
+        }
+        return couplings;
+    }
+
+    /** Three classes calling each other by name; Cart calls a rebate no class declares yet. */
+    private static void writeProject(Path root) throws IOException {
+        write(root, "shop/Item.java",
+            "package shop;\n"
+            + "public class Item {\n"
+            + "    private int price;\n"
+            + "    public int price() { return price; }\n"
+            + "}\n");
+        write(root, "shop/Cart.java",
+            "package shop;\n"
+            + "public class Cart {\n"
+            + "    private Discount discount;\n"
+            + "    public int total(Item item) { return item.price() - discount.rebate(item.price()); }\n"
+            + "}\n");
+        write(root, "shop/Checkout.java",
+            "package shop;\n"
+            + "public class Checkout {\n"
+            + "    public int pay(Cart cart, Item item) { return cart.total(item); }\n"
+            + "}\n");
+    }
+}
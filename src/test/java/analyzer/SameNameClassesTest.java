@@ -0,0 +1,105 @@
+package analyzer;
+
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.Cluster;
+
+/**
+ * Checks that two top-level classes sharing a simple name in different
+ * packages stay two classes for the coupling and clustering analyzers, with
+ * the JDT parser (with and without bindings) and with Spoon.
+ */
+class SameNameClassesTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void sameNamedClassesStayApart() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        AnalysisOptions bindings = new AnalysisOptions();
+        bindings.resolveBindings = true;
+
+        check(Analyzer.analyzeSource(sources, new AnalysisOptions()));
+        check(Analyzer.analyzeSource(sources, bindings));
+        check(SpoonRunner.buildClassesFromSpoon(sources));
+    }
+
+    private static void check(List<ClassInfo> classes) {
+        Map<String, ClassInfo> byName = new HashMap<>();
+        for (ClassInfo cls : classes) byName.put(SymbolTable.qualifiedName(cls), cls);
+        assertEquals(Set.of("p1.A", "p1.Util", "p2.B", "p2.Util"), byName.keySet());
+        assertNotEquals(byName.get("p1.Util").id, byName.get("p2.Util").id);
+
+        // Each caller is coupled with the Util of its own package only
+        ClassCouplingAnalyzer couplings = new ClassCouplingAnalyzer(classes);
+        Set<String> pairs = new TreeSet<>();
+        for (String key : couplings.getNormalizedCouplings().keySet()) {
+            String[] pair = key.split("-");
+            pairs.add(pair[0].compareTo(pair[1]) <= 0 ? pair[0] + "-" + pair[1] : pair[1] + "-" + pair[0]);
+        }
+        assertEquals(Set.of("p1.A-p1.Util", "p2.B-p2.Util"), pairs);
+        assertEquals(2, couplings.getTotalCouplings());
+
+        // The first two merges join each caller with its own Util
+        HierarchicalClusteringAnalyzer clustering = new HierarchicalClusteringAnalyzer(classes, couplings);
+        clustering.runClustering();
+        List<Cluster> leaves = clustering.getDendrogram().clusters.get(0);
+        assertEquals(4, leaves.size());
+        for (Cluster cluster : clustering.getDendrogram().clusters.get(2)) {
+            List<String> packages = new ArrayList<>();
+            for (ClassInfo cls : cluster.classes) packages.add(cls.packageName);
+            assertEquals(2, packages.size(), packages.toString());
+            assertEquals(packages.get(0), packages.get(1), packages.toString());
+        }
+
+        // Pairs naming classes the analysis does not know are ignored
+        Map<String, Double> named = new HashMap<>(couplings.getNormalizedCouplings());
+        named.put("p3.Util-p1.Util", 1.0);
+        int known = classes.get(0).symbols.classes.size();
+        new HierarchicalClusteringAnalyzer(classes, named);
+        assertEquals(known, classes.get(0).symbols.classes.size());
+        assertFalse(classes.get(0).symbols.classes.lookup("p3.Util") >= 0);
+    }
+
+    /** Two packages, each with a class calling the Util class of its own package. */
+    private static Path writeProject(Path root) throws IOException {
+        write(root, "p1/Util.java",
+            "package p1;\n"
+            + "public class Util {\n"
+            + "    public int first() { return 1; }\n"
+            + "}\n");
+        write(root, "p1/A.java",
+            "package p1;\n"
+            + "public class A {\n"
+            + "    public int run() { return new Util().first(); }\n"
+            + "}\n");
+        write(root, "p2/Util.java",
+            "package p2;\n"
+            + "public class Util {\n"
+            + "    public int second() { return 2; }\n"
+            + "}\n");
+        write(root, "p2/B.java",
+            "package p2;\n"
+            + "public class B {\n"
+            + "    public int run() { return new Util().second(); }\n"
+            + "}\n");
+        return root;
+    }
+}
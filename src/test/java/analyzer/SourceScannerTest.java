@@ -0,0 +1,143 @@
+package analyzer;
+
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the files kept by {@link SourceScanner} on a small tree covering
+ * the .gitignore rules, the folders always skipped, the test and generated
+ * roots and the include and exclude globs, with both scan modes.
+ */
+class SourceScannerTest {
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void writeTree() throws IOException {
+        write(root, ".gitignore",
+            "# comment\n"
+            + "*.gen.java\n"
+            + "!Important.gen.java\n"
+            + "/Top.java\n"
+            + "tmp*/\n"
+            + "**/legacy/**\n"
+            + "docs/**/*.java\n");
+        write(root, "sub/.gitignore",
+            "Local.java\n"
+            + "!Kept.gen.java\n");
+        for (String file : Arrays.asList(
+                "Top.java", "a/Top.java",
+                "a/Foo.gen.java", "a/Important.gen.java", "sub/Kept.gen.java",
+                "tmpdir/X.java", "a/tmpFile.java",
+                "a/legacy/Old.java", "legacy/deep/Old.java", "a/legacyCode.java",
+                "docs/Y.java", "docs/x/Y.java", "a/docs/Y.java",
+                "sub/Local.java", "a/Local.java",
+                ".git/G.java", "node_modules/N.java", "notes.txt",
+                "pkg/build/B.java",
+                "module/target/T.java",
+                "module/src/main/java/M.java",
+                "module/src/test/java/MTest.java",
+                "module/src/testFixtures/java/F.java",
+                "module/src/integrationTest/java/I.java",
+                "module/generated-sources/G.java")) {
+            write(root, file, "class X {}\n");
+        }
+        write(root, "module/pom.xml", "<project></project>\n");
+    }
+
+    @Test
+    void gitignoreRulesAndSkippedFolders() throws IOException {
+        assertEquals(Set.of(
+                "a/Top.java", "a/Important.gen.java", "sub/Kept.gen.java",
+                "a/tmpFile.java", "a/legacyCode.java", "a/docs/Y.java", "a/Local.java",
+                "pkg/build/B.java",
+                "module/src/main/java/M.java",
+                "module/src/test/java/MTest.java",
+                "module/src/testFixtures/java/F.java",
+                "module/src/integrationTest/java/I.java",
+                "module/generated-sources/G.java"),
+            scan(new AnalysisOptions()));
+    }
+
+    @Test
+    void gitignoreCanBeDisabled() throws IOException {
+        AnalysisOptions options = new AnalysisOptions();
+        options.respectGitignore = false;
+        options.includeGlobs.add("{*,a/*,sub/*,tmpdir/*,docs/*}.java");
+        assertEquals(Set.of(
+                "Top.java", "a/Top.java",
+                "a/Foo.gen.java", "a/Important.gen.java", "sub/Kept.gen.java",
+                "tmpdir/X.java", "a/tmpFile.java", "a/legacyCode.java",
+                "docs/Y.java", "sub/Local.java", "a/Local.java"),
+            scan(options));
+    }
+
+    @Test
+    void testAndGeneratedRootsAreSkippedOnRequest() throws IOException {
+        AnalysisOptions options = new AnalysisOptions();
+        options.skipTestSources = true;
+        options.skipGeneratedSources = true;
+        options.includeGlobs.add("module/**");
+        assertEquals(Set.of("module/src/main/java/M.java"), scan(options));
+    }
+
+    @Test
+    void includeAndExcludeGlobs() throws IOException {
+        AnalysisOptions options = new AnalysisOptions();
+        options.includeGlobs.add("a/**");
+        options.includeGlobs.add("sub/*.java");
+        options.excludeGlobs.add("a/docs");
+        options.excludeGlobs.add("**/Local.java");
+        assertEquals(Set.of(
+                "a/Top.java", "a/Important.gen.java", "a/tmpFile.java", "a/legacyCode.java",
+                "sub/Kept.gen.java"),
+            scan(options));
+    }
+
+    @Test
+    void parallelScanEqualsSequentialScan() throws IOException {
+        List<AnalysisOptions> variants = new ArrayList<>();
+        variants.add(new AnalysisOptions());
+        AnalysisOptions noGitignore = new AnalysisOptions();
+        noGitignore.respectGitignore = false;
+        variants.add(noGitignore);
+        AnalysisOptions filtered = new AnalysisOptions();
+        filtered.skipTestSources = true;
+        filtered.skipGeneratedSources = true;
+        filtered.excludeGlobs.add("a/docs");
+        variants.add(filtered);
+
+        for (AnalysisOptions options : variants) {
+            Set<Path> sequentialFolders = new TreeSet<>();
+            List<Path> sequential = SourceScanner.scan(root, options, sequentialFolders);
+            options.parallelScan = true;
+            Set<Path> parallelFolders = new TreeSet<>();
+            List<Path> parallel = SourceScanner.scan(root, options, parallelFolders);
+            assertEquals(sequential, parallel);
+            assertEquals(sequentialFolders, parallelFolders);
+        }
+    }
+
+    /** Scans the tree sequentially and returns the files kept, relative to the root. */
+    private Set<String> scan(AnalysisOptions options) throws IOException {
+        Set<String> files = new TreeSet<>();
+        for (Path file : SourceScanner.scan(root, options)) {
+            files.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,142 @@
+package analyzer;
+
+import static analyzer.TestProjects.describe;
+import static analyzer.TestProjects.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Checks that a sharded Spoon analysis gives the classes, calls and couplings
+ * of a single model, including for calls between shards.
+ */
+class SpoonShardsTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void shardedAnalysisEqualsSingleModel() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        AnalysisOptions options = new AnalysisOptions();
+        options.spoonSharding = true;
+        // One package per shard: every call between packages crosses shards
+        options.spoonShardMaxFiles = 1;
+
+        List<ClassInfo> single = SpoonRunner.buildClassesFromSpoon(sources);
+        List<ClassInfo> sharded = SpoonRunner.buildClassesFromSpoon(sources, options);
+
+        assertEquals(describe(single), describe(sharded));
+        assertEquals(new ClassCouplingAnalyzer(single).getNormalizedCouplings(),
+            new ClassCouplingAnalyzer(sharded).getNormalizedCouplings());
+    }
+
+    @Test
+    void cachedShardsEqualSingleModel() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        AnalysisOptions options = new AnalysisOptions();
+        options.spoonSharding = true;
+        options.spoonShardMaxFiles = 1;
+        options.cacheDirectory = temp.resolve("cache");
+
+        List<ClassInfo> single = SpoonRunner.buildClassesFromSpoon(sources);
+        SpoonRunner.buildClassesFromSpoon(sources, options);
+        List<ClassInfo> cached = SpoonRunner.buildClassesFromSpoon(sources, options);
+        assertEquals(describe(single), describe(cached));
+
+        // A body edit rebuilds its file alone, against the stubs of the others
+        Path user = sources.resolve("c/User.java");
+        Files.writeString(user, Files.readString(user).replace("task.run();", "task.run();\n        s.self();"));
+        assertEquals(describe(SpoonRunner.buildClassesFromSpoon(sources)),
+            describe(SpoonRunner.buildClassesFromSpoon(sources, options)));
+
+        // A new overload changes the targets of calls in other files
+        Path base = sources.resolve("a/Base.java");
+        Files.writeString(base, Files.readString(base).replace("public Base self()",
+            "public int inherited(long x) { return 0; }\n    public Base self()"));
+        assertEquals(describe(SpoonRunner.buildClassesFromSpoon(sources)),
+            describe(SpoonRunner.buildClassesFromSpoon(sources, options)));
+    }
+
+    @Test
+    void nestedClassesOfTheSameNameStayApart() throws IOException {
+        Path sources = writeProject(temp.resolve("src"));
+        AnalysisOptions bindings = new AnalysisOptions();
+        bindings.resolveBindings = true;
+
+        for (List<ClassInfo> classes : List.of(SpoonRunner.buildClassesFromSpoon(sources),
+                                               Analyzer.analyzeSource(sources, bindings))) {
+            List<String> names = new ArrayList<>();
+            for (ClassInfo cls : classes) names.add(SymbolTable.qualifiedName(cls));
+            assertTrue(names.contains("a.Base$Node"), names.toString());
+            assertTrue(names.contains("b.Sub$Node"), names.toString());
+
+            ClassInfo sub = classes.get(names.indexOf("b.Sub"));
+            List<String> callees = new ArrayList<>();
+            for (MethodInfo callee : sub.methods.get(0).calls) callees.add(callee.classOwner + "#" + callee.name);
+            assertTrue(callees.contains("a.Base$Node#weight"), callees.toString());
+            assertFalse(callees.contains("b.Sub$Node#weight"), callees.toString());
+        }
+    }
+
+    /**
+     * Writes three packages calling each other through inherited, static
+     * imported, varargs, nested and chained methods.
+     */
+    private static Path writeProject(Path root) throws IOException {
+        write(root, "a/Base.java",
+            "package a;\n"
+            + "public class Base {\n"
+            + "    public int inherited(int x) { return x; }\n"
+            + "    public static String format(String f, Object... args) { return f; }\n"
+            + "    public Base self() { return this; }\n"
+            + "    public static class Node { public int weight() { return 1; } }\n"
+            + "}\n");
+        write(root, "a/Util.java",
+            "package a;\n"
+            + "import java.util.List;\n"
+            + "public class Util {\n"
+            + "    public static int size(List<?> list) { return list.size(); }\n"
+            + "    public b.Sub make() { return new b.Sub(); }\n"
+            + "}\n");
+        write(root, "b/Sub.java",
+            "package b;\n"
+            + "import a.Base;\n"
+            + "import static a.Base.format;\n"
+            + "public class Sub extends Base {\n"
+            + "    public int run() {\n"
+            + "        String s = format(\"x\", 1, 2, 3);\n"
+            + "        return inherited(2) + self().inherited(3) + new Base.Node().weight() + s.length();\n"
+            + "    }\n"
+            + "    public static class Node { public int weight() { return 2; } }\n"
+            + "}\n");
+        write(root, "c/User.java",
+            "package c;\n"
+            + "import a.*;\n"
+            + "import b.Sub;\n"
+            + "import java.util.ArrayList;\n"
+            + "public class User {\n"
+            + "    public int go() {\n"
+            + "        Sub s = new Util().make();\n"
+            + "        int r = s.run() + s.inherited(1) + Util.size(new ArrayList<>()) + new Sub.Node().weight();\n"
+            + "        Runnable task = new Runnable() { public void run() { helper(); } };\n"
+            + "        task.run();\n"
+            + "        return r + Base.format(\"a\").length();\n"
+            + "    }\n"
+            + "    void helper() {}\n"
+            + "}\n");
+        return root;
+    }
+}
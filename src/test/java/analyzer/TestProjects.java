@@ -0,0 +1,60 @@
+package analyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import analyzer.Utils.ClassInfo;
+import analyzer.Utils.MethodInfo;
+
+/**
+ * Helpers shared by the tests: writing small source trees, and describing
+ * the classes of an analysis as lines that two runs can be compared on.
+ */
+final class TestProjects {
+
+    private TestProjects() {
+    }
+
+    /**
+     * Writes a source file, creating its folders.
+     * @param root Source root
+     * @param name Path of the file under the root, e.g. "a/Base.java"
+     * @param source Content of the file
+     * @return the file written
+     */
+    static Path write(Path root, String name, String source) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        return file;
+    }
+
+    /**
+     * Describes classes in order: one line per class (qualified name, number
+     * of attributes and methods), then one per method with its parameter and
+     * line counts, its distinct call signatures and its resolved callees in
+     * call order.
+     */
+    static List<String> describe(List<ClassInfo> classes) {
+        List<String> lines = new ArrayList<>();
+        for (ClassInfo cls : classes) {
+            lines.add(SymbolTable.qualifiedName(cls) + " a=" + cls.nbAttributes + " m=" + cls.nbMethods);
+            for (MethodInfo method : cls.methods) {
+                TreeSet<String> signatures = new TreeSet<>();
+                for (int call : method.callSiteIds) signatures.add(cls.symbols.signatures.name(call));
+                StringBuilder calls = new StringBuilder();
+                for (MethodInfo callee : method.calls) {
+                    calls.append(' ').append(callee.classOwner).append('#').append(callee.name)
+                         .append('/').append(callee.nbParameters);
+                }
+                lines.add("  " + method.name + "/" + method.nbParameters + " l=" + method.nbLines
+                    + " " + signatures + calls);
+            }
+        }
+        return lines;
+    }
+}